@@ -19,6 +19,14 @@
 # Application classes that will be serialized/deserialized over Gson
 -keep class silent.kuasapmaterial.models.BusModel { *; }
 -keep class silent.kuasapmaterial.models.CourseModel { *; }
+-keep class silent.kuasapmaterial.models.NotificationModel { *; }
+-keep class silent.kuasapmaterial.models.ScheduleEventModel { *; }
+-keep class silent.kuasapmaterial.models.ScheduleModel { *; }
+-keep class silent.kuasapmaterial.models.ScoreDetailModel { *; }
+-keep class silent.kuasapmaterial.models.ScoreModel { *; }
+-keep class silent.kuasapmaterial.models.ScoreWatchModel { *; }
+-keep class silent.kuasapmaterial.models.SemesterScoreModel { *; }
+-keep class silent.kuasapmaterial.models.TimetableModel { *; }
 
 # Rename packages
 -optimizationpasses 30
@@ -0,0 +1,215 @@
+package silent.kuasapmaterial;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.view.ViewPager;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.Utils;
+import silent.kuasapmaterial.models.NewsModel;
+
+/**
+ * Benchmark of the news pager of the logout screen and its {@link
+ * silent.kuasapmaterial.libs.NewsPagerTransformer}. The pager is filled with {@link #NEWS_COUNT}
+ * cards, flung forward through every card by fast drags, then scrolled back card by card.
+ * <p>
+ * The frame intervals are timed with {@link Choreographer} and reported as a distribution, in
+ * the log and in the instrumentation status. Only what doesn't depend on the device is asserted:
+ * every card is reached, and the card at rest is neither scaled nor moved.
+ */
+public class NewsPagerTest extends ActivityInstrumentationTestCase2<LogoutActivity> {
+
+	private static final int NEWS_COUNT = 12;
+	// A page in a few frames, far above the fling velocity of the pager
+	private static final int FLING_FRAMES = 4;
+	private static final float FLING_PAGE_FRACTION = 0.8f;
+	private static final int MAX_FRAMES = 4096;
+	// A frame later than 1.5 vsync intervals missed at least one vsync
+	private static final float JANK_FACTOR = 1.5f;
+	private static final long TIMEOUT_SECONDS = 60;
+
+	private ViewPager mViewPager;
+	private final Set<Integer> mSelectedPages = new HashSet<>();
+	private int mScrollState = ViewPager.SCROLL_STATE_IDLE;
+	private boolean isForward = true;
+	private int mDragFrames = 0;
+	private float mDragStep;
+
+	private final long[] mFrameNanos = new long[MAX_FRAMES];
+	private int mFrameCount = 0;
+	private long mLastFrameNanos = -1;
+
+	public NewsPagerTest() {
+		super(LogoutActivity.class);
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	public void testFlingThroughNews() throws Throwable {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+			// No Choreographer to time the frames with
+			return;
+		}
+		final LogoutActivity activity = getActivity();
+		runTestOnUiThread(new Runnable() {
+
+			@Override
+			public void run() {
+				// Not logged in, the login dialog would cover the pager
+				Utils.dismissDialog(activity.mProgressDialog);
+				List<NewsModel> newsList = new ArrayList<>();
+				for (int i = 0; i < NEWS_COUNT; i++) {
+					NewsModel model = new NewsModel();
+					model.title = "News " + (i + 1);
+					model.content = model.title;
+					model.image = "";
+					model.url = "";
+					newsList.add(model);
+				}
+				activity.showNews(newsList);
+				mViewPager = activity.viewPager;
+				mViewPager.addOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener() {
+
+					@Override
+					public void onPageSelected(int position) {
+						mSelectedPages.add(position);
+					}
+
+					@Override
+					public void onPageScrollStateChanged(int state) {
+						mScrollState = state;
+					}
+				});
+			}
+		});
+		getInstrumentation().waitForIdleSync();
+		assertEquals(NEWS_COUNT, mViewPager.getAdapter().getCount());
+		mSelectedPages.add(mViewPager.getCurrentItem());
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		runTestOnUiThread(new Runnable() {
+
+			@Override
+			public void run() {
+				Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+
+					@Override
+					public void doFrame(long frameTimeNanos) {
+						if (mLastFrameNanos > 0 && mFrameCount < MAX_FRAMES) {
+							mFrameNanos[mFrameCount++] = frameTimeNanos - mLastFrameNanos;
+						}
+						mLastFrameNanos = frameTimeNanos;
+						if (step()) {
+							Choreographer.getInstance().postFrameCallback(this);
+						} else {
+							latch.countDown();
+						}
+					}
+				});
+			}
+		});
+		assertTrue("Scrolling timed out", latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		getInstrumentation().waitForIdleSync();
+
+		float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+		report((long) (1000000000L / refreshRate));
+
+		assertEquals("Cards reached", NEWS_COUNT, mSelectedPages.size());
+		assertEquals(0, mViewPager.getCurrentItem());
+		View page = findPageAtRest();
+		assertNotNull("No card at rest", page);
+		assertEquals(1f, page.getScaleX(), 0.01f);
+		assertEquals(1f, page.getScaleY(), 0.01f);
+		assertEquals(0f, page.getTranslationX(), 1f);
+	}
+
+	/**
+	 * Move the pager on by a frame, fling forward to the last card, then back to the first
+	 *
+	 * @return false once back at the first card
+	 */
+	private boolean step() {
+		if (mDragFrames > 0) {
+			mViewPager.fakeDragBy(-mDragStep);
+			if (--mDragFrames == 0) {
+				// Released fast, the pager flings on to the next card
+				mViewPager.endFakeDrag();
+			}
+			return true;
+		}
+		if (mScrollState != ViewPager.SCROLL_STATE_IDLE) {
+			return true;
+		}
+		int current = mViewPager.getCurrentItem();
+		if (isForward && current < NEWS_COUNT - 1) {
+			mDragStep = mViewPager.getWidth() * FLING_PAGE_FRACTION / FLING_FRAMES;
+			mDragFrames = FLING_FRAMES;
+			mViewPager.beginFakeDrag();
+			return true;
+		}
+		isForward = false;
+		if (current > 0) {
+			mViewPager.setCurrentItem(current - 1, true);
+			return true;
+		}
+		return false;
+	}
+
+	private View findPageAtRest() {
+		int left = mViewPager.getScrollX() + mViewPager.getPaddingLeft();
+		for (int i = 0; i < mViewPager.getChildCount(); i++) {
+			View child = mViewPager.getChildAt(i);
+			if (Math.abs(child.getLeft() - left) <= 1) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	private void report(long frameIntervalNanos) {
+		long[] frames = Arrays.copyOf(mFrameNanos, mFrameCount);
+		Arrays.sort(frames);
+		int jankyCount = 0;
+		for (long frame : frames) {
+			if (frame > frameIntervalNanos * JANK_FACTOR) {
+				jankyCount++;
+			}
+		}
+
+		Bundle results = new Bundle();
+		results.putInt("frames", frames.length);
+		results.putInt("janky_frames", jankyCount);
+		results.putDouble("vsync_ms", frameIntervalNanos / 1e6);
+		results.putDouble("p50_ms", percentile(frames, 50) / 1e6);
+		results.putDouble("p90_ms", percentile(frames, 90) / 1e6);
+		results.putDouble("p99_ms", percentile(frames, 99) / 1e6);
+		results.putDouble("max_ms", percentile(frames, 100) / 1e6);
+		getInstrumentation().sendStatus(0, results);
+		Log.i(Constant.TAG, String.format(Locale.US,
+				"News pager %d frames, %d janky, vsync %.1f ms, p50 %.1f, p90 %.1f, p99 %.1f, " +
+						"max %.1f ms", frames.length, jankyCount, results.getDouble("vsync_ms"),
+				results.getDouble("p50_ms"), results.getDouble("p90_ms"),
+				results.getDouble("p99_ms"), results.getDouble("max_ms")));
+	}
+
+	private static long percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
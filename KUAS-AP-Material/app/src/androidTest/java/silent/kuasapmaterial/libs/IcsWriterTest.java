@@ -0,0 +1,141 @@
+package silent.kuasapmaterial.libs;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import silent.kuasapmaterial.models.BusModel;
+
+/**
+ * Writes a growing number of events to a stream that only counts the octets, the time per event
+ * and the heap retained by the writer must not grow with the count.
+ */
+public class IcsWriterTest extends TestCase {
+
+	private static final int[] EVENT_COUNTS = {1000, 4000, 16000};
+	private static final int RUNS = 3;
+	// Timing on a device is noisy, a writer that isn't linear is off by far more than this
+	private static final double MAX_TIME_RATIO = 2.5;
+	// Of the octets written in between, a writer that keeps them retains all of them
+	private static final double MAX_RETAINED_RATIO = 0.25;
+
+	// Long enough to be folded, with text to escape and characters of 3 octets
+	private static final String SUMMARY = "建工 → 燕巢, 第一節前的校車; 請提前五分鐘到站候車 \\ " +
+			"Jiangong to Yanchao, the first bus before the first class";
+
+	private final List<BusModel> mModels = new ArrayList<>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		for (int i = 0; i < 100; i++) {
+			mModels.add(new BusModel(true, null,
+					String.format(Locale.US, "2018-09-%02d %02d:%02d", 1 + i % 28, 7 + i % 12,
+							i % 60), "燕巢", "999", "0", null,
+					String.format(Locale.US, "%08d", i), null));
+		}
+	}
+
+	public void testLinearTime() throws IOException {
+		// Warm up the JIT and the charset encoder
+		write(EVENT_COUNTS[EVENT_COUNTS.length - 1], null);
+
+		double[] nanosPerEvent = new double[EVENT_COUNTS.length];
+		long[] octetsPerEvent = new long[EVENT_COUNTS.length];
+		for (int i = 0; i < EVENT_COUNTS.length; i++) {
+			int count = EVENT_COUNTS[i];
+			long bestNanos = Long.MAX_VALUE;
+			long octets = 0;
+			for (int run = 0; run < RUNS; run++) {
+				CountingOutputStream outputStream = new CountingOutputStream();
+				long start = System.nanoTime();
+				write(count, outputStream);
+				bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+				octets = outputStream.count;
+			}
+			nanosPerEvent[i] = bestNanos / (double) count;
+			octetsPerEvent[i] = octets / count;
+			Log.i(Constant.TAG, String.format(Locale.US,
+					"IcsWriter %d events: %.0f ns and %d octets per event", count,
+					nanosPerEvent[i], octetsPerEvent[i]));
+		}
+
+		for (int i = 1; i < EVENT_COUNTS.length; i++) {
+			assertEquals("Octets per event", octetsPerEvent[0], octetsPerEvent[i]);
+			assertTrue(String.format(Locale.US, "%.0f ns per event at %d events, %.0f at %d",
+					nanosPerEvent[i], EVENT_COUNTS[i], nanosPerEvent[0], EVENT_COUNTS[0]),
+					nanosPerEvent[i] <= nanosPerEvent[0] * MAX_TIME_RATIO);
+		}
+	}
+
+	public void testFlatMemory() throws IOException {
+		int smallCount = EVENT_COUNTS[0], largeCount = EVENT_COUNTS[EVENT_COUNTS.length - 1];
+		CountingOutputStream outputStream = new CountingOutputStream();
+		IcsWriter writer = new IcsWriter(outputStream);
+		writer.begin();
+		writeEvents(writer, smallCount);
+		long smallUsed = getUsedMemory();
+		long smallOctets = outputStream.count;
+		writeEvents(writer, largeCount - smallCount);
+		long largeUsed = getUsedMemory();
+		long largeOctets = outputStream.count;
+		writer.end();
+		writer.close();
+
+		long retained = largeUsed - smallUsed;
+		long written = largeOctets - smallOctets;
+		Log.i(Constant.TAG, String.format(Locale.US,
+				"IcsWriter retained %d bytes over %d events and %d octets written", retained,
+				largeCount - smallCount, written));
+		assertTrue("Retained " + retained + " bytes of " + written + " octets written",
+				retained < written * MAX_RETAINED_RATIO);
+	}
+
+	private void write(int count, OutputStream outputStream) throws IOException {
+		IcsWriter writer =
+				new IcsWriter(outputStream == null ? new CountingOutputStream() : outputStream);
+		writer.begin();
+		writeEvents(writer, count);
+		writer.end();
+		writer.close();
+	}
+
+	private void writeEvents(IcsWriter writer, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			writer.writeBus(mModels.get(i % mModels.size()), SUMMARY);
+		}
+	}
+
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Keeps nothing but the number of octets written
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		long count = 0;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -9,7 +9,6 @@ import android.support.design.widget.Snackbar;
 import android.support.v4.content.ContextCompat;
 import android.view.View;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.kuas.ap.R;
 
 import java.util.Random;
@@ -71,8 +70,7 @@ public class AboutActivity extends SilentActivity implements View.OnClickListene
 	@Override
 	public void onClick(View v) {
 		if (v.getId() == R.id.view_fb || v.getId() == R.id.view_itc) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("fb").setAction("click").build());
+			sendEvent("fb", "click");
 			try {
 				Intent browserIntent =
 						new Intent(Intent.ACTION_VIEW, Uri.parse("fb://page/735951703168873"));
@@ -83,26 +81,21 @@ public class AboutActivity extends SilentActivity implements View.OnClickListene
 				startActivity(browserIntent);
 			}
 		} else if (v.getId() == R.id.view_github) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("github").setAction("click")
-					.build());
+			sendEvent("github", "click");
 			Intent browserIntent =
 					new Intent(Intent.ACTION_VIEW, Uri.parse("https://github.com/kuastw"));
 			startActivity(browserIntent);
 		} else if (v.getId() == R.id.view_email) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("email").setAction("click").build());
+			sendEvent("email", "click");
 			Intent browserIntent =
 					new Intent(Intent.ACTION_VIEW, Uri.parse("mailto:1102108133@kuas.edu.tw"));
 			startActivity(browserIntent);
 		} else if (v.getId() == R.id.view_easter_egg) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("easter egg").setAction("click")
-							.build());
+			sendEvent("easter egg", "click");
 			if (System.currentTimeMillis() - lastDebugPressTime <= 500) {
 				easterEggCount++;
 				if (easterEggCount == 3) {
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("easter egg")
-							.setAction("click").setLabel("success").build());
+					sendEvent("easter egg", "click", "success");
 					lastDebugPressTime = 0L;
 					easterEggCount = 0;
 					String[] easterEggList = getResources().getStringArray(R.array.easter_egg);
@@ -124,9 +117,7 @@ public class AboutActivity extends SilentActivity implements View.OnClickListene
 			}
 			lastDebugPressTime = System.currentTimeMillis();
 		} else if (v.getId() == R.id.fab) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("open source").setAction("click")
-							.build());
+			sendEvent("open source", "click");
 			startActivity(new Intent(this, OpenSourceActivity.class));
 		}
 	}
@@ -5,6 +5,7 @@ import android.content.Context;
 import android.content.Intent;
 
 import silent.kuasapmaterial.libs.AlarmHelper;
+import silent.kuasapmaterial.libs.ScoreWatcher;
 import silent.kuasapmaterial.libs.VibrateHelper;
 
 public class BootCompletedReceiver extends BroadcastReceiver {
@@ -14,5 +15,7 @@ public class BootCompletedReceiver extends BroadcastReceiver {
 		AlarmHelper.setBusNotification(context);
 		AlarmHelper.setCourseNotification(context);
 		VibrateHelper.setCourseVibrate(context);
+		ScoreWatcher.schedule(context);
+		CourseWidgetProvider.requestUpdate(context);
 	}
 }
@@ -13,6 +13,7 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.WindowManager;
 import android.widget.AdapterView;
 import android.widget.BaseAdapter;
 import android.widget.LinearLayout;
@@ -20,26 +21,30 @@ import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
 import com.wdullaer.materialdatetimepicker.date.DatePickerDialog;
+import com.wdullaer.materialdatetimepicker.time.TimePickerDialog;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Locale;
 
 import silent.kuasapmaterial.base.SilentActivity;
 import silent.kuasapmaterial.callback.BusBookCallback;
 import silent.kuasapmaterial.callback.BusCallback;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.libs.AlarmHelper;
+import silent.kuasapmaterial.libs.BusBookScheduler;
+import silent.kuasapmaterial.libs.BusTimetableCache;
 import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.ListScrollDistanceCalculator;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
 import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ServerClock;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.libs.compat.HtmlCompat;
 import silent.kuasapmaterial.libs.segmentcontrol.SegmentControl;
@@ -47,8 +52,8 @@ import silent.kuasapmaterial.models.BusModel;
 
 public class BusActivity extends SilentActivity
 		implements SegmentControl.OnSegmentControlClickListener, AdapterView.OnItemClickListener,
-		DatePickerDialog.OnDateSetListener, ListScrollDistanceCalculator.ScrollDistanceListener,
-		SwipeRefreshLayout.OnRefreshListener {
+		DatePickerDialog.OnDateSetListener, TimePickerDialog.OnTimeSetListener,
+		ListScrollDistanceCalculator.ScrollDistanceListener, SwipeRefreshLayout.OnRefreshListener {
 
 	SegmentControl mSegmentControl;
 	ListView mListView;
@@ -60,10 +65,13 @@ public class BusActivity extends SilentActivity
 	SwipeRefreshLayout mSwipeRefreshLayout;
 
 	String mDate;
+	// The bus to book at the time picked
+	String mTimedBusId;
+	long mTimedRunMillis;
 	List<BusModel> mJianGongList, mYanChaoList;
 	BusAdapter mAdapter;
 	ListScrollDistanceCalculator mListScrollDistanceCalculator;
-	boolean isRetry = false;
+	boolean isRetry = false, isPrefetched = false;
 	private int mInitListPos = 0, mInitListOffset = 0, mIndex = 0;
 
 	@Override
@@ -89,6 +97,8 @@ public class BusActivity extends SilentActivity
 	private void restoreArgs(Bundle savedInstanceState) {
 		if (savedInstanceState != null) {
 			mDate = savedInstanceState.getString("mDate");
+			mTimedBusId = savedInstanceState.getString("mTimedBusId");
+			mTimedRunMillis = savedInstanceState.getLong("mTimedRunMillis");
 			mIndex = savedInstanceState.getInt("mIndex");
 			mInitListPos = savedInstanceState.getInt("mInitListPos");
 			mInitListOffset = savedInstanceState.getInt("mInitListOffset");
@@ -123,6 +133,8 @@ public class BusActivity extends SilentActivity
 		super.onSaveInstanceState(outState);
 
 		outState.putString("mDate", mDate);
+		outState.putString("mTimedBusId", mTimedBusId);
+		outState.putLong("mTimedRunMillis", mTimedRunMillis);
 		outState.putInt("mIndex", mIndex);
 		outState.putBoolean("isRetry", isRetry);
 		if (mListView != null) {
@@ -145,7 +157,7 @@ public class BusActivity extends SilentActivity
 			case Constant.REQUEST_BUS_RESERVATIONS:
 				if (resultCode == RESULT_OK && data != null) {
 					if (data.hasExtra("isRefresh") && data.getExtras().getBoolean("isRefresh")) {
-						getData();
+						getData(true);
 					}
 				}
 				break;
@@ -161,6 +173,21 @@ public class BusActivity extends SilentActivity
 		if (dpd != null) {
 			dpd.setOnDateSetListener(this);
 		}
+		TimePickerDialog tpd =
+				(TimePickerDialog) getFragmentManager().findFragmentByTag("TimePickerDialog");
+		if (tpd != null) {
+			tpd.setOnTimeSetListener(this);
+		}
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+
+		// A rotation hands a timed booking over to the new screen, leaving cancels it
+		if (!isChangingConfigurations()) {
+			BusBookScheduler.cancel();
+		}
 	}
 
 	private void findViews() {
@@ -187,8 +214,7 @@ public class BusActivity extends SilentActivity
 
 			@Override
 			public void onClick(View v) {
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("bus reservations")
-						.setAction("click").build());
+				sendEvent("bus reservations", "click");
 				startActivityForResult(new Intent(BusActivity.this, BusReservationsActivity.class),
 						Constant.REQUEST_BUS_RESERVATIONS);
 			}
@@ -203,9 +229,7 @@ public class BusActivity extends SilentActivity
 
 			@Override
 			public void onClick(View v) {
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("pick date").setAction("click")
-								.build());
+				sendEvent("pick date", "click");
 				showDatePickerDialog();
 			}
 		});
@@ -214,14 +238,11 @@ public class BusActivity extends SilentActivity
 			@Override
 			public void onClick(View v) {
 				if (isRetry) {
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-									.build());
+					sendEvent("retry", "click");
 					isRetry = false;
 					getData();
 				} else {
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("pick date")
-							.setAction("click").build());
+					sendEvent("pick date", "click");
 					showDatePickerDialog();
 				}
 			}
@@ -234,6 +255,12 @@ public class BusActivity extends SilentActivity
 		}
 
 		setUpListView();
+
+		if (BusBookScheduler.isScheduled() && mTimedBusId != null) {
+			// Scheduled by the screen before a rotation
+			BusBookScheduler.setCallback(createBookCallback(mTimedBusId, mTimedRunMillis));
+			setKeepScreenOn(true);
+		}
 	}
 
 	@Override
@@ -241,11 +268,10 @@ public class BusActivity extends SilentActivity
 		if (mDate == null || mDate.length() == 0) {
 			return;
 		}
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe").build());
+		sendEvent("refresh", "swipe");
 		mSwipeRefreshLayout.setRefreshing(true);
 		isRetry = false;
-		getData();
+		getData(true);
 	}
 
 	private void setUpPullRefresh() {
@@ -265,6 +291,13 @@ public class BusActivity extends SilentActivity
 	}
 
 	private void getData() {
+		getData(false);
+	}
+
+	/**
+	 * @param isForce skip the cached timetable, e.g. on pull to refresh
+	 */
+	private void getData(boolean isForce) {
 		if (!mSwipeRefreshLayout.isRefreshing()) {
 			mMaterialProgressBar.setVisibility(View.VISIBLE);
 		}
@@ -274,11 +307,16 @@ public class BusActivity extends SilentActivity
 		mSwipeRefreshLayout.setEnabled(false);
 		mFab.hide();
 
-		Helper.getBusTimeTable(this, mDate, new BusCallback() {
+		final String date = mDate;
+		BusTimetableCache.get(this, date, isForce, new BusCallback() {
 
 			@Override
 			public void onSuccess(List<BusModel> jiangongList, List<BusModel> yanchaoList) {
 				super.onSuccess(jiangongList, yanchaoList);
+				if (!date.equals(mDate)) {
+					// A refetch of a date no longer shown
+					return;
+				}
 
 				mJianGongList = jiangongList;
 				mYanChaoList = yanchaoList;
@@ -289,14 +327,24 @@ public class BusActivity extends SilentActivity
 				mFab.show();
 				mSwipeRefreshLayout.setEnabled(true);
 				mSwipeRefreshLayout.setRefreshing(false);
+
+				if (!isPrefetched) {
+					// The days around are likely to be looked at next
+					isPrefetched = true;
+					BusTimetableCache.prefetch(BusActivity.this, BusTimetableCache.PREFETCH_DAYS);
+				}
 			}
 
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
+				if (!date.equals(mDate)) {
+					return;
+				}
 
-				mJianGongList.clear();
-				mYanChaoList.clear();
+				// The lists may be shared with the cache
+				mJianGongList = new ArrayList<>();
+				mYanChaoList = new ArrayList<>();
 				isRetry = true;
 				setUpListView();
 				mAdapter.notifyDataSetChanged();
@@ -311,17 +359,14 @@ public class BusActivity extends SilentActivity
 			public void onTokenExpired() {
 				super.onTokenExpired();
 				Utils.showTokenExpired(BusActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
 		});
 	}
 
 	@Override
 	public void onSegmentControlClick(int index) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("segment").setAction("click")
-				.setLabel(Integer.toString(index)).build());
+		sendEvent("segment", "click", Integer.toString(index));
 
 		mIndex = index;
 		mAdapter.notifyDataSetChanged();
@@ -387,9 +432,7 @@ public class BusActivity extends SilentActivity
 	public void onItemClick(AdapterView<?> parent, View view, final int position, long id) {
 		final List<BusModel> modelList = mIndex == 0 ? mJianGongList : mYanChaoList;
 		if (modelList.get(position).isReserve) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("cancel bus").setAction("create")
-							.build());
+			sendEvent("cancel bus", "create");
 			new AlertDialog.Builder(this).setTitle(R.string.bus_cancel_reserve_confirm_title)
 					.setMessage(getString(R.string.bus_cancel_reserve_confirm_content, getString(
 							mIndex == 0 ? R.string.bus_from_jiangong : R.string.bus_from_yanchao),
@@ -399,15 +442,15 @@ public class BusActivity extends SilentActivity
 
 								@Override
 								public void onClick(DialogInterface dialog, int which) {
-									mTracker.send(
-											new HitBuilders.EventBuilder().setCategory("cancel bus")
-													.setAction("click").build());
+									sendEvent("cancel bus", "click");
 									cancelBookBus(modelList, position);
 								}
 							}).setNegativeButton(R.string.back, null).show();
 		} else {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("book bus").setAction("create")
-					.build());
+			sendEvent("book bus", "create");
+			final boolean isScheduled = BusBookScheduler.isScheduled();
+			int timedRes =
+					isScheduled ? R.string.bus_reserve_timed_cancel : R.string.bus_reserve_timed;
 			new AlertDialog.Builder(this).setTitle(R.string.bus_reserve_confirm_title).setMessage(
 					getString(R.string.bus_reserve_confirm_content, getString(
 							mIndex == 0 ? R.string.bus_from_jiangong : R.string.bus_from_yanchao),
@@ -416,9 +459,21 @@ public class BusActivity extends SilentActivity
 
 						@Override
 						public void onClick(DialogInterface dialog, int which) {
-							mTracker.send(new HitBuilders.EventBuilder().setCategory("book bus")
-									.setAction("click").build());
-							bookBus(modelList.get(position).busId);
+							sendEvent("book bus", "click");
+							bookBus(modelList.get(position));
+						}
+					}).setNeutralButton(timedRes, new DialogInterface.OnClickListener() {
+
+						@Override
+						public void onClick(DialogInterface dialog, int which) {
+							if (isScheduled) {
+								sendEvent("timed book bus", "cancel");
+								BusBookScheduler.cancel();
+								setKeepScreenOn(false);
+							} else {
+								sendEvent("timed book bus", "create");
+								showTimePickerDialog(modelList.get(position));
+							}
 						}
 					}).setNegativeButton(R.string.cancel, null).show();
 		}
@@ -432,8 +487,7 @@ public class BusActivity extends SilentActivity
 					@Override
 					public void onSuccess() {
 						super.onSuccess();
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("cancel bus")
-								.setAction("status").setLabel("success " + mIndex).build());
+						sendEvent("cancel bus", "status", "success " + mIndex);
 						if (Memory.getBoolean(BusActivity.this, Constant.PREF_BUS_NOTIFY, false)) {
 							// must cancel alarm
 							AlarmHelper.cancelBusAlarm(BusActivity.this,
@@ -441,6 +495,7 @@ public class BusActivity extends SilentActivity
 									modelList.get(position).runDateTime,
 									Integer.parseInt(modelList.get(position).cancelKey));
 						}
+						BusTimetableCache.invalidate(mDate);
 						getData();
 						Toast.makeText(BusActivity.this, R.string.bus_cancel_reserve_success,
 								Toast.LENGTH_LONG).show();
@@ -449,8 +504,7 @@ public class BusActivity extends SilentActivity
 					@Override
 					public void onFail(String errorMessage) {
 						super.onFail(errorMessage);
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("cancel bus")
-								.setAction("status").setLabel("fail " + mIndex).build());
+						sendEvent("cancel bus", "status", "fail " + mIndex);
 						Toast.makeText(BusActivity.this, errorMessage, Toast.LENGTH_LONG).show();
 					}
 
@@ -458,21 +512,78 @@ public class BusActivity extends SilentActivity
 					public void onTokenExpired() {
 						super.onTokenExpired();
 						Utils.showTokenExpired(BusActivity.this);
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("token")
-								.setAction("expired").build());
+						sendEvent("token", "expired");
 					}
 				});
 	}
 
-	private void bookBus(final String busId) {
-		Helper.bookingBus(BusActivity.this, busId, new BusBookCallback() {
+	private void showTimePickerDialog(BusModel model) {
+		mTimedBusId = model.busId;
+		mTimedRunMillis = model.runMillis;
+		// Bookings open on the hour, the next one by the server clock
+		Calendar open = Calendar.getInstance();
+		open.setTimeInMillis(System.currentTimeMillis() + ServerClock.getOffset());
+		open.add(Calendar.HOUR_OF_DAY, 1);
+		TimePickerDialog tpd =
+				TimePickerDialog.newInstance(this, open.get(Calendar.HOUR_OF_DAY), 0, true);
+		tpd.setThemeDark(false);
+		tpd.vibrate(false);
+		tpd.dismissOnPause(false);
+		tpd.show(getFragmentManager(), "TimePickerDialog");
+	}
+
+	@Override
+	public void onTimeSet(TimePickerDialog view, int hourOfDay, int minute, int second) {
+		if (mTimedBusId == null) {
+			return;
+		}
+		// The time picked is by the server clock, the next time it comes
+		long serverNow = System.currentTimeMillis() + ServerClock.getOffset();
+		Calendar open = Calendar.getInstance();
+		open.setTimeInMillis(serverNow);
+		open.set(Calendar.HOUR_OF_DAY, hourOfDay);
+		open.set(Calendar.MINUTE, minute);
+		open.set(Calendar.SECOND, second);
+		open.set(Calendar.MILLISECOND, 0);
+		if (open.getTimeInMillis() <= serverNow) {
+			open.add(Calendar.DAY_OF_MONTH, 1);
+		}
+
+		sendEvent("timed book bus", "click", hourOfDay + ":" + minute);
+		BusBookScheduler.schedule(this, mTimedBusId, open.getTimeInMillis(),
+				createBookCallback(mTimedBusId, mTimedRunMillis));
+		// The timers stop while the device sleeps
+		setKeepScreenOn(true);
+		Toast.makeText(this, getString(R.string.bus_reserve_timed_scheduled,
+				String.format(Locale.getDefault(), "%02d:%02d", hourOfDay, minute),
+				ServerClock.getOffset() / 1000.0), Toast.LENGTH_LONG).show();
+	}
+
+	private void setKeepScreenOn(boolean isKeepScreenOn) {
+		if (isKeepScreenOn) {
+			getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+		} else {
+			getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+		}
+	}
+
+	private void bookBus(BusModel model) {
+		Helper.bookingBus(BusActivity.this, model.busId,
+				createBookCallback(model.busId, model.runMillis));
+	}
+
+	/**
+	 * @param runMillis departure of the bus, the timetable of its date is dropped once booked
+	 */
+	private BusBookCallback createBookCallback(final String busId, final long runMillis) {
+		return new BusBookCallback() {
 
 			@Override
 			public void onSuccess() {
 				super.onSuccess();
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("book bus").setAction("status")
-								.setLabel("success " + mIndex).build());
+				setKeepScreenOn(false);
+				sendEvent("book bus", "status", "success " + mIndex);
+				BusTimetableCache.invalidate(runMillis);
 				if (Memory.getBoolean(BusActivity.this, Constant.PREF_BUS_NOTIFY, false)) {
 					mMaterialProgressBar.setVisibility(View.VISIBLE);
 					mListView.setVisibility(View.GONE);
@@ -485,16 +596,14 @@ public class BusActivity extends SilentActivity
 						@Override
 						public void onSuccess() {
 							super.onSuccess();
-							mTracker.send(new HitBuilders.EventBuilder().setCategory("notify bus")
-									.setAction("status").setLabel("success").build());
+							sendEvent("notify bus", "status", "success");
 							getData();
 						}
 
 						@Override
 						public void onFail(String errorMessage) {
 							super.onFail(errorMessage);
-							mTracker.send(new HitBuilders.EventBuilder().setCategory("notify bus")
-									.setAction("status").setLabel("fail " + errorMessage).build());
+							sendEvent("notify bus", "status", "fail " + errorMessage);
 							getData();
 						}
 
@@ -514,9 +623,8 @@ public class BusActivity extends SilentActivity
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("book bus").setAction("status")
-								.setLabel("fail " + busId).build());
+				setKeepScreenOn(false);
+				sendEvent("book bus", "status", "fail " + busId);
 				Toast.makeText(BusActivity.this, HtmlCompat.fromHtml(errorMessage),
 						Toast.LENGTH_LONG).show();
 			}
@@ -524,8 +632,8 @@ public class BusActivity extends SilentActivity
 			@Override
 			public void onReserveFail(String errorMessage) {
 				super.onReserveFail(errorMessage);
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("book bus")
-						.setAction("system ban").setLabel(errorMessage).build());
+				setKeepScreenOn(false);
+				sendEvent("book bus", "system ban", errorMessage);
 				if (isFinishing()) {
 					return;
 				}
@@ -537,19 +645,17 @@ public class BusActivity extends SilentActivity
 			@Override
 			public void onTokenExpired() {
 				super.onTokenExpired();
+				setKeepScreenOn(false);
 				Utils.showTokenExpired(BusActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
-		});
+		};
 	}
 
 	@Override
 	public void onDateSet(DatePickerDialog view, int year, int monthOfYear, int dayOfMonth) {
-		mDate = year + "-" + (monthOfYear + 1) + "-" + dayOfMonth;
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("date set").setAction("click")
-				.setLabel(mDate).build());
+		mDate = BusTimetableCache.formatDate(year, monthOfYear, dayOfMonth);
+		sendEvent("date set", "click", mDate);
 		mTextView.setText(getString(R.string.bus_pick_date, mDate));
 		getData();
 	}
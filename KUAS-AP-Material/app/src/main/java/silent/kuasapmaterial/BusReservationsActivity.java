@@ -18,7 +18,6 @@ import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
@@ -30,6 +29,7 @@ import silent.kuasapmaterial.base.SilentActivity;
 import silent.kuasapmaterial.callback.BusReservationsCallback;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.libs.AlarmHelper;
+import silent.kuasapmaterial.libs.BusTimetableCache;
 import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
@@ -141,9 +141,7 @@ public class BusReservationsActivity extends SilentActivity
 			@Override
 			public void onClick(View v) {
 				if (isRetry) {
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-									.build());
+					sendEvent("retry", "click");
 					isRetry = false;
 					getData();
 				}
@@ -161,8 +159,7 @@ public class BusReservationsActivity extends SilentActivity
 
 	@Override
 	public void onRefresh() {
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe").build());
+		sendEvent("refresh", "swipe");
 		mSwipeRefreshLayout.setRefreshing(true);
 		isRetry = false;
 		getData();
@@ -187,6 +184,7 @@ public class BusReservationsActivity extends SilentActivity
 			public void onSuccess(List<BusModel> modelList) {
 				super.onSuccess(modelList);
 
+				Utils.saveBusReservations(BusReservationsActivity.this, modelList);
 				if (Memory.getBoolean(BusReservationsActivity.this, Constant.PREF_BUS_NOTIFY,
 						false)) {
 					AlarmHelper.setBusNotification(BusReservationsActivity.this, modelList);
@@ -230,17 +228,14 @@ public class BusReservationsActivity extends SilentActivity
 			public void onTokenExpired() {
 				super.onTokenExpired();
 				Utils.showTokenExpired(BusReservationsActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
 		});
 	}
 
 	@Override
 	public void onItemClick(AdapterView<?> parent, View view, final int position, long id) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("cancel bus").setAction("create")
-				.build());
+		sendEvent("cancel bus", "create");
 		boolean index = mList.get(position).endStation.equals("燕巢");
 		new AlertDialog.Builder(this).setTitle(R.string.bus_cancel_reserve_confirm_title)
 				.setMessage(getString(R.string.bus_cancel_reserve_confirm_content,
@@ -251,9 +246,7 @@ public class BusReservationsActivity extends SilentActivity
 
 							@Override
 							public void onClick(DialogInterface dialog, int which) {
-								mTracker.send(
-										new HitBuilders.EventBuilder().setCategory("cancel bus")
-												.setAction("click").build());
+								sendEvent("cancel bus", "click");
 								cancelBookBus(mList, position);
 							}
 						}).setNegativeButton(R.string.back, null).show();
@@ -267,8 +260,7 @@ public class BusReservationsActivity extends SilentActivity
 					@Override
 					public void onSuccess() {
 						super.onSuccess();
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("cancel bus")
-								.setAction("status").setLabel("success").build());
+						sendEvent("cancel bus", "status", "success");
 
 						if (Memory
 								.getBoolean(BusReservationsActivity.this, Constant.PREF_BUS_NOTIFY,
@@ -279,6 +271,7 @@ public class BusReservationsActivity extends SilentActivity
 									modelList.get(position).runDateTime,
 									Integer.parseInt(modelList.get(position).cancelKey));
 						}
+						BusTimetableCache.invalidate(modelList.get(position).runMillis);
 						getData();
 						Toast.makeText(BusReservationsActivity.this,
 								R.string.bus_cancel_reserve_success, Toast.LENGTH_LONG).show();
@@ -287,8 +280,7 @@ public class BusReservationsActivity extends SilentActivity
 					@Override
 					public void onFail(String errorMessage) {
 						super.onFail(errorMessage);
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("cancel bus")
-								.setAction("status").setLabel("fail " + errorMessage).build());
+						sendEvent("cancel bus", "status", "fail " + errorMessage);
 						Toast.makeText(BusReservationsActivity.this, R.string.something_error,
 								Toast.LENGTH_LONG).show();
 					}
@@ -356,8 +348,10 @@ public class BusReservationsActivity extends SilentActivity
 						ContextCompat.getColor(BusReservationsActivity.this, R.color.green_600));
 				holder.textView_location.setText(getString(R.string.bus_yanchao_reservations));
 			}
-			holder.textView_date.setText(mList.get(position).runDateTime.split(" ")[0]);
-			holder.textView_time.setText(mList.get(position).runDateTime.split(" ")[1]);
+			String runDateTime = mList.get(position).runDateTime;
+			int space = runDateTime.indexOf(' ');
+			holder.textView_date.setText(runDateTime.substring(0, space));
+			holder.textView_time.setText(runDateTime.substring(space + 1));
 			return convertView;
 		}
 
@@ -1,7 +1,8 @@
 package silent.kuasapmaterial;
 
+import android.content.ActivityNotFoundException;
+import android.content.DialogInterface;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
@@ -17,8 +18,8 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
@@ -28,12 +29,16 @@ import java.util.List;
 
 import silent.kuasapmaterial.base.SilentActivity;
 import silent.kuasapmaterial.callback.CourseCallback;
+import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.callback.SemesterCallback;
 import silent.kuasapmaterial.libs.AlarmHelper;
 import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
+import silent.kuasapmaterial.libs.IcsExporter;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
 import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.TimetableIndex;
+import silent.kuasapmaterial.libs.TintCache;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.CourseModel;
 import silent.kuasapmaterial.models.SemesterModel;
@@ -53,6 +58,7 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 	String mYms;
 	List<String> mSections;
 	List<List<CourseModel>> mList;
+	TimetableIndex mIndex;
 	List<SemesterModel> mSemesterList;
 	SemesterModel mSelectedModel;
 	boolean isRetry = false;
@@ -122,6 +128,7 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 		if (mSections == null) {
 			mSections = new ArrayList<>();
 		}
+		mIndex = TimetableIndex.build(mSections, mList);
 	}
 
 	@Override
@@ -210,10 +217,9 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 		setUpPullRefresh();
 		mHolidayTextView.setText(getString(R.string.course_holiday, "\uD83D\uDE06"));
 
-		Bitmap sourceBitmap = Utils.convertDrawableToBitmap(
-				ContextCompat.getDrawable(this, R.drawable.ic_keyboard_arrow_down_white_24dp));
-		int color = ContextCompat.getColor(this, R.color.accent);
-		mPickYmsImageView.setImageBitmap(Utils.changeImageColor(sourceBitmap, color));
+		mPickYmsImageView.setImageDrawable(TintCache.getDrawable(this,
+				R.drawable.ic_keyboard_arrow_down_white_24dp,
+				ContextCompat.getColor(this, R.color.accent)));
 
 		mRecyclerView.scrollTo(0, mPos);
 		mPickYmsView.setOnClickListener(new View.OnClickListener() {
@@ -223,23 +229,31 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 				if (mSelectedModel == null) {
 					return;
 				}
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("pick yms").setAction("click")
-								.build());
+				sendEvent("pick yms", "click");
 				Intent intent = new Intent(CourseActivity.this, PickSemesterActivity.class);
 				intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 				intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
 				startActivityForResult(intent, Constant.REQUEST_PICK_SEMESTER);
 			}
 		});
+		mPickYmsView.setOnLongClickListener(new View.OnLongClickListener() {
+
+			@Override
+			public boolean onLongClick(View v) {
+				if (mSemesterList == null || mSemesterList.isEmpty()) {
+					return false;
+				}
+				sendEvent("export ics", "long click");
+				showExportDialog();
+				return true;
+			}
+		});
 		mNoCourseLinearLayout.setOnClickListener(new View.OnClickListener() {
 
 			@Override
 			public void onClick(View v) {
 				if (isRetry) {
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-									.setLabel((mSemesterList == null) + "").build());
+					sendEvent("retry", "click", (mSemesterList == null) + "");
 					isRetry = false;
 					if (mSemesterList == null || mSelectedModel == null) {
 						getSemester();
@@ -251,8 +265,7 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 						getSemester();
 						return;
 					}
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("pick yms")
-							.setAction("click").build());
+					sendEvent("pick yms", "click");
 					Intent intent = new Intent(CourseActivity.this, PickSemesterActivity.class);
 					intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 					intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
@@ -270,11 +283,92 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 		}
 	}
 
+	private void showExportDialog() {
+		String[] texts = new String[mSemesterList.size()];
+		final boolean[] checkedItems = new boolean[mSemesterList.size()];
+		for (int i = 0; i < mSemesterList.size(); i++) {
+			texts[i] = mSemesterList.get(i).text;
+			checkedItems[i] = mSemesterList.get(i) == mSelectedModel ||
+					(mSelectedModel != null && mSemesterList.get(i).value != null &&
+							mSemesterList.get(i).value.equals(mSelectedModel.value));
+		}
+		new AlertDialog.Builder(this).setTitle(R.string.export_ics_title)
+				.setMultiChoiceItems(texts, checkedItems,
+						new DialogInterface.OnMultiChoiceClickListener() {
+
+							@Override
+							public void onClick(DialogInterface dialog, int which,
+							                    boolean isChecked) {
+								checkedItems[which] = isChecked;
+							}
+						})
+				.setPositiveButton(R.string.export_ics, new DialogInterface.OnClickListener() {
+
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						List<SemesterModel> semesters = new ArrayList<>();
+						for (int i = 0; i < checkedItems.length; i++) {
+							if (checkedItems[i]) {
+								semesters.add(mSemesterList.get(i));
+							}
+						}
+						exportIcs(semesters);
+					}
+				}).setNegativeButton(R.string.cancel, null).show();
+	}
+
+	private void exportIcs(List<SemesterModel> semesters) {
+		final AlertDialog progressDialog = Utils.createLoadingDialog(this, R.string.loading);
+		progressDialog.show();
+		IcsExporter.export(this, semesters, new GeneralCallback() {
+
+			@Override
+			public void onSuccess(String data) {
+				super.onSuccess(data);
+
+				Utils.dismissDialog(progressDialog);
+				if (isFinishing()) {
+					return;
+				}
+				sendEvent("export ics", "success");
+				try {
+					startActivity(Intent.createChooser(IcsExporter.createShareIntent(data),
+							getString(R.string.share_to)));
+				} catch (ActivityNotFoundException e) {
+					Toast.makeText(CourseActivity.this, R.string.calender_app_not_found,
+							Toast.LENGTH_SHORT).show();
+				}
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				Utils.dismissDialog(progressDialog);
+				if (!isFinishing()) {
+					sendEvent("export ics", "fail", errorMessage);
+					Toast.makeText(CourseActivity.this, R.string.something_error,
+							Toast.LENGTH_SHORT).show();
+				}
+			}
+
+			@Override
+			public void onTokenExpired() {
+				super.onTokenExpired();
+
+				Utils.dismissDialog(progressDialog);
+				if (!isFinishing()) {
+					Utils.showTokenExpired(CourseActivity.this);
+					sendEvent("token", "expired");
+				}
+			}
+		});
+	}
+
 	@Override
 	public void onRefresh() {
 		if (mYms != null) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe")
-					.build());
+			sendEvent("refresh", "swipe");
 			isRetry = false;
 			mSwipeRefreshLayout.setRefreshing(true);
 			getData(false);
@@ -301,17 +395,22 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 
 					@Override
 					public void onSuccess(List<String> sections,
-					                      List<List<CourseModel>> modelList) {
-						super.onSuccess(sections, modelList);
+					                      List<List<CourseModel>> modelList,
+					                      TimetableIndex index) {
+						super.onSuccess(sections, modelList, index);
 
+						if (isSave) {
+							Utils.saveCourseTimetable(CourseActivity.this, sections, modelList);
+						}
 						if (isSave &&
 								Memory.getBoolean(CourseActivity.this, Constant.PREF_COURSE_NOTIFY,
 										false)) {
-							AlarmHelper.setCourseNotification(CourseActivity.this, modelList);
+							AlarmHelper.setCourseNotification(CourseActivity.this, index);
 						}
 
 						mSections = sections;
 						mList = modelList;
+						mIndex = index;
 						setUpCourseTable();
 						mPickYmsView.setEnabled(true);
 					}
@@ -321,6 +420,7 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 						super.onFail(errorMessage);
 
 						mList.clear();
+						mIndex = TimetableIndex.build(mSections, mList);
 						isRetry = true;
 						setUpCourseTable();
 						mPickYmsView.setEnabled(true);
@@ -330,8 +430,7 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 					public void onTokenExpired() {
 						super.onTokenExpired();
 						Utils.showTokenExpired(CourseActivity.this);
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("token")
-								.setAction("expired").build());
+						sendEvent("token", "expired");
 					}
 				});
 	}
@@ -372,18 +471,19 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 	}
 
 	private void showCourseDialog(final int weekday, final int section) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("show course").setAction("click")
-				.setLabel(mList.get(weekday).get(section).title).build());
+		CourseModel courseModel = mIndex.get(weekday, section);
+		if (courseModel == null) {
+			return;
+		}
+		sendEvent("show course", "click", courseModel.title);
 
 		StringBuilder instructors = new StringBuilder(
-				mList.get(weekday).get(section).instructors.size() > 0 ?
-						mList.get(weekday).get(section).instructors.get(0) : "");
-		for (int k = 1; k < mList.get(weekday).get(section).instructors.size(); k++) {
+				courseModel.instructors.size() > 0 ? courseModel.instructors.get(0) : "");
+		for (int k = 1; k < courseModel.instructors.size(); k++) {
 			instructors.append(",");
-			instructors.append(mList.get(weekday).get(section).instructors.get(k));
+			instructors.append(courseModel.instructors.get(k));
 		}
 
-		CourseModel courseModel = mList.get(weekday).get(section);
 		new AlertDialog.Builder(CourseActivity.this).setTitle(R.string.course_dialog_title)
 				.setMessage(
 						getString(R.string.course_dialog_messages, courseModel.title, instructors,
@@ -393,39 +493,11 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 	}
 
 	private void checkCourseTableType() {
-		isHoliday = false;
-		isNight = false;
-		isHolidayNight = false;
-		isB = false;
-		isHolidayB = false;
-
-		for (int i = 0;
-		     i < mList.size() && !(isHolidayNight && isHoliday && isNight && isHolidayB && isB);
-		     i++) {
-			if (mList.get(i) != null) {
-				if (i > 4) {
-					isHoliday = true;
-				}
-				for (int j = 0; j < mList.get(i).size() &&
-						!(isHolidayNight && isHoliday && isNight && isHolidayB && isB); j++) {
-					if (mList.get(i).get(j) != null) {
-						if (j > 10) {
-							if (i > 4) {
-								isHolidayNight = true;
-							} else {
-								isNight = true;
-							}
-						} else if (j == 10) {
-							if (i > 4) {
-								isHolidayB = true;
-							} else {
-								isB = true;
-							}
-						}
-					}
-				}
-			}
-		}
+		isHoliday = mIndex.isHoliday;
+		isNight = mIndex.isNight;
+		isHolidayNight = mIndex.isHolidayNight;
+		isB = mIndex.isB;
+		isHolidayB = mIndex.isHolidayB;
 
 		if (!((Utils.isWide(this) || Utils.isLand(this)) && isHoliday)) {
 			if (isHoliday) {
@@ -502,18 +574,12 @@ public class CourseActivity extends SilentActivity implements SwipeRefreshLayout
 						ContextCompat.getColor(CourseActivity.this, R.color.black_text));
 				holder.textView.setTextSize(TypedValue.COMPLEX_UNIT_SP, 15);
 
-				List<CourseModel> modelList = position % getWidth() - 1 < mList.size() ?
-						mList.get(position % getWidth() - 1) : null;
-				if (modelList != null) {
-					CourseModel model = position / getWidth() - 1 < modelList.size() ?
-							modelList.get(position / getWidth() - 1) : null;
-					if (model != null) {
-						holder.textView.setText(model.title.substring(0, 2));
-						holder.itemView.setTag(position);
-						holder.itemView.setOnClickListener(this);
-					} else {
-						holder.textView.setText("");
-					}
+				CourseModel model =
+						mIndex.get(position % getWidth() - 1, position / getWidth() - 1);
+				if (model != null) {
+					holder.textView.setText(model.title.substring(0, 2));
+					holder.itemView.setTag(position);
+					holder.itemView.setOnClickListener(this);
 				} else {
 					holder.textView.setText("");
 				}
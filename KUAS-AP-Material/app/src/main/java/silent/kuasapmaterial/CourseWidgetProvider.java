@@ -0,0 +1,187 @@
+package silent.kuasapmaterial;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.widget.RemoteViews;
+
+import com.kuas.ap.R;
+
+import java.util.Calendar;
+import java.util.List;
+
+import silent.kuasapmaterial.libs.TimetableIndex;
+import silent.kuasapmaterial.libs.Utils;
+import silent.kuasapmaterial.models.BusModel;
+import silent.kuasapmaterial.models.CourseModel;
+import silent.kuasapmaterial.models.TimetableModel;
+
+/**
+ * Home screen widget showing today's remaining courses and the next bus reservation.
+ * It only reads the snapshots saved by {@link Utils#saveCourseTimetable} and
+ * {@link Utils#saveBusReservations}, and schedules its next update at the next section boundary
+ * instead of polling.
+ */
+
+public class CourseWidgetProvider extends AppWidgetProvider {
+
+	private static final String ACTION_REFRESH = "silent.kuasapmaterial.action.WIDGET_REFRESH";
+
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		if (ACTION_REFRESH.equals(intent.getAction())) {
+			requestUpdate(context);
+			return;
+		}
+		super.onReceive(context, intent);
+	}
+
+	@Override
+	public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+		super.onUpdate(context, appWidgetManager, appWidgetIds);
+		update(context, appWidgetManager, appWidgetIds);
+	}
+
+	@Override
+	public void onDisabled(Context context) {
+		super.onDisabled(context);
+		AlarmManager alarm = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		alarm.cancel(createRefreshPendingIntent(context));
+	}
+
+	/**
+	 * Redraw all widgets, call after the snapshots change
+	 */
+	public static void requestUpdate(Context context) {
+		AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+		int[] appWidgetIds = appWidgetManager
+				.getAppWidgetIds(new ComponentName(context, CourseWidgetProvider.class));
+		if (appWidgetIds == null || appWidgetIds.length == 0) {
+			return;
+		}
+		update(context, appWidgetManager, appWidgetIds);
+	}
+
+	private static void update(Context context, AppWidgetManager appWidgetManager,
+	                           int[] appWidgetIds) {
+		Calendar calendar = Calendar.getInstance();
+		long now = calendar.getTimeInMillis();
+		int weekday = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+		int minuteOfDay =
+				calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+
+		TimetableModel timetable = Utils.loadCourseTimetable(context);
+		TimetableIndex index = timetable == null ? null :
+				TimetableIndex.build(timetable.sections, timetable.courses);
+		BusModel nextBus = findNextBus(Utils.loadBusReservations(context), now);
+
+		RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_course);
+		views.setTextViewText(R.id.textView_course,
+				buildCourseText(context, index, weekday, minuteOfDay));
+		views.setTextViewText(R.id.textView_bus, buildBusText(context, nextBus));
+		views.setOnClickPendingIntent(R.id.linearLayout, PendingIntent
+				.getActivity(context, 0, new Intent(context, LoginActivity.class),
+						PendingIntent.FLAG_UPDATE_CURRENT));
+		appWidgetManager.updateAppWidget(appWidgetIds, views);
+
+		scheduleNextUpdate(context, calendar, index, minuteOfDay, nextBus);
+	}
+
+	private static String buildCourseText(Context context, TimetableIndex index, int weekday,
+	                                      int minuteOfDay) {
+		if (index == null) {
+			return context.getString(R.string.widget_no_data);
+		}
+		StringBuilder builder = new StringBuilder();
+		int lastCourseId = TimetableIndex.NONE, firstSection = 0;
+		boolean isAppended = false;
+		long occupied = index.getOccupiedSections(weekday);
+		while (occupied != 0) {
+			int section = Long.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			int courseId = index.getCourseId(weekday, section);
+			// Consecutive sections of the same course are shown once, from its first section
+			if (courseId != lastCourseId) {
+				lastCourseId = courseId;
+				firstSection = section;
+				isAppended = false;
+			}
+			// A course in progress is still shown after its first sections ended
+			if (isAppended || index.getSectionEnd(section) <= minuteOfDay) {
+				continue;
+			}
+			isAppended = true;
+			CourseModel model = index.get(weekday, section);
+			if (builder.length() > 0) {
+				builder.append('\n');
+			}
+			builder.append(index.get(weekday, firstSection).start_time).append(' ')
+					.append(model.title);
+			if (model.room != null && model.room.length() > 0) {
+				builder.append(" @ ").append(model.room);
+			}
+		}
+		return builder.length() == 0 ? context.getString(R.string.widget_no_course) :
+				builder.toString();
+	}
+
+	private static String buildBusText(Context context, BusModel model) {
+		if (model == null) {
+			return context.getString(R.string.widget_no_bus);
+		}
+		return context.getString("燕巢".equals(model.endStation) ? R.string.bus_jiangong :
+				R.string.bus_yanchao) + model.runDateTime;
+	}
+
+	private static BusModel findNextBus(List<BusModel> modelList, long now) {
+		if (modelList == null) {
+			return null;
+		}
+		BusModel nextBus = null;
+		for (BusModel model : modelList) {
+			if (model.runMillis > now && (nextBus == null || model.runMillis < nextBus.runMillis)) {
+				nextBus = model;
+			}
+		}
+		return nextBus;
+	}
+
+	/**
+	 * The widget content only changes when a section starts or ends, a bus departs, or the day
+	 * changes, so wake up at the earliest of those.
+	 */
+	private static void scheduleNextUpdate(Context context, Calendar calendar,
+	                                       TimetableIndex index, int minuteOfDay,
+	                                       BusModel nextBus) {
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		long startOfDay = calendar.getTimeInMillis();
+		calendar.add(Calendar.DAY_OF_MONTH, 1);
+		long triggerAtMillis = calendar.getTimeInMillis();
+
+		int boundary = index == null ? TimetableIndex.NONE : index.findNextBoundary(minuteOfDay);
+		if (boundary != TimetableIndex.NONE) {
+			triggerAtMillis = Math.min(triggerAtMillis, startOfDay + boundary * 60 * 1000L);
+		}
+		if (nextBus != null) {
+			triggerAtMillis = Math.min(triggerAtMillis, nextBus.runMillis);
+		}
+
+		AlarmManager alarm = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+		// RTC rather than RTC_WAKEUP, nobody looks at the widget while the screen is off
+		alarm.set(AlarmManager.RTC, triggerAtMillis, createRefreshPendingIntent(context));
+	}
+
+	private static PendingIntent createRefreshPendingIntent(Context context) {
+		Intent intent = new Intent(context, CourseWidgetProvider.class);
+		intent.setAction(ACTION_REFRESH);
+		return PendingIntent
+				.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+}
@@ -1,7 +1,6 @@
 package silent.kuasapmaterial;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.content.ContextCompat;
@@ -15,7 +14,6 @@ import android.widget.TableRow;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
@@ -32,6 +30,7 @@ import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
 import silent.kuasapmaterial.libs.ObservableScrollView;
+import silent.kuasapmaterial.libs.TintCache;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.LeaveModel;
 import silent.kuasapmaterial.models.SemesterModel;
@@ -206,10 +205,9 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 			}
 		});
 
-		Bitmap sourceBitmap = Utils.convertDrawableToBitmap(
-				ContextCompat.getDrawable(this, R.drawable.ic_keyboard_arrow_down_white_24dp));
-		int color = ContextCompat.getColor(this, R.color.accent);
-		mPickYmsImageView.setImageBitmap(Utils.changeImageColor(sourceBitmap, color));
+		mPickYmsImageView.setImageDrawable(TintCache.getDrawable(this,
+				R.drawable.ic_keyboard_arrow_down_white_24dp,
+				ContextCompat.getColor(this, R.color.accent)));
 
 		mScrollView.scrollTo(0, mPos);
 		mPickYmsView.setOnClickListener(new View.OnClickListener() {
@@ -219,9 +217,7 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 				if (mSelectedModel == null) {
 					return;
 				}
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("pick yms").setAction("click")
-								.build());
+				sendEvent("pick yms", "click");
 				Intent intent = new Intent(LeaveActivity.this, PickSemesterActivity.class);
 				intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 				intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
@@ -233,9 +229,7 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 			@Override
 			public void onClick(View v) {
 				if (isRetry) {
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-									.setLabel((mSemesterList == null) + "").build());
+					sendEvent("retry", "click", (mSemesterList == null) + "");
 					isRetry = false;
 					if (mSemesterList == null || mSelectedModel == null) {
 						getSemester();
@@ -247,8 +241,7 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 						getSemester();
 						return;
 					}
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("pick yms")
-							.setAction("click").build());
+					sendEvent("pick yms", "click");
 					Intent intent = new Intent(LeaveActivity.this, PickSemesterActivity.class);
 					intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 					intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
@@ -269,8 +262,7 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 	@Override
 	public void onRefresh() {
 		if (mYms != null) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe")
-					.build());
+			sendEvent("refresh", "swipe");
 			isRetry = false;
 			mSwipeRefreshLayout.setRefreshing(true);
 			getData();
@@ -314,9 +306,7 @@ public class LeaveActivity extends SilentActivity implements SwipeRefreshLayout.
 			public void onTokenExpired() {
 				super.onTokenExpired();
 				Utils.showTokenExpired(LeaveActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
 		});
 	}
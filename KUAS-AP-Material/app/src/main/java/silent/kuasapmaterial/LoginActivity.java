@@ -21,7 +21,6 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.crashlytics.android.Crashlytics;
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.remoteconfig.FirebaseRemoteConfig;
@@ -29,14 +28,16 @@ import com.google.firebase.remoteconfig.FirebaseRemoteConfigSettings;
 import com.kuas.ap.BuildConfig;
 import com.kuas.ap.R;
 
-import java.io.UnsupportedEncodingException;
 
 import silent.kuasapmaterial.base.SilentActivity;
+import silent.kuasapmaterial.base.SilentApplication;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.callback.ServerStatusCallback;
 import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+import silent.kuasapmaterial.libs.Startup;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.ServerStatusModel;
 
@@ -107,6 +108,7 @@ public class LoginActivity extends SilentActivity
 		}
 		checkUpdateNote(getString(R.string.version, version));
 
+		Startup.ensure(SilentApplication.INIT_FIREBASE);
 		mFirebaseRemoteConfig = FirebaseRemoteConfig.getInstance();
 		FirebaseRemoteConfigSettings configSettings = new FirebaseRemoteConfigSettings.Builder()
 				.setDeveloperModeEnabled(BuildConfig.DEBUG).build();
@@ -205,19 +207,7 @@ public class LoginActivity extends SilentActivity
 		mPasswordTextInputLayout.setHint(getString(R.string.password_hint));
 		mIdEditText.setText(Memory.getString(this, Constant.PREF_USERNAME, ""));
 
-		String pwd = Memory.getString(this, Constant.PREF_PASSWORD, "");
-		if (pwd.length() > 0) {
-			try {
-				byte[] TextByte = Utils.DecryptAES(Constant.IvAES.getBytes("UTF-8"),
-						Constant.KeyAES.getBytes("UTF-8"),
-						Base64.decode(pwd.getBytes("UTF-8"), Base64.DEFAULT));
-				if (TextByte != null) {
-					mPasswordEditText.setText(new String(TextByte, "UTF-8"));
-				}
-			} catch (UnsupportedEncodingException e) {
-				e.printStackTrace();
-			}
-		}
+		mPasswordEditText.setText(Utils.decryptPassword(this));
 		mRememberCheckBox
 				.setChecked(Memory.getBoolean(this, Constant.PREF_REMEMBER_PASSWORD, true));
 		mAutoLoginCheckBox.setChecked(Memory.getBoolean(this, Constant.PREF_AUTO_LOGIN, false));
@@ -247,9 +237,7 @@ public class LoginActivity extends SilentActivity
 		if (v.getId() == R.id.button_login) {
 			String id = mIdEditText.getText().toString();
 			if (id.length() != 0 && id.length() < 10) {
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("login").setAction("status")
-								.setLabel("teacher").build());
+				sendEvent("login", "status", "teacher");
 				new AlertDialog.Builder(this).setTitle(R.string.teacher_confirm_title)
 						.setMessage(R.string.teacher_confirm_content)
 						.setPositiveButton(R.string.continue_to_use,
@@ -267,8 +255,7 @@ public class LoginActivity extends SilentActivity
 	}
 
 	private void login() {
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("login").setAction("click").build());
+		sendEvent("login", "click");
 
 		mIdTextInputLayout.setErrorEnabled(false);
 		mPasswordTextInputLayout.setErrorEnabled(false);
@@ -342,8 +329,10 @@ public class LoginActivity extends SilentActivity
 					e.printStackTrace();
 				}
 				Memory.setBoolean(LoginActivity.this, Constant.PREF_IS_LOGIN, true);
+				ScoreWatcher.schedule(LoginActivity.this);
 				Memory.setBoolean(LoginActivity.this, Constant.PREF_AUTO_LOGIN,
 						mAutoLoginCheckBox.isChecked());
+				Startup.ensure(SilentApplication.INIT_CRASHLYTICS);
 				Crashlytics.setUserName(id);
 				startActivity(new Intent(LoginActivity.this, LogoutActivity.class));
 			}
@@ -355,9 +344,7 @@ public class LoginActivity extends SilentActivity
 		if (v.getId() == R.id.editText_password) {
 			String id = mIdEditText.getText().toString();
 			if (id.length() != 0 && id.length() < 10) {
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("login").setAction("status")
-								.setLabel("teacher").build());
+				sendEvent("login", "status", "teacher");
 				new AlertDialog.Builder(this).setTitle(R.string.teacher_confirm_title)
 						.setMessage(R.string.teacher_confirm_content)
 						.setPositiveButton(R.string.continue_to_use,
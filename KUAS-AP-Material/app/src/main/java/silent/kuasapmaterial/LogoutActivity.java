@@ -10,7 +10,6 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentStatePagerAdapter;
 import android.support.v4.view.ViewPager;
 import android.support.v7.app.AlertDialog;
-import android.util.Base64;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
@@ -18,15 +17,14 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.crashlytics.android.Crashlytics;
-import com.google.android.gms.analytics.HitBuilders;
 import com.kuas.ap.R;
 
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
 import silent.kuasapmaterial.base.SilentActivity;
+import silent.kuasapmaterial.base.SilentApplication;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.callback.NewsCallback;
 import silent.kuasapmaterial.fragment.NewsFragment;
@@ -34,6 +32,8 @@ import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.Memory;
 import silent.kuasapmaterial.libs.NewsPagerTransformer;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+import silent.kuasapmaterial.libs.Startup;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.NewsModel;
 
@@ -77,20 +77,7 @@ public class LogoutActivity extends SilentActivity {
 			return;
 		}
 		final String id = Memory.getString(this, Constant.PREF_USERNAME, "");
-		String pwd = "";
-		String pwdAES = Memory.getString(this, Constant.PREF_PASSWORD, "");
-		if (pwdAES.length() > 0) {
-			try {
-				byte[] TextByte = Utils.DecryptAES(Constant.IvAES.getBytes("UTF-8"),
-						Constant.KeyAES.getBytes("UTF-8"),
-						Base64.decode(pwdAES.getBytes("UTF-8"), Base64.DEFAULT));
-				if (TextByte != null) {
-					pwd = new String(TextByte, "UTF-8");
-				}
-			} catch (UnsupportedEncodingException e) {
-				e.printStackTrace();
-			}
-		}
+		String pwd = Utils.decryptPassword(this);
 		mProgressDialog = Utils.createLoadingDialog(this, R.string.login_ing);
 		mProgressDialog.show();
 		if (Memory.getBoolean(this, Constant.PREF_AUTO_LOGIN, false)) {
@@ -126,8 +113,10 @@ public class LogoutActivity extends SilentActivity {
 						return;
 					}
 					Utils.dismissDialog(mProgressDialog);
+					Startup.ensure(SilentApplication.INIT_CRASHLYTICS);
 					Crashlytics.setUserName(id);
 					Memory.setBoolean(LogoutActivity.this, Constant.PREF_IS_LOGIN, true);
+					ScoreWatcher.schedule(LogoutActivity.this);
 					setUpUserPhoto();
 					setUpUserInfo();
 				}
@@ -169,9 +158,7 @@ public class LogoutActivity extends SilentActivity {
 				if (isFinishing()) {
 					return;
 				}
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("notify bus").setAction("status")
-								.setLabel("fail " + errorMessage).build());
+				sendEvent("notify bus", "status", "fail " + errorMessage);
 				progressDialog.dismiss();
 			}
 
@@ -182,9 +169,7 @@ public class LogoutActivity extends SilentActivity {
 				if (isFinishing()) {
 					return;
 				}
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("notify bus").setAction("status")
-								.setLabel("success").build());
+				sendEvent("notify bus", "status", "success");
 				progressDialog.dismiss();
 			}
 		});
@@ -255,7 +240,8 @@ public class LogoutActivity extends SilentActivity {
 		}
 
 		transformer = new NewsPagerTransformer(this);
-		viewPager.setPageTransformer(false, transformer);
+		// Pages are drawn from hardware layers while dragging or settling, and not while idle
+		viewPager.setPageTransformer(false, transformer, View.LAYER_TYPE_HARDWARE);
 		for (int i = 0; i < newsList.size(); i++) {
 			fragments.add(new NewsFragment());
 		}
@@ -288,6 +274,7 @@ public class LogoutActivity extends SilentActivity {
 			@Override
 			public void onPageSelected(int position) {
 				updateView();
+				updateNewsImages();
 			}
 
 			@Override
@@ -297,6 +284,21 @@ public class LogoutActivity extends SilentActivity {
 		});
 		viewPager.setOffscreenPageLimit(3);
 		updateView();
+		updateNewsImages();
+	}
+
+	/**
+	 * Pages are kept alive three away from the current one, but only the current page and its
+	 * neighbours load images, so the rest don't compete with the login for bandwidth
+	 */
+	private void updateNewsImages() {
+		int current = viewPager.getCurrentItem();
+		fragments.get(current).setImageRequested(true);
+		for (int i = 0; i < fragments.size(); i++) {
+			if (i != current) {
+				fragments.get(i).setImageRequested(Math.abs(i - current) <= 1);
+			}
+		}
 	}
 
 	private void updateView() {
@@ -316,10 +318,20 @@ public class LogoutActivity extends SilentActivity {
 			@Override
 			public void onSuccess(List<NewsModel> modelList) {
 				super.onSuccess(modelList);
-				newsList = modelList;
-				hasNews = newsList.size() != 0;
-				setUpViews();
+				showNews(modelList);
 			}
 		});
 	}
+
+	/**
+	 * Show modelList in the news pager, once per screen
+	 */
+	void showNews(List<NewsModel> modelList) {
+		if (viewPager != null && viewPager.getAdapter() != null) {
+			return;
+		}
+		newsList = modelList;
+		hasNews = newsList.size() != 0;
+		setUpViews();
+	}
 }
@@ -73,11 +73,12 @@ public class MessagesActivity extends SilentActivity {
 					Fragment fragment =
 							getSupportFragmentManager().getFragments().get(tab.getPosition());
 					if (fragment instanceof NotificationFragment) {
-						((NotificationFragment) fragment).getListView().smoothScrollToPosition(0);
+						((NotificationFragment) fragment).getRecyclerView()
+								.smoothScrollToPosition(0);
 					} else if (fragment instanceof PhoneFragment) {
-						((PhoneFragment) fragment).getListView().smoothScrollToPosition(0);
+						((PhoneFragment) fragment).getRecyclerView().smoothScrollToPosition(0);
 					} else if (fragment instanceof ScheduleFragment) {
-						((ScheduleFragment) fragment).getListView().smoothScrollToPosition(0);
+						((ScheduleFragment) fragment).getRecyclerView().smoothScrollToPosition(0);
 					}
 				} else {
 					blockReselection = false;
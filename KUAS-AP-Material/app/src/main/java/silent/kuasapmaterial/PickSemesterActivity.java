@@ -2,7 +2,6 @@ package silent.kuasapmaterial;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v4.content.ContextCompat;
 import android.view.LayoutInflater;
@@ -16,7 +15,6 @@ import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
@@ -24,7 +22,7 @@ import com.kuas.ap.R;
 import java.util.List;
 
 import silent.kuasapmaterial.base.SilentActivity;
-import silent.kuasapmaterial.libs.Utils;
+import silent.kuasapmaterial.libs.TintCache;
 import silent.kuasapmaterial.models.SemesterModel;
 
 public class PickSemesterActivity extends SilentActivity
@@ -70,8 +68,7 @@ public class PickSemesterActivity extends SilentActivity
 
 	@Override
 	public void onBackPressed() {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("pick yms").setAction("click")
-				.setLabel("cancel").build());
+		sendEvent("pick yms", "click", "cancel");
 		super.onBackPressed();
 	}
 
@@ -138,8 +135,7 @@ public class PickSemesterActivity extends SilentActivity
 
 	@Override
 	public void onItemClick(AdapterView<?> parent, View view, final int position, long id) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("pick yms").setAction("click")
-				.setLabel(mSemesterList.get(position).text).build());
+		sendEvent("pick yms", "click", mSemesterList.get(position).text);
 		Intent intent = new Intent();
 		intent.putExtra("mSelectedModel", new Gson().toJson(mSemesterList.get(position)));
 		setResult(RESULT_OK, intent);
@@ -189,10 +185,9 @@ public class PickSemesterActivity extends SilentActivity
 			}
 
 			if (mSemesterList.get(position).text.equals(mSelectedModel.text)) {
-				Bitmap sourceBitmap = Utils.convertDrawableToBitmap(
-						ContextCompat.getDrawable(getBaseContext(), R.drawable.ic_done_white_24dp));
-				int color = ContextCompat.getColor(PickSemesterActivity.this, R.color.accent);
-				holder.imageView.setImageBitmap(Utils.changeImageColor(sourceBitmap, color));
+				holder.imageView.setImageDrawable(TintCache.getDrawable(PickSemesterActivity.this,
+						R.drawable.ic_done_white_24dp,
+						ContextCompat.getColor(PickSemesterActivity.this, R.color.accent)));
 				holder.imageView.setVisibility(View.VISIBLE);
 				holder.textView.setTextColor(
 						ContextCompat.getColor(PickSemesterActivity.this, R.color.accent));
@@ -1,7 +1,6 @@
 package silent.kuasapmaterial;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
@@ -14,24 +13,29 @@ import android.widget.TableLayout;
 import android.widget.TableRow;
 import android.widget.TextView;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import silent.kuasapmaterial.base.SilentActivity;
 import silent.kuasapmaterial.callback.ScoreCallback;
 import silent.kuasapmaterial.callback.SemesterCallback;
+import silent.kuasapmaterial.callback.TranscriptCallback;
 import silent.kuasapmaterial.libs.Constant;
 import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+import silent.kuasapmaterial.libs.TintCache;
+import silent.kuasapmaterial.libs.TranscriptStore;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.ScoreDetailModel;
 import silent.kuasapmaterial.models.ScoreModel;
 import silent.kuasapmaterial.models.SemesterModel;
+import silent.kuasapmaterial.models.SemesterScoreModel;
 
 public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.OnRefreshListener {
 
@@ -50,6 +54,8 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 	SemesterModel mSelectedModel;
 	ScoreDetailModel mScoreDetailModel;
 	boolean isRetry = false;
+	// Showing all semesters instead of mSelectedModel
+	boolean isTranscript = false;
 	private int mPos = 0;
 
 	@Override
@@ -77,6 +83,7 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 			mYms = savedInstanceState.getString("mYms");
 			mPos = savedInstanceState.getInt("mPos");
 			isRetry = savedInstanceState.getBoolean("isRetry");
+			isTranscript = savedInstanceState.getBoolean("isTranscript");
 
 			if (savedInstanceState.containsKey("mList")) {
 				mList = new Gson().fromJson(savedInstanceState.getString("mList"),
@@ -116,6 +123,7 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 
 		outState.putString("mYms", mYms);
 		outState.putBoolean("isRetry", isRetry);
+		outState.putBoolean("isTranscript", isTranscript);
 		if (mScrollView != null) {
 			outState.putInt("mPos", mScrollView.getVerticalScrollbarPosition());
 		}
@@ -145,6 +153,7 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 
 								}.getType());
 						mYms = mSelectedModel.value;
+						isTranscript = false;
 						mPickYmsTextView.setText(mSelectedModel.text);
 						getData();
 					}
@@ -191,10 +200,9 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 	private void setUpViews() {
 		setUpPullRefresh();
 
-		Bitmap sourceBitmap = Utils.convertDrawableToBitmap(
-				ContextCompat.getDrawable(this, R.drawable.ic_keyboard_arrow_down_white_24dp));
-		int color = ContextCompat.getColor(this, R.color.accent);
-		mPickYmsImageView.setImageBitmap(Utils.changeImageColor(sourceBitmap, color));
+		mPickYmsImageView.setImageDrawable(TintCache.getDrawable(this,
+				R.drawable.ic_keyboard_arrow_down_white_24dp,
+				ContextCompat.getColor(this, R.color.accent)));
 
 		mScrollView.scrollTo(0, mPos);
 		mPickYmsView.setOnClickListener(new View.OnClickListener() {
@@ -204,26 +212,38 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 				if (mSelectedModel == null) {
 					return;
 				}
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("pick yms").setAction("click")
-								.build());
+				sendEvent("pick yms", "click");
 				Intent intent = new Intent(ScoreActivity.this, PickSemesterActivity.class);
 				intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 				intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
 				startActivityForResult(intent, Constant.REQUEST_PICK_SEMESTER);
 			}
 		});
+		mPickYmsView.setOnLongClickListener(new View.OnLongClickListener() {
+
+			@Override
+			public boolean onLongClick(View v) {
+				if (mSemesterList == null) {
+					return false;
+				}
+				sendEvent("transcript", "long click");
+				isTranscript = true;
+				isRetry = false;
+				getTranscript(false);
+				return true;
+			}
+		});
 		mNoScoreLinearLayout.setOnClickListener(new View.OnClickListener() {
 
 			@Override
 			public void onClick(View v) {
 				if (isRetry) {
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-									.setLabel((mSemesterList == null) + "").build());
+					sendEvent("retry", "click", (mSemesterList == null) + "");
 					isRetry = false;
 					if (mSemesterList == null || mSelectedModel == null) {
 						getSemester();
+					} else if (isTranscript) {
+						getTranscript(false);
 					} else {
 						getData();
 					}
@@ -232,8 +252,7 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 						getSemester();
 						return;
 					}
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("pick yms")
-							.setAction("click").build());
+					sendEvent("pick yms", "click");
 					Intent intent = new Intent(ScoreActivity.this, PickSemesterActivity.class);
 					intent.putExtra("mSemesterList", new Gson().toJson(mSemesterList));
 					intent.putExtra("mSelectedModel", new Gson().toJson(mSelectedModel));
@@ -242,7 +261,9 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 			}
 		});
 
-		if (mSelectedModel != null && mSemesterList != null) {
+		if (mSelectedModel != null && mSemesterList != null && isTranscript) {
+			setUpTranscriptTable();
+		} else if (mSelectedModel != null && mSemesterList != null) {
 			mPickYmsTextView.setText(mSelectedModel.text);
 			setUpScoreTable();
 		} else {
@@ -254,11 +275,14 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 	@Override
 	public void onRefresh() {
 		if (mYms != null) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe")
-					.build());
+			sendEvent("refresh", "swipe");
 			isRetry = false;
 			mSwipeRefreshLayout.setRefreshing(true);
-			getData();
+			if (isTranscript) {
+				getTranscript(true);
+			} else {
+				getData();
+			}
 		}
 	}
 
@@ -283,6 +307,7 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 				super.onSuccess(modelList, scoreDetailModel);
 				mList = modelList;
 				mScoreDetailModel = scoreDetailModel;
+				ScoreWatcher.onScoresShown(ScoreActivity.this, mYms, modelList);
 				setUpScoreTable();
 			}
 
@@ -299,33 +324,174 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 			public void onTokenExpired() {
 				super.onTokenExpired();
 				Utils.showTokenExpired(ScoreActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
 		});
 	}
 
+	private void getTranscript(boolean isFull) {
+		if (TranscriptStore.getList(this).isEmpty()) {
+			if (!mSwipeRefreshLayout.isRefreshing()) {
+				mMaterialProgressBar.setVisibility(View.VISIBLE);
+			}
+			mScrollView.setVisibility(View.GONE);
+			mNoScoreLinearLayout.setVisibility(View.GONE);
+		} else {
+			// The stored transcript while the semesters are fetched
+			setUpTranscriptTable();
+			mSwipeRefreshLayout.setRefreshing(true);
+		}
+		mPickYmsView.setEnabled(false);
+		mSwipeRefreshLayout.setEnabled(false);
+
+		TranscriptStore.refresh(this, mSemesterList, isFull, TranscriptStore.DEFAULT_CONCURRENCY,
+				new TranscriptCallback() {
+
+					@Override
+					public void onProgress(int doneCount, int totalCount) {
+						super.onProgress(doneCount, totalCount);
+
+						if (isTranscript) {
+							mPickYmsTextView.setText(getString(R.string.score_transcript_progress,
+									getString(R.string.score_all_semesters), doneCount,
+									totalCount));
+						}
+					}
+
+					@Override
+					public void onSuccess(List<SemesterScoreModel> modelList, int changedCount) {
+						super.onSuccess(modelList, changedCount);
+
+						if (isTranscript) {
+							setUpTranscriptTable();
+						}
+					}
+
+					@Override
+					public void onFail(String errorMessage) {
+						super.onFail(errorMessage);
+
+						if (isTranscript) {
+							isRetry = true;
+							setUpTranscriptTable();
+						}
+					}
+
+					@Override
+					public void onTokenExpired() {
+						super.onTokenExpired();
+						Utils.showTokenExpired(ScoreActivity.this);
+						sendEvent("token", "expired");
+					}
+				});
+	}
+
+	private void setUpTranscriptTable() {
+		mPickYmsTextView.setText(R.string.score_all_semesters);
+		mScoreTableLayout.setStretchAllColumns(true);
+		mScoreTableLayout.removeAllViews();
+		mDetailTableLayout.removeAllViews();
+
+		boolean hasScore = false;
+		for (SemesterScoreModel model : TranscriptStore.getList(this)) {
+			if (model.scores.isEmpty()) {
+				continue;
+			}
+			hasScore = true;
+			addTitleRow(getString(R.string.score_semester_average, model.text,
+					formatAverage(model.getAverage())));
+			addScoreRows(model.scores);
+		}
+		if (!hasScore) {
+			showNoScore();
+			return;
+		}
+
+		List<String> detailList = new ArrayList<>();
+		detailList.add(getString(R.string.score_total_average,
+				formatAverage(TranscriptStore.getAverage(this))));
+		for (String year : TranscriptStore.getYears(this)) {
+			detailList.add(getString(R.string.score_year_average, year,
+					formatAverage(TranscriptStore.getYearAverage(this, year))));
+		}
+		addDetailRows(detailList);
+		showTable();
+	}
+
+	private static String formatAverage(double average) {
+		return Double.isNaN(average) ? "N/A" : String.format(Locale.getDefault(), "%.2f", average);
+	}
+
 	private void setUpScoreTable() {
 		mScoreTableLayout.setStretchAllColumns(true);
 		mScoreTableLayout.removeAllViews();
 		mDetailTableLayout.removeAllViews();
 
 		if (mList.size() == 0) {
-			if (isRetry) {
-				mNoScoreTextView.setText(R.string.click_to_retry);
-			} else {
-				mNoScoreTextView.setText(getString(R.string.score_no_score, "\uD83D\uDE0B"));
-			}
-			mMaterialProgressBar.setVisibility(View.GONE);
-			mSwipeRefreshLayout.setEnabled(true);
-			mSwipeRefreshLayout.setRefreshing(false);
-			mScrollView.setVisibility(View.VISIBLE);
-			mNoScoreLinearLayout.setVisibility(View.VISIBLE);
-			mPickYmsView.setEnabled(true);
+			showNoScore();
 			return;
 		}
+		addScoreRows(mList);
 
+		List<String> detailList = new ArrayList<>();
+		String[] detailSections = getResources().getStringArray(R.array.score_detail_sections);
+		detailList.add(Double.toString(mScoreDetailModel.conduct));
+		detailList.add(Double.toString(mScoreDetailModel.average));
+		detailList.add(mScoreDetailModel.class_rank);
+		detailList.add(Double.toString(mScoreDetailModel.class_percentage));
+		for (int i = 0; i < detailList.size(); i++) {
+			boolean isDetailHaveContent =
+					!(detailList.get(i).equals("0.0") || detailList.get(i).length() == 0);
+			detailList.set(i,
+					detailSections[i] + (isDetailHaveContent ? detailList.get(i) : "N/A"));
+		}
+		addDetailRows(detailList);
+		showTable();
+	}
+
+	private void showNoScore() {
+		if (isRetry) {
+			mNoScoreTextView.setText(R.string.click_to_retry);
+		} else {
+			mNoScoreTextView.setText(getString(R.string.score_no_score, "\uD83D\uDE0B"));
+		}
+		mMaterialProgressBar.setVisibility(View.GONE);
+		mSwipeRefreshLayout.setEnabled(true);
+		mSwipeRefreshLayout.setRefreshing(false);
+		mScrollView.setVisibility(View.VISIBLE);
+		mNoScoreLinearLayout.setVisibility(View.VISIBLE);
+		mPickYmsView.setEnabled(true);
+	}
+
+	private void showTable() {
+		mMaterialProgressBar.setVisibility(View.GONE);
+		mSwipeRefreshLayout.setEnabled(true);
+		mSwipeRefreshLayout.setRefreshing(false);
+		mScrollView.setVisibility(View.VISIBLE);
+		mNoScoreLinearLayout.setVisibility(View.GONE);
+		mPickYmsView.setEnabled(true);
+	}
+
+	private void addTitleRow(String title) {
+		TableRow titleTableRow = new TableRow(this);
+		TextView titleTextView = new TextView(this);
+		titleTextView.setText(title);
+		titleTextView.setTextColor(ContextCompat.getColor(this, R.color.accent));
+		titleTextView.setTextSize(15);
+		titleTextView.setGravity(Gravity.CENTER);
+		int margin = getResources().getDimensionPixelSize(R.dimen.margin_medium);
+		titleTextView.setPadding(0, mScoreTableLayout.getChildCount() == 0 ? 0 : margin, 0,
+				margin / 2);
+
+		TableRow.LayoutParams layoutParams =
+				new TableRow.LayoutParams(TableRow.LayoutParams.MATCH_PARENT,
+						TableRow.LayoutParams.WRAP_CONTENT);
+		layoutParams.span = getResources().getStringArray(R.array.score_sections).length;
+		titleTableRow.addView(titleTextView, layoutParams);
+		mScoreTableLayout.addView(titleTableRow);
+	}
+
+	private void addScoreRows(List<ScoreModel> modelList) {
 		TableRow sectionTableRow = new TableRow(this);
 		String[] sections = getResources().getStringArray(R.array.score_sections);
 		for (int i = 0; i < sections.length; i++) {
@@ -344,18 +510,18 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 		}
 		mScoreTableLayout.addView(sectionTableRow);
 
-		for (int i = 0; i < mList.size(); i++) {
+		for (int i = 0; i < modelList.size(); i++) {
 			TableRow scoreTableRow = new TableRow(this);
 			for (int j = 0; j < sections.length; j++) {
 				TextView scoreTextView = new TextView(this);
 				scoreTextView.setTextSize(14);
 				scoreTextView.setTextColor(ContextCompat.getColor(this, R.color.black_text));
-				scoreTextView.setText(j == 0 ? mList.get(i).title :
-						(j == 1 ? mList.get(i).middle_score : mList.get(i).final_score));
+				scoreTextView.setText(j == 0 ? modelList.get(i).title :
+						(j == 1 ? modelList.get(i).middle_score : modelList.get(i).final_score));
 				scoreTextView.setGravity(Gravity.CENTER);
 
 				int drawable = getResources().getIdentifier(
-						"table_" + (i == mList.size() - 1 ? "bottom_" : "normal_") +
+						"table_" + (i == modelList.size() - 1 ? "bottom_" : "normal_") +
 								(j == 0 ? "left" : (j == 1 ? "center" : "right")), "drawable",
 						getPackageName());
 				scoreTextView.setBackgroundResource(drawable);
@@ -366,24 +532,16 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 			}
 			mScoreTableLayout.addView(scoreTableRow);
 		}
+	}
 
-		List<String> detailList = new ArrayList<>();
-		String[] detailSections = getResources().getStringArray(R.array.score_detail_sections);
-		detailList.add(Double.toString(mScoreDetailModel.conduct));
-		detailList.add(Double.toString(mScoreDetailModel.average));
-		detailList.add(mScoreDetailModel.class_rank);
-		detailList.add(Double.toString(mScoreDetailModel.class_percentage));
-
+	private void addDetailRows(List<String> detailList) {
 		for (int i = 0; i < detailList.size(); i++) {
 			TableRow detailTableRow = new TableRow(this);
 			TextView detailTextView = new TextView(this);
 			detailTextView.setTextSize(14);
 			detailTextView.setTextColor(ContextCompat.getColor(this, R.color.black_text));
 			detailTextView.setGravity(Gravity.CENTER);
-			boolean isDetailHaveContent =
-					!(detailList.get(i).equals("0.0") || detailList.get(i).length() == 0);
-			detailTextView
-					.setText(detailSections[i] + (isDetailHaveContent ? detailList.get(i) : "N/A"));
+			detailTextView.setText(detailList.get(i));
 
 			int drawable = getResources().getIdentifier("table_oneitem_" +
 							(i == 0 ? "top" : (i == detailList.size() - 1 ? "bottom" : "normal")),
@@ -395,12 +553,5 @@ public class ScoreActivity extends SilentActivity implements SwipeRefreshLayout.
 							TableRow.LayoutParams.MATCH_PARENT));
 			mDetailTableLayout.addView(detailTableRow);
 		}
-
-		mMaterialProgressBar.setVisibility(View.GONE);
-		mSwipeRefreshLayout.setEnabled(true);
-		mSwipeRefreshLayout.setRefreshing(false);
-		mScrollView.setVisibility(View.VISIBLE);
-		mNoScoreLinearLayout.setVisibility(View.GONE);
-		mPickYmsView.setEnabled(true);
 	}
 }
@@ -0,0 +1,62 @@
+package silent.kuasapmaterial;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+
+import silent.kuasapmaterial.callback.GeneralCallback;
+import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+
+/**
+ * Checks the scores once when the job of {@link ScoreWatcher} runs, from API 21
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ScoreWatchJobService extends JobService {
+
+	// Of the running job, stopped by the system before the check finished
+	private boolean isStopped = false;
+
+	@Override
+	public boolean onStartJob(final JobParameters params) {
+		if (!Memory.getBoolean(this, Constant.PREF_SCORE_NOTIFY, false)) {
+			return false;
+		}
+
+		isStopped = false;
+		ScoreWatcher.check(this, new GeneralCallback() {
+
+			@Override
+			public void onSuccess() {
+				super.onSuccess();
+				if (isStopped) {
+					return;
+				}
+				// Finished first, scheduling the same job id stops a running one
+				jobFinished(params, false);
+				ScoreWatcher.schedule(ScoreWatchJobService.this);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				if (!isStopped) {
+					// Retried with exponential backoff, unless logged out meanwhile
+					jobFinished(params, Memory.getBoolean(ScoreWatchJobService.this,
+							Constant.PREF_IS_LOGIN, false));
+				}
+			}
+		});
+		// The job holds a wakelock until the requests are done
+		return true;
+	}
+
+	@Override
+	public boolean onStopJob(JobParameters params) {
+		// e.g. the network is gone, try again later
+		isStopped = true;
+		return true;
+	}
+}
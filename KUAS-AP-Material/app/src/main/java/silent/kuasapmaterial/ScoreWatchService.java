@@ -0,0 +1,78 @@
+package silent.kuasapmaterial;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+import android.os.PowerManager;
+
+import silent.kuasapmaterial.callback.GeneralCallback;
+import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+
+/**
+ * Checks the scores once when started by the alarm of {@link ScoreWatcher}, before API 21
+ */
+public class ScoreWatchService extends Service {
+
+	private PowerManager.WakeLock mCpuWakeLock;
+
+	@Override
+	public IBinder onBind(Intent intent) {
+		return null;
+	}
+
+	@Override
+	public int onStartCommand(Intent intent, int flags, int startId) {
+		// If user doesn't select "score" in settings, then don't check.
+		if (!Memory.getBoolean(this, Constant.PREF_SCORE_NOTIFY, false)) {
+			stopSelf(startId);
+			return START_NOT_STICKY;
+		}
+
+		// Keep the CPU awake until the requests are done
+		acquireCpuWakelock();
+		final int id = startId;
+		ScoreWatcher.check(this, new GeneralCallback() {
+
+			@Override
+			public void onSuccess() {
+				super.onSuccess();
+				ScoreWatcher.schedule(ScoreWatchService.this);
+				stopService(id);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				ScoreWatcher.schedule(ScoreWatchService.this);
+				stopService(id);
+			}
+		});
+
+		// The next alarm starts it again
+		return START_NOT_STICKY;
+	}
+
+	private void acquireCpuWakelock() {
+		if (mCpuWakeLock != null) {
+			return;
+		}
+
+		PowerManager powerManager = (PowerManager) getSystemService(Service.POWER_SERVICE);
+		mCpuWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, Constant.TAG);
+		mCpuWakeLock.acquire();
+	}
+
+	private void releaseCpuWakelock() {
+		if (mCpuWakeLock != null) {
+			mCpuWakeLock.release();
+			mCpuWakeLock = null;
+		}
+	}
+
+	private void stopService(int startId) {
+		releaseCpuWakelock();
+		stopSelf(startId);
+	}
+}
@@ -20,23 +20,24 @@ import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.kuas.ap.R;
 
 import silent.kuasapmaterial.base.SilentActivity;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.FrameMonitor;
 import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ScoreWatcher;
 import silent.kuasapmaterial.libs.Utils;
 
 public class SettingsActivity extends SilentActivity implements View.OnClickListener {
 
 	private static final int PERMISSION_REQUEST_NOTIFICATION_POLICY_ACCESS_SETTING = 200;
 
-	private View mNotifyCourseView, mNotifyBusView, mHeadPhotoView, mAppVersionView, mFeedbackView,
-			mDonateView, mVibrateCourseView;
-	private SwitchCompat mNotifyCourseSwitch, mNotifyBusSwitch, mHeadPhotoSwitch,
-			mVibrateCourseSwitch;
+	private View mNotifyCourseView, mNotifyBusView, mNotifyScoreView, mHeadPhotoView,
+			mAppVersionView, mFeedbackView, mDonateView, mVibrateCourseView;
+	private SwitchCompat mNotifyCourseSwitch, mNotifyBusSwitch, mNotifyScoreSwitch,
+			mHeadPhotoSwitch, mVibrateCourseSwitch;
 	private TextView mAppVersionTextView;
 
 	private long lastDebugPressTime = 0L;
@@ -65,6 +66,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 	private void findViews() {
 		mNotifyCourseView = findViewById(R.id.view_course_notify);
 		mNotifyBusView = findViewById(R.id.view_bus_notify);
+		mNotifyScoreView = findViewById(R.id.view_score_notify);
 		mFeedbackView = findViewById(R.id.view_feedback);
 		mAppVersionView = findViewById(R.id.view_app_version);
 		mHeadPhotoView = findViewById(R.id.view_head_photo);
@@ -74,6 +76,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 		mNotifyCourseSwitch = (SwitchCompat) findViewById(R.id.switch_course_notify);
 		mVibrateCourseSwitch = (SwitchCompat) findViewById(R.id.switch_course_vibrate);
 		mNotifyBusSwitch = (SwitchCompat) findViewById(R.id.switch_bus_notify);
+		mNotifyScoreSwitch = (SwitchCompat) findViewById(R.id.switch_score_notify);
 		mHeadPhotoSwitch = (SwitchCompat) findViewById(R.id.switch_head_photo);
 
 		mAppVersionTextView = (TextView) findViewById(R.id.textView_app_version);
@@ -82,11 +85,20 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 	private void setUpViews() {
 		mNotifyCourseView.setOnClickListener(this);
 		mNotifyBusView.setOnClickListener(this);
+		mNotifyScoreView.setOnClickListener(this);
 		mHeadPhotoView.setOnClickListener(this);
 		mFeedbackView.setOnClickListener(this);
 		mAppVersionView.setOnClickListener(this);
 		mDonateView.setOnClickListener(this);
 		mVibrateCourseView.setOnClickListener(this);
+		mAppVersionView.setOnLongClickListener(new View.OnLongClickListener() {
+
+			@Override
+			public boolean onLongClick(View v) {
+				showFrameMonitor();
+				return true;
+			}
+		});
 
 		try {
 			PackageInfo pkgInfo = getPackageManager().getPackageInfo(getPackageName(), 0);
@@ -101,6 +113,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 		mHeadPhotoSwitch.setChecked(Memory.getBoolean(this, Constant.PREF_HEAD_PHOTO, true));
 		mNotifyCourseSwitch.setChecked(Memory.getBoolean(this, Constant.PREF_COURSE_NOTIFY, false));
 		mNotifyBusSwitch.setChecked(Memory.getBoolean(this, Constant.PREF_BUS_NOTIFY, false));
+		mNotifyScoreSwitch.setChecked(Memory.getBoolean(this, Constant.PREF_SCORE_NOTIFY, false));
 		NotificationManager notificationManager =
 				(NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N &&
@@ -117,18 +130,17 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			setUpCourseNotify();
 		} else if (v == mNotifyBusView) {
 			setUpBusNotify();
+		} else if (v == mNotifyScoreView) {
+			setUpScoreNotify();
 		} else if (v == mVibrateCourseView) {
 			setUpCourseVibrate();
 		} else if (v == mHeadPhotoView) {
 			mHeadPhotoSwitch.setChecked(!mHeadPhotoSwitch.isChecked());
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("head photo").setAction("click")
-							.setLabel(mHeadPhotoSwitch.isChecked() + "").build());
+			sendEvent("head photo", "click", mHeadPhotoSwitch.isChecked() + "");
 			Memory.setBoolean(this, Constant.PREF_HEAD_PHOTO, mHeadPhotoSwitch.isChecked());
 			setUpUserPhoto();
 		} else if (v == mFeedbackView) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("feedback").setAction("click")
-					.build());
+			sendEvent("feedback", "click");
 			try {
 				Uri uri = Uri.parse("fb://messaging/954175941266264");
 				startActivity(new Intent(Intent.ACTION_VIEW, uri));
@@ -137,14 +149,11 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 				startActivity(new Intent(Intent.ACTION_VIEW, uri));
 			}
 		} else if (v == mAppVersionView) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("easter egg").setAction("click")
-							.build());
+			sendEvent("easter egg", "click");
 			if (System.currentTimeMillis() - lastDebugPressTime <= 500) {
 				easterEggCount++;
 				if (easterEggCount == 3) {
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("easter egg")
-							.setAction("click").setLabel("success").build());
+					sendEvent("easter egg", "click", "success");
 					lastDebugPressTime = 0L;
 					easterEggCount = 0;
 					Snackbar.make(findViewById(android.R.id.content), R.string.easter_egg_juke,
@@ -158,27 +167,68 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			lastDebugPressTime = System.currentTimeMillis();
 		} else if (v == mDonateView) {
 			try {
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("donate").setAction("click")
-								.build());
+				sendEvent("donate", "click");
 				Intent intent = new Intent(Intent.ACTION_VIEW);
 				intent.setData(Uri.parse("market://details?id=com.kuas.ap.donate"));
 				startActivity(intent);
 			} catch (Exception e) {
 				Toast.makeText(this, R.string.donate_error, Toast.LENGTH_LONG).show();
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("donate").setAction("click")
-								.setLabel("error").build());
+				sendEvent("donate", "click", "error");
 			}
 		}
 	}
 
+	/**
+	 * Hidden debug screen of {@link FrameMonitor}, opened by a long press on the app version
+	 */
+	private void showFrameMonitor() {
+		final FrameMonitor monitor = FrameMonitor.getInstance();
+		final boolean isEnabled = monitor.isEnabled(this);
+		String report = monitor.getReport();
+		String message = !isEnabled ? getString(R.string.frame_monitor_off) :
+				report.length() == 0 ? getString(R.string.frame_monitor_empty) : report;
+		int positiveRes =
+				isEnabled ? R.string.frame_monitor_disable : R.string.frame_monitor_enable;
+
+		AlertDialog.Builder builder =
+				new AlertDialog.Builder(this).setTitle(R.string.frame_monitor).setMessage(message)
+						.setPositiveButton(positiveRes, new DialogInterface.OnClickListener() {
+
+							@Override
+							public void onClick(DialogInterface dialog, int which) {
+								monitor.setEnabled(SettingsActivity.this, !isEnabled);
+								if (!isEnabled) {
+									// Start with this screen rather than the next one
+									monitor.onScreenResumed(SettingsActivity.this);
+								}
+							}
+						}).setNegativeButton(R.string.ok, null);
+		if (isEnabled) {
+			builder.setNeutralButton(R.string.frame_monitor_reset,
+					new DialogInterface.OnClickListener() {
+
+						@Override
+						public void onClick(DialogInterface dialog, int which) {
+							monitor.reset();
+						}
+					});
+		}
+		builder.show();
+	}
+
+	private void setUpScoreNotify() {
+		mNotifyScoreSwitch.setChecked(!mNotifyScoreSwitch.isChecked());
+		sendEvent("notify score", "click", mNotifyScoreSwitch.isChecked() + "");
+		ScoreWatcher.setEnabled(this, mNotifyScoreSwitch.isChecked());
+		if (mNotifyScoreSwitch.isChecked()) {
+			Toast.makeText(this, R.string.score_notify_hint, Toast.LENGTH_LONG).show();
+		}
+	}
+
 	private void setUpBusNotify() {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("notify bus").setAction("create")
-				.build());
+		sendEvent("notify bus", "create");
 		mNotifyBusSwitch.setChecked(!mNotifyBusSwitch.isChecked());
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("notify bus").setAction("click")
-				.setLabel(mNotifyBusSwitch.isChecked() + "").build());
+		sendEvent("notify bus", "click", mNotifyBusSwitch.isChecked() + "");
 		if (!mNotifyBusSwitch.isChecked()) {
 			Memory.setBoolean(SettingsActivity.this, Constant.PREF_BUS_NOTIFY, false);
 			return;
@@ -191,9 +241,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onSuccess() {
 				super.onSuccess();
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("notify bus").setAction("status")
-								.setLabel("success").build());
+				sendEvent("notify bus", "status", "success");
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_BUS_NOTIFY, true);
 				progressDialog.dismiss();
 				Toast.makeText(SettingsActivity.this, R.string.bus_notify_hint, Toast.LENGTH_LONG)
@@ -203,9 +251,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("notify bus").setAction("status")
-								.setLabel("fail " + errorMessage).build());
+				sendEvent("notify bus", "status", "fail " + errorMessage);
 				progressDialog.dismiss();
 				mNotifyBusSwitch.setChecked(false);
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_BUS_NOTIFY, false);
@@ -215,9 +261,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onTokenExpired() {
 				super.onTokenExpired();
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("notify bus").setAction("status")
-								.setLabel("token expired").build());
+				sendEvent("notify bus", "status", "token expired");
 				progressDialog.dismiss();
 				Utils.showTokenExpired(SettingsActivity.this);
 			}
@@ -225,12 +269,9 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 	}
 
 	private void setUpCourseNotify() {
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("notify course").setAction("create")
-						.build());
+		sendEvent("notify course", "create");
 		mNotifyCourseSwitch.setChecked(!mNotifyCourseSwitch.isChecked());
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("notify course").setAction("click")
-				.setLabel(mNotifyCourseSwitch.isChecked() + "").build());
+		sendEvent("notify course", "click", mNotifyCourseSwitch.isChecked() + "");
 		if (!mNotifyCourseSwitch.isChecked()) {
 			Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_NOTIFY, false);
 			return;
@@ -243,8 +284,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onSuccess() {
 				super.onSuccess();
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("notify course")
-						.setAction("status").setLabel("success").build());
+				sendEvent("notify course", "status", "success");
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_NOTIFY, true);
 				progressDialog.dismiss();
 				Toast.makeText(SettingsActivity.this, R.string.course_notify_hint,
@@ -254,8 +294,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("notify course")
-						.setAction("status").setLabel("fail " + errorMessage).build());
+				sendEvent("notify course", "status", "fail " + errorMessage);
 				progressDialog.dismiss();
 				mNotifyCourseSwitch.setChecked(false);
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_NOTIFY, false);
@@ -265,8 +304,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onTokenExpired() {
 				super.onTokenExpired();
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("notify course")
-						.setAction("status").setLabel("token expired").build());
+				sendEvent("notify course", "status", "token expired");
 				progressDialog.dismiss();
 				Utils.showTokenExpired(SettingsActivity.this);
 			}
@@ -287,13 +325,9 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 	}
 
 	private void setUpCourseVibrate() {
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("vibrate course").setAction("create")
-						.build());
+		sendEvent("vibrate course", "create");
 		mVibrateCourseSwitch.setChecked(!mVibrateCourseSwitch.isChecked());
-		mTracker.send(
-				new HitBuilders.EventBuilder().setCategory("vibrate course").setAction("click")
-						.setLabel(mVibrateCourseSwitch.isChecked() + "").build());
+		sendEvent("vibrate course", "click", mVibrateCourseSwitch.isChecked() + "");
 		if (!mVibrateCourseSwitch.isChecked()) {
 			Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_VIBRATE, false);
 			return;
@@ -328,8 +362,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onSuccess() {
 				super.onSuccess();
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("vibrate course")
-						.setAction("status").setLabel("success").build());
+				sendEvent("vibrate course", "status", "success");
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_VIBRATE, true);
 				Utils.dismissDialog(progressDialog);
 				Toast.makeText(SettingsActivity.this, R.string.course_vibrate_hint,
@@ -341,8 +374,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("vibrate course")
-						.setAction("status").setLabel("fail " + errorMessage).build());
+				sendEvent("vibrate course", "status", "fail " + errorMessage);
 				Utils.dismissDialog(progressDialog);
 				mVibrateCourseSwitch.setChecked(false);
 				Memory.setBoolean(SettingsActivity.this, Constant.PREF_COURSE_VIBRATE, false);
@@ -352,8 +384,7 @@ public class SettingsActivity extends SilentActivity implements View.OnClickList
 			@Override
 			public void onTokenExpired() {
 				super.onTokenExpired();
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("vibrate course")
-						.setAction("status").setLabel("token expired").build());
+				sendEvent("vibrate course", "status", "token expired");
 				Utils.dismissDialog(progressDialog);
 				Utils.showTokenExpired(SettingsActivity.this);
 			}
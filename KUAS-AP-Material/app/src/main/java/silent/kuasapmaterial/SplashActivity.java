@@ -2,28 +2,31 @@ package silent.kuasapmaterial;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 
 import com.kuas.ap.R;
 
-public class SplashActivity extends AppCompatActivity {
+import silent.kuasapmaterial.libs.Startup;
 
-	final static int DELAY_TIME = 1000;
+public class SplashActivity extends AppCompatActivity {
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_splash);
 
-		new Handler().postDelayed(new Runnable() {
+		// Leave as soon as the login screen can work instead of after a fixed delay
+		Startup.runWhenCriticalReady(new Runnable() {
 
 			@Override
 			public void run() {
+				if (isFinishing()) {
+					return;
+				}
 				startActivity(new Intent(SplashActivity.this, LoginActivity.class));
 				finish();
 				overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
 			}
-		}, DELAY_TIME);
+		});
 	}
 }
@@ -10,7 +10,6 @@ import android.widget.ImageView;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
@@ -19,6 +18,7 @@ import com.nostra13.universalimageloader.core.assist.FailReason;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
 
 import silent.kuasapmaterial.base.SilentActivity;
+import silent.kuasapmaterial.base.SilentApplication;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.callback.UserInfoCallback;
 import silent.kuasapmaterial.libs.Constant;
@@ -26,6 +26,7 @@ import silent.kuasapmaterial.libs.Helper;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
 import silent.kuasapmaterial.libs.Memory;
 import silent.kuasapmaterial.libs.OverScrollView;
+import silent.kuasapmaterial.libs.Startup;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.libs.ViewResizeAnimation;
 import silent.kuasapmaterial.models.UserInfoModel;
@@ -130,8 +131,7 @@ public class UserInfoActivity extends SilentActivity {
 
 			@Override
 			public void onClick(View v) {
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("retry").setAction("click")
-						.build());
+				sendEvent("retry", "click");
 				mMaterialProgressBar.setVisibility(View.VISIBLE);
 				mPhotoImageView.setVisibility(View.GONE);
 				mDetailView.setVisibility(View.GONE);
@@ -164,9 +164,7 @@ public class UserInfoActivity extends SilentActivity {
 			public void onTokenExpired() {
 				super.onTokenExpired();
 				Utils.showTokenExpired(UserInfoActivity.this);
-				mTracker.send(
-						new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-								.build());
+				sendEvent("token", "expired");
 			}
 
 			@Override
@@ -211,15 +209,14 @@ public class UserInfoActivity extends SilentActivity {
 				public void onTokenExpired() {
 					super.onTokenExpired();
 					Utils.showTokenExpired(UserInfoActivity.this);
-					mTracker.send(
-							new HitBuilders.EventBuilder().setCategory("token").setAction("expired")
-									.build());
+					sendEvent("token", "expired");
 				}
 			});
 		}
 	}
 
 	private void setUpUserPhoto(String photo) {
+		Startup.ensure(SilentApplication.INIT_IMAGE_LOADER);
 		ImageLoader.getInstance()
 				.displayImage(photo, mPhotoImageView, Utils.getDefaultDisplayImageOptions(),
 						new ImageLoadingListener() {
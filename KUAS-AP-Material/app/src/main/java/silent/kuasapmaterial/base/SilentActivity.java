@@ -6,6 +6,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.support.design.widget.NavigationView;
 import android.support.design.widget.Snackbar;
@@ -26,10 +27,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.google.android.gms.analytics.GoogleAnalytics;
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.android.gms.analytics.Tracker;
 import com.kuas.ap.R;
-import com.nostra13.universalimageloader.core.ImageLoader;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -46,9 +45,15 @@ import silent.kuasapmaterial.SettingsActivity;
 import silent.kuasapmaterial.UserInfoActivity;
 import silent.kuasapmaterial.callback.GeneralCallback;
 import silent.kuasapmaterial.callback.UserInfoCallback;
+import silent.kuasapmaterial.libs.Analytics;
+import silent.kuasapmaterial.libs.BusTimetableCache;
 import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.FrameMonitor;
 import silent.kuasapmaterial.libs.Helper;
+import silent.kuasapmaterial.libs.ImagePipeline;
 import silent.kuasapmaterial.libs.Memory;
+import silent.kuasapmaterial.libs.ScoreWatcher;
+import silent.kuasapmaterial.libs.Startup;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.UserInfoModel;
 
@@ -95,7 +100,15 @@ public class SilentActivity extends AppCompatActivity
 		GoogleAnalytics analytics = GoogleAnalytics.getInstance(this);
 		mTracker = analytics.newTracker(Constant.GA_ID);
 		mTracker.setScreenName(screenName);
-		mTracker.send(new HitBuilders.ScreenViewBuilder().build());
+		Analytics.screenView(mTracker);
+	}
+
+	public void sendEvent(String category, String action) {
+		Analytics.event(mTracker, category, action);
+	}
+
+	public void sendEvent(String category, String action, String label) {
+		Analytics.event(mTracker, category, action, label);
 	}
 
 	public void setUpToolBar(String title) {
@@ -150,12 +163,12 @@ public class SilentActivity extends AppCompatActivity
 		boolean isSetUpHeadPhoto = Memory.getBoolean(this, Constant.PREF_HEAD_PHOTO, true);
 		try {
 			if (isSetUpHeadPhoto) {
+				Startup.ensure(SilentApplication.INIT_IMAGE_LOADER);
 				String photo = Memory.getString(this, Constant.PREF_USER_PIC, "");
 				if (!TextUtils.isEmpty(photo)) {
-					ImageLoader.getInstance().displayImage(photo,
-							(ImageView) headerView.findViewById(R.id.imageView_user),
-							Utils.getHeadDisplayImageOptions(this,
-									getResources().getDimensionPixelSize(R.dimen.head_mycard) / 2));
+					ImagePipeline.displayAvatar(
+							(ImageView) headerView.findViewById(R.id.imageView_user), photo,
+							getResources().getDimensionPixelSize(R.dimen.head_mycard));
 				} else {
 					Helper.getUserPicture(this, new GeneralCallback() {
 
@@ -163,12 +176,9 @@ public class SilentActivity extends AppCompatActivity
 						public void onSuccess(String data) {
 							super.onSuccess(data);
 							Memory.setString(SilentActivity.this, Constant.PREF_USER_PIC, data);
-							ImageLoader.getInstance().displayImage(data,
-									(ImageView) headerView.findViewById(R.id.imageView_user),
-									Utils.getHeadDisplayImageOptions(SilentActivity.this,
-											getResources()
-													.getDimensionPixelSize(R.dimen.head_mycard) /
-													2));
+							ImagePipeline.displayAvatar(
+									(ImageView) headerView.findViewById(R.id.imageView_user), data,
+									getResources().getDimensionPixelSize(R.dimen.head_mycard));
 						}
 					});
 				}
@@ -326,9 +336,17 @@ public class SilentActivity extends AppCompatActivity
 		return false;
 	}
 
+	@Override
+	public void setContentView(int layoutResID) {
+		long start = SystemClock.uptimeMillis();
+		super.setContentView(layoutResID);
+		FrameMonitor.getInstance().recordInflation(this, getClass().getSimpleName(), start);
+	}
+
 	@Override
 	protected void onResume() {
 		super.onResume();
+		FrameMonitor.getInstance().onScreenResumed(this);
 		if (navigationView == null) {
 			return;
 		}
@@ -339,6 +357,12 @@ public class SilentActivity extends AppCompatActivity
 		checkNetwork();
 	}
 
+	@Override
+	protected void onPause() {
+		FrameMonitor.getInstance().onScreenPaused(this);
+		super.onPause();
+	}
+
 	public void checkNetwork() {
 		if (!Utils.isNetworkConnected(this)) {
 			Snackbar.make(findViewById(android.R.id.content), R.string.no_internet,
@@ -410,21 +434,14 @@ public class SilentActivity extends AppCompatActivity
 			drawer.closeDrawers();
 		} else {
 			if (mLayoutID == R.layout.activity_logout) {
-				if (mTracker != null) {
-					mTracker.send(new HitBuilders.EventBuilder().setCategory("logout dialog")
-							.setAction("create").build());
-				}
+				sendEvent("logout dialog", "create");
 				new AlertDialog.Builder(this).setTitle(R.string.app_name)
 						.setMessage(R.string.logout_check).setPositiveButton(R.string.determine,
 						new DialogInterface.OnClickListener() {
 
 							@Override
 							public void onClick(DialogInterface dialog, int which) {
-								if (mTracker != null) {
-									mTracker.send(new HitBuilders.EventBuilder()
-											.setCategory("logout dialog").setAction("click")
-											.build());
-								}
+								sendEvent("logout dialog", "click");
 								clearUserData();
 								Memory.setBoolean(SilentActivity.this, Constant.PREF_AUTO_LOGIN,
 										false);
@@ -442,6 +459,8 @@ public class SilentActivity extends AppCompatActivity
 		Memory.setString(this, Constant.PREF_USER_PIC, "");
 		Memory.setString(this, Constant.PREF_USER_ID, "");
 		Memory.setString(this, Constant.PREF_USER_NAME, "");
+		ScoreWatcher.cancel(this);
+		BusTimetableCache.clear();
 	}
 
 	public class AnimationActionBarDrawerToggle extends ActionBarDrawerToggle {
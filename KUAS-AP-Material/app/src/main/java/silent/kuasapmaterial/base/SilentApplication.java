@@ -6,15 +6,23 @@ import android.support.multidex.MultiDex;
 
 import com.crashlytics.android.Crashlytics;
 import com.crashlytics.android.core.CrashlyticsCore;
+import com.google.android.gms.analytics.GoogleAnalytics;
 import com.google.firebase.FirebaseApp;
 import com.kuas.ap.BuildConfig;
 import com.nostra13.universalimageloader.core.ImageLoader;
-import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
 
 import io.fabric.sdk.android.Fabric;
+import silent.kuasapmaterial.libs.Analytics;
+import silent.kuasapmaterial.libs.ImagePipeline;
+import silent.kuasapmaterial.libs.Startup;
 
 public class SilentApplication extends Application {
 
+	public static final String INIT_CRASHLYTICS = "crashlytics";
+	public static final String INIT_FIREBASE = "firebase";
+	public static final String INIT_ANALYTICS = "analytics";
+	public static final String INIT_IMAGE_LOADER = "image_loader";
+
 	public SilentApplication() {
 		super();
 	}
@@ -22,6 +30,7 @@ public class SilentApplication extends Application {
 	@Override
 	protected void attachBaseContext(Context base) {
 		super.attachBaseContext(base);
+		// Must stay synchronous, no other class can be loaded before it
 		MultiDex.install(this);
 	}
 
@@ -29,18 +38,61 @@ public class SilentApplication extends Application {
 	public void onCreate() {
 		super.onCreate();
 
-		Fabric.with(this, new Crashlytics.Builder()
-				.core(new CrashlyticsCore.Builder().disabled(BuildConfig.DEBUG).build()).build());
+		// Crash reporting goes before the deferred initializers, so their failures get reported
+		Startup.register(new Startup.Initializer(INIT_CRASHLYTICS, false) {
+
+			@Override
+			protected void run(Context context) {
+				Fabric.with(context, new Crashlytics.Builder()
+						.core(new CrashlyticsCore.Builder().disabled(BuildConfig.DEBUG).build())
+						.build());
+			}
+		});
+		// Remote Config is read by LoginActivity right away. It doesn't need Crashlytics, which
+		// would otherwise be pulled onto the critical path with it
+		Startup.register(new Startup.Initializer(INIT_FIREBASE, true) {
+
+			@Override
+			protected void run(Context context) {
+				FirebaseApp.initializeApp(context);
+			}
+		});
+		Startup.register(new Startup.Initializer(INIT_ANALYTICS, false, INIT_CRASHLYTICS) {
 
-		FirebaseApp.initializeApp(this);
+			@Override
+			protected void run(Context context) {
+				// Warm up the singleton, trackers are created per screen
+				GoogleAnalytics.getInstance(context);
+				Analytics.init(context);
+			}
+		});
+		Startup.register(new Startup.Initializer(INIT_IMAGE_LOADER, false, INIT_CRASHLYTICS) {
 
-		initImageLoader(getApplicationContext());
+			@Override
+			protected void run(Context context) {
+				initImageLoader(context);
+			}
+		});
+		Startup.start(this);
 	}
 
-	public static void initImageLoader(Context context) {
-		ImageLoaderConfiguration config =
-				new ImageLoaderConfiguration.Builder(context).threadPoolSize(5).build();
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		ImagePipeline.onTrimMemory(level);
+		if (level >= TRIM_MEMORY_UI_HIDDEN) {
+			// Nothing is left to batch with once the app is in the background
+			Analytics.requestFlush();
+		}
+	}
 
-		ImageLoader.getInstance().init(config);
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		ImagePipeline.onTrimMemory(TRIM_MEMORY_COMPLETE);
+	}
+
+	public static void initImageLoader(Context context) {
+		ImageLoader.getInstance().init(ImagePipeline.createConfiguration(context));
 	}
-}
\ No newline at end of file
+}
@@ -1,22 +1,54 @@
 package silent.kuasapmaterial.base;
 
 import android.app.Activity;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.view.LayoutInflater;
+import android.view.View;
 
 import com.google.android.gms.analytics.GoogleAnalytics;
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.android.gms.analytics.Tracker;
 
+import silent.kuasapmaterial.libs.Analytics;
 import silent.kuasapmaterial.libs.Constant;
+import silent.kuasapmaterial.libs.FrameMonitor;
 
 public class SilentFragment extends Fragment {
 
 	public Tracker mTracker;
 
+	private long mInflateStart;
+
 	public void initGA(String screenName, Activity activity) {
 		GoogleAnalytics analytics = GoogleAnalytics.getInstance(activity);
 		mTracker = analytics.newTracker(Constant.GA_ID);
 		mTracker.setScreenName(screenName);
-		mTracker.send(new HitBuilders.ScreenViewBuilder().build());
+		Analytics.screenView(mTracker);
+	}
+
+	public void sendEvent(String category, String action) {
+		Analytics.event(mTracker, category, action);
+	}
+
+	public void sendEvent(String category, String action, String label) {
+		Analytics.event(mTracker, category, action, label);
+	}
+
+	@NonNull
+	@Override
+	public LayoutInflater onGetLayoutInflater(@Nullable Bundle savedInstanceState) {
+		// Requested right before onCreateView
+		mInflateStart = SystemClock.uptimeMillis();
+		return super.onGetLayoutInflater(savedInstanceState);
+	}
+
+	@Override
+	public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+		super.onViewCreated(view, savedInstanceState);
+		FrameMonitor.getInstance()
+				.recordInflation(getContext(), getClass().getSimpleName(), mInflateStart);
 	}
-}
\ No newline at end of file
+}
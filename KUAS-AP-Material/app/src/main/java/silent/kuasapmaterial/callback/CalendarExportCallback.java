@@ -0,0 +1,17 @@
+package silent.kuasapmaterial.callback;
+
+import java.util.List;
+
+import silent.kuasapmaterial.models.CalendarModel;
+
+public class CalendarExportCallback extends GeneralCallback {
+
+	public void onSuccess(List<CalendarModel> modelList) {
+	}
+
+	public void onProgress(int doneCount, int totalCount) {
+	}
+
+	public void onSuccess(int addedCount, int removedCount) {
+	}
+}
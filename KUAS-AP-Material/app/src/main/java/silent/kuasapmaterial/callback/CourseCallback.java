@@ -2,10 +2,16 @@ package silent.kuasapmaterial.callback;
 
 import java.util.List;
 
+import silent.kuasapmaterial.libs.TimetableIndex;
 import silent.kuasapmaterial.models.CourseModel;
 
 public class CourseCallback extends GeneralCallback {
 
 	public void onSuccess(List<String> sections, List<List<CourseModel>> modelList) {
 	}
+
+	public void onSuccess(List<String> sections, List<List<CourseModel>> modelList,
+	                      TimetableIndex index) {
+		onSuccess(sections, modelList);
+	}
 }
@@ -0,0 +1,12 @@
+package silent.kuasapmaterial.callback;
+
+import silent.kuasapmaterial.libs.ScheduleIndex;
+
+public class ScheduleCallback extends GeneralCallback {
+
+	public void onSuccess(ScheduleIndex index) {
+	}
+
+	public void onUnchanged() {
+	}
+}
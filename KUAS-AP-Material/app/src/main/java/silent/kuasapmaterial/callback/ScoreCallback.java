@@ -9,4 +9,18 @@ public class ScoreCallback extends GeneralCallback {
 
 	public void onSuccess(List<ScoreModel> modelList, ScoreDetailModel scoreDetailModel) {
 	}
+
+	/**
+	 * @param eTag ETag of the response, null if the server sent none
+	 */
+	public void onSuccess(List<ScoreModel> modelList, ScoreDetailModel scoreDetailModel,
+	                      String eTag) {
+		onSuccess(modelList, scoreDetailModel);
+	}
+
+	/**
+	 * The scores are still those of the ETag sent with the request
+	 */
+	public void onNotModified() {
+	}
 }
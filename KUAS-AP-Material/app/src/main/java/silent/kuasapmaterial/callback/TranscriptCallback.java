@@ -0,0 +1,14 @@
+package silent.kuasapmaterial.callback;
+
+import java.util.List;
+
+import silent.kuasapmaterial.models.SemesterScoreModel;
+
+public class TranscriptCallback extends GeneralCallback {
+
+	public void onProgress(int doneCount, int totalCount) {
+	}
+
+	public void onSuccess(List<SemesterScoreModel> modelList, int changedCount) {
+	}
+}
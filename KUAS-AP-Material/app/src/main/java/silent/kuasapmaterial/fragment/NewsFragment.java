@@ -15,10 +15,13 @@ import android.widget.ImageView;
 import com.kuas.ap.R;
 import com.nostra13.universalimageloader.core.ImageLoader;
 import com.nostra13.universalimageloader.core.assist.FailReason;
-import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
 
+import silent.kuasapmaterial.base.SilentApplication;
 import silent.kuasapmaterial.base.SilentFragment;
 import silent.kuasapmaterial.libs.MaterialProgressBar;
+import silent.kuasapmaterial.libs.Startup;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.NewsModel;
 
@@ -29,6 +32,18 @@ public class NewsFragment extends SilentFragment implements View.OnClickListener
 	MaterialProgressBar mMaterialProgressBar;
 	NewsModel newsModel;
 	private View view;
+	private boolean isImageRequested = false;
+	private boolean isImageLoading = false;
+	private boolean isImageLoaded = false;
+	private final View.OnLayoutChangeListener mLayoutChangeListener =
+			new View.OnLayoutChangeListener() {
+
+				@Override
+				public void onLayoutChange(View v, int left, int top, int right, int bottom,
+				                           int oldLeft, int oldTop, int oldRight, int oldBottom) {
+					updateImage();
+				}
+			};
 
 	public NewsFragment() {
 		// Required empty public constructor
@@ -73,6 +88,21 @@ public class NewsFragment extends SilentFragment implements View.OnClickListener
 		}
 	}
 
+	@Override
+	public void onDestroyView() {
+		if (imageView != null) {
+			imageView.removeOnLayoutChangeListener(mLayoutChangeListener);
+			if (isImageLoading) {
+				ImageLoader.getInstance().cancelDisplayTask(imageView);
+			}
+		}
+		imageView = null;
+		mMaterialProgressBar = null;
+		isImageLoading = false;
+		isImageLoaded = false;
+		super.onDestroyView();
+	}
+
 	@Override
 	public void onDetach() {
 		super.onDetach();
@@ -87,36 +117,67 @@ public class NewsFragment extends SilentFragment implements View.OnClickListener
 		mMaterialProgressBar.setVisibility(View.VISIBLE);
 
 		imageView.setBackgroundColor(0);
-		if (imageView == null) {
+		imageView.setOnClickListener(this);
+		imageView.addOnLayoutChangeListener(mLayoutChangeListener);
+		updateImage();
+	}
+
+	/**
+	 * Only pages next to the current one load their image, the others wait until the user swipes
+	 * close to them, and stop loading when swiped away
+	 */
+	public void setImageRequested(boolean requested) {
+		if (isImageRequested == requested) {
 			return;
 		}
-		ImageLoader.getInstance()
-				.displayImage(newsModel.image, imageView, Utils.getDefaultDisplayImageOptions(),
-						new ImageLoadingListener() {
-
-							@Override
-							public void onLoadingStarted(String imageUri, View view) {
-
-							}
-
-							@Override
-							public void onLoadingFailed(String imageUri, View view,
-							                            FailReason failReason) {
-								//mDetailView.setVisibility(View.VISIBLE);
-							}
-
-							@Override
-							public void onLoadingComplete(String imageUri, View view,
-							                              Bitmap loadedImage) {
-								mMaterialProgressBar.setVisibility(View.GONE);
-							}
+		isImageRequested = requested;
+		updateImage();
+	}
 
-							@Override
-							public void onLoadingCancelled(String imageUri, View view) {
+	private void updateImage() {
+		if (imageView == null) {
+			return;
+		}
+		if (!isImageRequested) {
+			if (isImageLoading) {
+				ImageLoader.getInstance().cancelDisplayTask(imageView);
+				isImageLoading = false;
+			}
+			return;
+		}
+		if (isImageLoading || isImageLoaded) {
+			return;
+		}
+		if (imageView.getWidth() == 0 || imageView.getHeight() == 0) {
+			// Decode at the exact page size, loading starts from the layout listener
+			return;
+		}
 
-							}
-						});
-		imageView.setOnClickListener(this);
+		Startup.ensure(SilentApplication.INIT_IMAGE_LOADER);
+		isImageLoading = true;
+		ImageLoader.getInstance().displayImage(newsModel.image, imageView,
+				Utils.getDefaultDisplayImageBuilder().imageScaleType(ImageScaleType.EXACTLY)
+						.build(), new SimpleImageLoadingListener() {
+
+					@Override
+					public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+						isImageLoading = false;
+					}
+
+					@Override
+					public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+						isImageLoading = false;
+						isImageLoaded = true;
+						if (mMaterialProgressBar != null) {
+							mMaterialProgressBar.setVisibility(View.GONE);
+						}
+					}
+
+					@Override
+					public void onLoadingCancelled(String imageUri, View view) {
+						isImageLoading = false;
+					}
+				});
 	}
 
 	public void setData(NewsModel newsModel) {
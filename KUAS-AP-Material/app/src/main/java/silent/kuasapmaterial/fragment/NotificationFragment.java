@@ -7,44 +7,48 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.customtabs.CustomTabsIntent;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 
-import com.google.android.gms.analytics.HitBuilders;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.kuas.ap.R;
+import com.loopj.android.http.RequestHandle;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import silent.kuasapmaterial.base.SilentFragment;
 import silent.kuasapmaterial.callback.NotificationCallback;
-import silent.kuasapmaterial.libs.Helper;
-import silent.kuasapmaterial.libs.PinnedSectionListView;
+import silent.kuasapmaterial.libs.NotificationStore;
+import silent.kuasapmaterial.libs.PrefetchController;
 import silent.kuasapmaterial.libs.Utils;
 import silent.kuasapmaterial.models.NotificationModel;
 
 public class NotificationFragment extends SilentFragment
-		implements PinnedSectionListView.OnBottomReachedListener,
-		SwipeRefreshLayout.OnRefreshListener {
+		implements SwipeRefreshLayout.OnRefreshListener, PrefetchController.PageLoader {
+
+	// Start loading the next page this many notifications before the end
+	private static final int PREFETCH_DISTANCE = 5;
 
 	List<NotificationModel> mList;
 	Activity activity;
 	Adapter mAdapter;
 	private View view;
-	private PinnedSectionListView mListView;
+	private RecyclerView mRecyclerView;
+	private LinearLayoutManager mLayoutManager;
 	private SwipeRefreshLayout mSwipeRefreshLayout;
-	private int mPage, mInitListPos = 0, mInitListOffset = 0;
-	private boolean isLoadingPosts = false, isRetry = false;
+	private PrefetchController mPrefetchController;
+	private int mInitListPos = 0, mInitListOffset = 0;
+	private boolean isLoadingPosts = false, isRefreshing = false, isRetry = false,
+			isLastPage = false, isRestored = false;
 
 	@Override
 	public View onCreateView(LayoutInflater inflater, ViewGroup container,
@@ -67,18 +71,20 @@ public class NotificationFragment extends SilentFragment
 		initGA("Messages Screen", activity);
 	}
 
+	@Override
+	public void onDetach() {
+		super.onDetach();
+		if (mPrefetchController != null) {
+			mPrefetchController.cancel();
+			isLoadingPosts = false;
+		}
+	}
+
 	private void restoreArgs(Bundle savedInstanceState) {
 		if (savedInstanceState != null) {
-			mPage = savedInstanceState.getInt("mPage");
+			isRestored = true;
 			mInitListPos = savedInstanceState.getInt("mInitListPos");
 			mInitListOffset = savedInstanceState.getInt("mInitListOffset");
-
-			if (savedInstanceState.containsKey("mList")) {
-				mList = new Gson().fromJson(savedInstanceState.getString("mList"),
-						new TypeToken<List<NotificationModel>>() {
-
-						}.getType());
-			}
 		}
 	}
 
@@ -86,91 +92,51 @@ public class NotificationFragment extends SilentFragment
 	public void onSaveInstanceState(Bundle outState) {
 		super.onSaveInstanceState(outState);
 
-		outState.putInt("mPage", isLoadingPosts ? mPage - 1 : mPage);
-		if (mListView != null) {
-			outState.putInt("mInitListPos", mListView.getFirstVisiblePosition());
-			View vNewTop = mListView.getChildAt(0);
+		if (mLayoutManager != null) {
+			int position = mLayoutManager.findFirstVisibleItemPosition();
+			View vNewTop = mLayoutManager.findViewByPosition(position);
+			outState.putInt("mInitListPos", Math.max(0, position));
 			outState.putInt("mInitListOffset", (vNewTop == null) ? 0 : vNewTop.getTop());
 		}
-		if (mList != null) {
-			outState.putString("mList", new Gson().toJson(mList));
-		}
 	}
 
 	private void findViews() {
-		mListView = (PinnedSectionListView) view.findViewById(R.id.listView);
+		mRecyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
 		mSwipeRefreshLayout = (SwipeRefreshLayout) view.findViewById(R.id.swipeRefreshLayout);
 	}
 
 	private void setUpViews() {
 		mAdapter = new Adapter(activity);
-		if (mList != null && mList.size() > 0) {
-			((ListView) mListView).setSelectionFromTop(mInitListPos, mInitListOffset);
-			mAdapter.notifyDataSetChanged();
-		} else {
-			mList = new ArrayList<>();
-			getNotificationData(true);
+		// Stored notifications show up right away, the refresh only adds the newer ones. The
+		// adapter keeps a copy, the store may change while this view is gone
+		mList = new ArrayList<>(NotificationStore.getList(activity));
+		mLayoutManager = new LinearLayoutManager(activity);
+		mRecyclerView.setLayoutManager(mLayoutManager);
+		mRecyclerView.addItemDecoration(
+				new DividerItemDecoration(activity, DividerItemDecoration.VERTICAL));
+		mRecyclerView.setAdapter(mAdapter);
+		if (mList.size() > 0 && isRestored) {
+			mLayoutManager.scrollToPositionWithOffset(mInitListPos, mInitListOffset);
 		}
-		mListView.setAdapter(mAdapter);
-		mListView.setOnBottomReachedListener(this);
-		mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
-
-			@Override
-			public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("notification link")
-						.setAction("click").build());
-				if (position < mList.size()) {
-					if (mList.get(position).link.startsWith("http")) {
-						String shareData =
-								mList.get(position).content + "\n" + mList.get(position).link +
-										"\n\n" + getString(R.string.send_from);
-						CustomTabsIntent.Builder builder = new CustomTabsIntent.Builder();
-						Bitmap icon = BitmapFactory
-								.decodeResource(getResources(), R.drawable.ic_share_white_24dp);
-						builder.setActionButton(icon, getString(R.string.share),
-								Utils.createSharePendingIntent(activity, shareData));
-						builder.setToolbarColor(
-								ContextCompat.getColor(activity, R.color.main_theme));
-						CustomTabsIntent customTabsIntent = builder.build();
-						customTabsIntent.launchUrl(activity, Uri.parse(mList.get(position).link));
-					}
-				} else {
-					isRetry = false;
-					getNotificationData(false);
-				}
-			}
-		});
-		mListView.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
-
-			@Override
-			public boolean onItemLongClick(AdapterView<?> parent, View view, int position,
-			                               long id) {
-				String shareData =
-						mList.get(position).content + "\n" + mList.get(position).link + "\n\n" +
-								getString(R.string.send_from);
-
-				Intent sendIntent = new Intent();
-				sendIntent.setAction(Intent.ACTION_SEND);
-				sendIntent.putExtra(Intent.EXTRA_TEXT, shareData);
-				sendIntent.setType("text/plain");
-				startActivity(Intent.createChooser(sendIntent, getString(R.string.share_to)));
-
-				mTracker.send(new HitBuilders.EventBuilder().setCategory("share").setAction("click")
-						.setLabel(shareData).build());
-				return true;
-			}
-		});
+		// Also requests the next page when the list is too short to scroll
+		mPrefetchController = new PrefetchController(PREFETCH_DISTANCE, this);
+		mRecyclerView.addOnScrollListener(mPrefetchController);
 		setUpPullRefresh();
+		if (!isRestored || mList.isEmpty()) {
+			refreshNotificationData();
+		}
 	}
 
 	@Override
 	public void onRefresh() {
-		if (!isLoadingPosts) {
-			mTracker.send(new HitBuilders.EventBuilder().setCategory("refresh").setAction("swipe")
-					.setLabel("notification").build());
+		if (!isRefreshing) {
+			sendEvent("refresh", "swipe", "notification");
+			// A page of older notifications is not needed anymore
+			mPrefetchController.cancel();
+			isLoadingPosts = false;
 			isRetry = false;
-			mSwipeRefreshLayout.setRefreshing(true);
-			getNotificationData(true);
+			isLastPage = false;
+			refreshNotificationData();
 		}
 	}
 
@@ -179,28 +145,68 @@ public class NotificationFragment extends SilentFragment
 		mSwipeRefreshLayout.setColorSchemeColors(Utils.getSwipeRefreshColors(activity));
 	}
 
+	private void onItemClick(int position) {
+		sendEvent("notification link", "click");
+		if (position < mList.size()) {
+			NotificationModel model = mList.get(position);
+			if (model.link.startsWith("http")) {
+				String shareData =
+						model.content + "\n" + model.link + "\n\n" + getString(R.string.send_from);
+				CustomTabsIntent.Builder builder = new CustomTabsIntent.Builder();
+				Bitmap icon = BitmapFactory
+						.decodeResource(getResources(), R.drawable.ic_share_white_24dp);
+				builder.setActionButton(icon, getString(R.string.share),
+						Utils.createSharePendingIntent(activity, shareData));
+				builder.setToolbarColor(ContextCompat.getColor(activity, R.color.main_theme));
+				CustomTabsIntent customTabsIntent = builder.build();
+				customTabsIntent.launchUrl(activity, Uri.parse(model.link));
+			}
+		} else if (isRetry) {
+			isRetry = false;
+			mPrefetchController.requestNextPage();
+		}
+	}
+
+	private boolean onItemLongClick(int position) {
+		if (position >= mList.size()) {
+			return false;
+		}
+		String shareData = mList.get(position).content + "\n" + mList.get(position).link + "\n\n" +
+				getString(R.string.send_from);
+
+		Intent sendIntent = new Intent();
+		sendIntent.setAction(Intent.ACTION_SEND);
+		sendIntent.putExtra(Intent.EXTRA_TEXT, shareData);
+		sendIntent.setType("text/plain");
+		startActivity(Intent.createChooser(sendIntent, getString(R.string.share_to)));
+
+		sendEvent("share", "click", shareData);
+		return true;
+	}
+
 	@Override
-	public void onBottomReached() {
-		if (!isLoadingPosts && !isRetry) {
-			mTracker.send(
-					new HitBuilders.EventBuilder().setCategory("load more").setAction("scroll")
-							.build());
-			getNotificationData(false);
+	public RequestHandle loadNextPage() {
+		if (isLoadingPosts || isRefreshing || isRetry || isLastPage || mList.isEmpty()) {
+			return null;
 		}
+		sendEvent("load more", "scroll");
+		return loadMoreNotificationData();
 	}
 
-	private void getNotificationData(final boolean firstTime) {
+	private void refreshNotificationData() {
+		isRefreshing = true;
 		mSwipeRefreshLayout.setEnabled(false);
-
-		if (firstTime) {
-			mPage = 0;
-			mList.clear();
+		final boolean isEmpty = mList.isEmpty();
+		if (isEmpty) {
+			// Nothing to show yet, the progress row stands in for the list
+			isLoadingPosts = true;
+		} else {
+			mSwipeRefreshLayout.setRefreshing(true);
 		}
-		mPage++;
-		isLoadingPosts = true;
+		// The progress or retry row may come or go
 		mAdapter.notifyDataSetChanged();
 
-		Helper.getNotification(activity, mPage, new NotificationCallback() {
+		NotificationStore.refresh(activity, new NotificationCallback() {
 
 			@Override
 			public void onSuccess(List<NotificationModel> modelList) {
@@ -210,65 +216,113 @@ public class NotificationFragment extends SilentFragment
 					return;
 				}
 
+				isRefreshing = false;
 				isLoadingPosts = false;
-				mList.addAll(modelList);
-				mAdapter.notifyDataSetChanged();
+				if (isEmpty || modelList.size() > 0) {
+					updateList();
+				}
+				mSwipeRefreshLayout.setEnabled(true);
+				mSwipeRefreshLayout.setRefreshing(false);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				if (!isAdded()) {
+					return;
+				}
+
+				isRefreshing = false;
+				if (isEmpty) {
+					isLoadingPosts = false;
+					isRetry = true;
+					mAdapter.notifyDataSetChanged();
+				}
 				mSwipeRefreshLayout.setEnabled(true);
 				mSwipeRefreshLayout.setRefreshing(false);
 			}
+		});
+	}
+
+	private RequestHandle loadMoreNotificationData() {
+		// Usually far below the screen, refreshing stays possible meanwhile
+		isLoadingPosts = true;
+		mAdapter.notifyDataSetChanged();
+
+		return NotificationStore.loadMore(activity, new NotificationCallback() {
+
+			@Override
+			public void onSuccess(List<NotificationModel> modelList) {
+				super.onSuccess(modelList);
+
+				mPrefetchController.onPageLoaded();
+				if (!isAdded()) {
+					return;
+				}
+
+				isLoadingPosts = false;
+				isLastPage = modelList.isEmpty();
+				updateList();
+			}
 
 			@Override
 			public void onFail(String errorMessage) {
 				super.onFail(errorMessage);
 
+				mPrefetchController.onPageLoaded();
+				if (!isAdded()) {
+					return;
+				}
+
 				isLoadingPosts = false;
-				mPage--;
 				isRetry = true;
 				mAdapter.notifyDataSetChanged();
-				mSwipeRefreshLayout.setEnabled(true);
-				mSwipeRefreshLayout.setRefreshing(false);
 			}
 		});
 	}
 
-	public ListView getListView() {
-		return mListView;
+	private void updateList() {
+		mList.clear();
+		mList.addAll(NotificationStore.getList(activity));
+		mAdapter.notifyDataSetChanged();
+	}
+
+	public RecyclerView getRecyclerView() {
+		return mRecyclerView;
 	}
 
-	public class Adapter extends BaseAdapter
-			implements PinnedSectionListView.PinnedSectionListAdapter {
+	public class Adapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+			implements View.OnClickListener, View.OnLongClickListener {
 
-		private final int TYPE_NOTIFICATION = 0, TYPE_PROGRESS = 1, TYPE_RETRY = 2;
+		private static final int TYPE_NOTIFICATION = 0, TYPE_PROGRESS = 1, TYPE_RETRY = 2;
+		private static final long ID_PROGRESS = -1, ID_RETRY = -2;
 		private LayoutInflater inflater;
 
 		public Adapter(Context context) {
 			this.inflater =
 					(LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+			// Rows keep their views when notifications are added in front
+			setHasStableIds(true);
 		}
 
 		@Override
-		public int getCount() {
+		public int getItemCount() {
 			return mList.size() + (isRetry || isLoadingPosts ? 1 : 0);
 		}
 
 		@Override
 		public long getItemId(int position) {
-			return position;
-		}
-
-		@Override
-		public Object getItem(int position) {
 			if (position >= mList.size()) {
-				return getString(R.string.loading);
-			} else {
-				return mList.get(position);
+				return isRetry ? ID_RETRY : ID_PROGRESS;
+			}
+			String id = mList.get(position).id;
+			try {
+				return Long.parseLong(id);
+			} catch (NumberFormatException e) {
+				// Never negative, apart from the progress and retry rows
+				return id.hashCode() & 0xffffffffL;
 			}
-		}
-
-		@Override
-		public int getViewTypeCount() {
-			// TYPE_NOTIFICATION, TYPE_PROGRESS and TYPE_RETRY
-			return 3;
 		}
 
 		@Override
@@ -278,68 +332,75 @@ public class NotificationFragment extends SilentFragment
 		}
 
 		@Override
-		public boolean isItemViewTypePinned(int viewType) {
-			return false;
+		public void onClick(View v) {
+			RecyclerView.ViewHolder holder = mRecyclerView.findContainingViewHolder(v);
+			if (holder != null && holder.getAdapterPosition() != RecyclerView.NO_POSITION) {
+				onItemClick(holder.getAdapterPosition());
+			}
 		}
 
 		@Override
-		public boolean isEnabled(int position) {
-			return getItemViewType(position) != TYPE_PROGRESS;
+		public boolean onLongClick(View v) {
+			RecyclerView.ViewHolder holder = mRecyclerView.findContainingViewHolder(v);
+			return holder != null && holder.getAdapterPosition() != RecyclerView.NO_POSITION &&
+					onItemLongClick(holder.getAdapterPosition());
 		}
 
+		@NonNull
 		@Override
-		public View getView(int position, View convertView, ViewGroup parent) {
-			ViewHolder holder = null;
-			RetryViewHolder retryHolder = null;
-			int item_type = getItemViewType(position);
-			if (convertView == null) {
-				if (item_type == TYPE_NOTIFICATION) {
-					holder = new ViewHolder();
-					convertView = inflater.inflate(R.layout.list_notification, parent, false);
-					holder.textView_author =
-							(TextView) convertView.findViewById(R.id.textView_author);
-					holder.textView_date = (TextView) convertView.findViewById(R.id.textView_date);
-					holder.textView_content =
-							(TextView) convertView.findViewById(R.id.textView_content);
-					convertView.setTag(holder);
-				} else if (item_type == TYPE_PROGRESS) {
-					convertView =
-							inflater.inflate(R.layout.list_material_progress_bar, parent, false);
-				} else {
-					retryHolder = new RetryViewHolder();
-					convertView = inflater.inflate(R.layout.list_text, parent, false);
-					retryHolder.textView = (TextView) convertView.findViewById(R.id.textView);
-					convertView.setTag(retryHolder);
-				}
+		public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent,
+		                                                  int viewType) {
+			if (viewType == TYPE_NOTIFICATION) {
+				View view = inflater.inflate(R.layout.list_notification, parent, false);
+				view.setOnClickListener(this);
+				view.setOnLongClickListener(this);
+				return new ViewHolder(view);
+			} else if (viewType == TYPE_PROGRESS) {
+				return new RecyclerView.ViewHolder(
+						inflater.inflate(R.layout.list_material_progress_bar, parent, false)) {
+
+				};
 			} else {
-				if (item_type == TYPE_NOTIFICATION) {
-					holder = (ViewHolder) convertView.getTag();
-				} else {
-					retryHolder = (RetryViewHolder) convertView.getTag();
-				}
-
+				View view = inflater.inflate(R.layout.list_text, parent, false);
+				view.setOnClickListener(this);
+				return new RetryViewHolder(view);
 			}
+		}
 
-			if (item_type == TYPE_NOTIFICATION) {
-				holder.textView_author.setText(mList.get(position).author);
-				holder.textView_date.setText(mList.get(position).date);
-				holder.textView_content.setText(mList.get(position).content);
-			} else if (item_type == TYPE_RETRY) {
-				retryHolder.textView.setText(R.string.click_to_retry);
+		@Override
+		public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+			if (holder instanceof ViewHolder) {
+				ViewHolder notificationHolder = (ViewHolder) holder;
+				notificationHolder.textView_author.setText(mList.get(position).author);
+				notificationHolder.textView_date.setText(mList.get(position).date);
+				notificationHolder.textView_content.setText(mList.get(position).content);
+			} else if (holder instanceof RetryViewHolder) {
+				((RetryViewHolder) holder).textView.setText(R.string.click_to_retry);
 			}
-			return convertView;
 		}
 
-		class ViewHolder {
+		class ViewHolder extends RecyclerView.ViewHolder {
+
+			final TextView textView_author;
+			final TextView textView_date;
+			final TextView textView_content;
 
-			TextView textView_author;
-			TextView textView_date;
-			TextView textView_content;
+			ViewHolder(View view) {
+				super(view);
+				textView_author = (TextView) view.findViewById(R.id.textView_author);
+				textView_date = (TextView) view.findViewById(R.id.textView_date);
+				textView_content = (TextView) view.findViewById(R.id.textView_content);
+			}
 		}
 
-		class RetryViewHolder {
+		class RetryViewHolder extends RecyclerView.ViewHolder {
+
+			final TextView textView;
 
-			TextView textView;
+			RetryViewHolder(View view) {
+				super(view);
+				textView = (TextView) view.findViewById(R.id.textView);
+			}
 		}
 	}
 }
\ No newline at end of file
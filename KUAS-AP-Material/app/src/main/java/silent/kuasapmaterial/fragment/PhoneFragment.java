@@ -6,32 +6,32 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AlertDialog;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.kuas.ap.R;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import silent.kuasapmaterial.base.SilentFragment;
-import silent.kuasapmaterial.libs.PinnedSectionListView;
 import silent.kuasapmaterial.models.PhoneModel;
 
-public class PhoneFragment extends SilentFragment implements AdapterView.OnItemClickListener {
+public class PhoneFragment extends SilentFragment {
 
 	List<PhoneModel> mList;
 	Activity activity;
 	private View view;
-	private PinnedSectionListView mListView;
+	private RecyclerView mRecyclerView;
+	private LinearLayoutManager mLayoutManager;
 	private SwipeRefreshLayout mSwipeRefreshLayout;
 	private int mInitListPos = 0, mInitListOffset = 0;
 
@@ -67,15 +67,16 @@ public class PhoneFragment extends SilentFragment implements AdapterView.OnItemC
 	public void onSaveInstanceState(Bundle outState) {
 		super.onSaveInstanceState(outState);
 
-		if (mListView != null) {
-			outState.putInt("mInitListPos", mListView.getFirstVisiblePosition());
-			View vNewTop = mListView.getChildAt(0);
+		if (mLayoutManager != null) {
+			int position = mLayoutManager.findFirstVisibleItemPosition();
+			View vNewTop = mLayoutManager.findViewByPosition(position);
+			outState.putInt("mInitListPos", Math.max(0, position));
 			outState.putInt("mInitListOffset", (vNewTop == null) ? 0 : vNewTop.getTop());
 		}
 	}
 
 	private void findViews() {
-		mListView = (PinnedSectionListView) view.findViewById(R.id.listView);
+		mRecyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
 		mSwipeRefreshLayout = (SwipeRefreshLayout) view.findViewById(R.id.swipeRefreshLayout);
 	}
 
@@ -93,25 +94,25 @@ public class PhoneFragment extends SilentFragment implements AdapterView.OnItemC
 		mList.add(new PhoneModel("圖書館", "(07) 381-4526 #3100"));
 		mList.add(new PhoneModel("建工校外賃居服務中心", "(07) 381-4526 #3420"));
 		mList.add(new PhoneModel("燕巢校外賃居服務中心", "(07) 381-4526 #8615"));
-		PhoneAdapter adapter = new PhoneAdapter(activity);
-		mListView.setAdapter(adapter);
-		mListView.setOnItemClickListener(this);
-
-		((ListView) mListView).setSelectionFromTop(mInitListPos, mInitListOffset);
+		mLayoutManager = new LinearLayoutManager(activity);
+		mRecyclerView.setLayoutManager(mLayoutManager);
+		mRecyclerView.addItemDecoration(
+				new DividerItemDecoration(activity, DividerItemDecoration.VERTICAL));
+		mRecyclerView.setHasFixedSize(true);
+		mRecyclerView.setAdapter(new PhoneAdapter(activity));
+
+		mLayoutManager.scrollToPositionWithOffset(mInitListPos, mInitListOffset);
 	}
 
-	@Override
-	public void onItemClick(AdapterView<?> parent, View view, final int position, long id) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("call phone").setAction("create")
-				.build());
+	private void onItemClick(final int position) {
+		sendEvent("call phone", "create");
 		new AlertDialog.Builder(activity).setTitle(R.string.call_phone_title)
 				.setMessage(getString(R.string.call_phone_content, mList.get(position).name))
 				.setPositiveButton(R.string.call_phone, new DialogInterface.OnClickListener() {
 
 					@Override
 					public void onClick(DialogInterface dialog, int which) {
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("call phone")
-								.setAction("click").build());
+						sendEvent("call phone", "click");
 						Intent myIntentDial = new Intent(Intent.ACTION_DIAL,
 								Uri.parse("tel:" + mList.get(position).phone.replace("#", ",")));
 						startActivity(myIntentDial);
@@ -119,22 +120,24 @@ public class PhoneFragment extends SilentFragment implements AdapterView.OnItemC
 				}).setNegativeButton(R.string.cancel, null).show();
 	}
 
-	public ListView getListView() {
-		return mListView;
+	public RecyclerView getRecyclerView() {
+		return mRecyclerView;
 	}
 
-	public class PhoneAdapter extends BaseAdapter
-			implements PinnedSectionListView.PinnedSectionListAdapter {
+	public class PhoneAdapter extends RecyclerView.Adapter<PhoneAdapter.ViewHolder>
+			implements View.OnClickListener {
 
 		private LayoutInflater inflater;
 
 		public PhoneAdapter(Context context) {
 			this.inflater =
 					(LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+			// The list never changes
+			setHasStableIds(true);
 		}
 
 		@Override
-		public int getCount() {
+		public int getItemCount() {
 			return mList.size();
 		}
 
@@ -144,47 +147,37 @@ public class PhoneFragment extends SilentFragment implements AdapterView.OnItemC
 		}
 
 		@Override
-		public PhoneModel getItem(int position) {
-			return mList.get(position);
-		}
-
-		@Override
-		public int getViewTypeCount() {
-			return 1;
-		}
-
-		@Override
-		public boolean isItemViewTypePinned(int viewType) {
-			return false;
+		public void onClick(View v) {
+			RecyclerView.ViewHolder holder = mRecyclerView.findContainingViewHolder(v);
+			if (holder != null && holder.getAdapterPosition() != RecyclerView.NO_POSITION) {
+				onItemClick(holder.getAdapterPosition());
+			}
 		}
 
+		@NonNull
 		@Override
-		public boolean isEnabled(int position) {
-			return true;
+		public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+			View view = inflater.inflate(R.layout.list_phone, parent, false);
+			view.setOnClickListener(this);
+			return new ViewHolder(view);
 		}
 
 		@Override
-		public View getView(int position, View convertView, ViewGroup parent) {
-			ViewHolder holder;
-			if (convertView == null) {
-				holder = new ViewHolder();
-				convertView = inflater.inflate(R.layout.list_phone, parent, false);
-				holder.textView_name = (TextView) convertView.findViewById(R.id.textView_name);
-				holder.textView_phone = (TextView) convertView.findViewById(R.id.textView_phone);
-				convertView.setTag(holder);
-			} else {
-				holder = (ViewHolder) convertView.getTag();
-			}
-
+		public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
 			holder.textView_name.setText(mList.get(position).name);
 			holder.textView_phone.setText(mList.get(position).phone);
-			return convertView;
 		}
 
-		class ViewHolder {
+		class ViewHolder extends RecyclerView.ViewHolder {
+
+			final TextView textView_name;
+			final TextView textView_phone;
 
-			TextView textView_name;
-			TextView textView_phone;
+			ViewHolder(View view) {
+				super(view);
+				textView_name = (TextView) view.findViewById(R.id.textView_name);
+				textView_phone = (TextView) view.findViewById(R.id.textView_phone);
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -1,25 +1,26 @@
 package silent.kuasapmaterial.fragment;
 
+import android.Manifest;
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.provider.CalendarContract;
 import android.support.annotation.NonNull;
+import android.support.v4.content.ContextCompat;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AlertDialog;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.BaseAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.google.android.gms.analytics.HitBuilders;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.remoteconfig.FirebaseRemoteConfig;
@@ -27,26 +28,38 @@ import com.google.firebase.remoteconfig.FirebaseRemoteConfigSettings;
 import com.kuas.ap.BuildConfig;
 import com.kuas.ap.R;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 
+import silent.kuasapmaterial.base.SilentApplication;
 import silent.kuasapmaterial.base.SilentFragment;
-import silent.kuasapmaterial.libs.PinnedSectionListView;
-
-public class ScheduleFragment extends SilentFragment implements AdapterView.OnItemClickListener {
-
-	List<String> mList;
+import silent.kuasapmaterial.callback.CalendarExportCallback;
+import silent.kuasapmaterial.callback.ScheduleCallback;
+import silent.kuasapmaterial.libs.CalendarExporter;
+import silent.kuasapmaterial.libs.ScheduleIndex;
+import silent.kuasapmaterial.libs.Startup;
+import silent.kuasapmaterial.libs.StickyHeaderDecoration;
+import silent.kuasapmaterial.libs.TimeParser;
+import silent.kuasapmaterial.libs.Utils;
+import silent.kuasapmaterial.models.CalendarModel;
+import silent.kuasapmaterial.models.ScheduleEventModel;
+
+public class ScheduleFragment extends SilentFragment {
+
+	// Rows shown above the first upcoming event
+	private static final int UPCOMING_CONTEXT_ROWS = 4;
+	private static final int REQUEST_CALENDAR_PERMISSION = 100;
+	// In seconds
+	private static final long SCHEDULE_CACHE_EXPIRATION = 12 * 60 * 60;
+
+	ScheduleIndex mIndex;
 	Activity activity;
-	String mScheduleData;
 	private View view;
-	private PinnedSectionListView mListView;
+	private RecyclerView mRecyclerView;
+	private LinearLayoutManager mLayoutManager;
 	private SwipeRefreshLayout mSwipeRefreshLayout;
+	private ScheduleAdapter mAdapter;
 	private int mInitListPos = 0, mInitListOffset = 0;
+	private boolean isRestored = false;
 	private FirebaseRemoteConfig mFirebaseRemoteConfig;
 
 	@Override
@@ -58,6 +71,9 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 
 		restoreArgs(savedInstanceState);
 		findViews();
+		// A new view needs its own adapter
+		mIndex = null;
+		mAdapter = null;
 		getScheduleData();
 
 		return view;
@@ -72,6 +88,7 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 
 	private void restoreArgs(Bundle savedInstanceState) {
 		if (savedInstanceState != null) {
+			isRestored = true;
 			mInitListPos = savedInstanceState.getInt("mInitListPos");
 			mInitListOffset = savedInstanceState.getInt("mInitListOffset");
 		}
@@ -81,105 +98,196 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 	public void onSaveInstanceState(Bundle outState) {
 		super.onSaveInstanceState(outState);
 
-		if (mListView != null) {
-			outState.putInt("mInitListPos", mListView.getFirstVisiblePosition());
-			View vNewTop = mListView.getChildAt(0);
+		if (mLayoutManager != null) {
+			int position = mLayoutManager.findFirstVisibleItemPosition();
+			View vNewTop = mLayoutManager.findViewByPosition(position);
+			outState.putInt("mInitListPos", Math.max(0, position));
 			outState.putInt("mInitListOffset", (vNewTop == null) ? 0 : vNewTop.getTop());
 		}
 	}
 
 	private void findViews() {
-		mListView = (PinnedSectionListView) view.findViewById(R.id.listView);
+		mRecyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
 		mSwipeRefreshLayout = (SwipeRefreshLayout) view.findViewById(R.id.swipeRefreshLayout);
 	}
 
-	private void setUpViews() {
+	private void setUpViews(ScheduleIndex index) {
+		mIndex = index;
+		if (mAdapter != null) {
+			mAdapter.notifyDataSetChanged();
+			return;
+		}
 		// TODO wait for API
 		mSwipeRefreshLayout.setEnabled(false);
-		mListView.setDividerHeight(0);
 
-		mList = new ArrayList<>();
-		try {
-			JSONArray jsonArray = new JSONArray(mScheduleData.trim());
-			for (int i = 0; i < jsonArray.length(); i++) {
-				mList.add(jsonArray.getJSONObject(i).getString("week"));
-				JSONArray eventArray = jsonArray.getJSONObject(i).getJSONArray("events");
-				for (int j = 0; j < eventArray.length(); j++) {
-					mList.add("*" + eventArray.getString(j));
-					if (mInitListPos == 0) {
-						try {
-							Calendar calendar = Calendar.getInstance();
-							Date now = new Date(System.currentTimeMillis());
-							String _time = eventArray.getString(j).split("\\) ")[0].substring(1);
-							String _startTime =
-									_time.contains("~") ? _time.split("~")[1].trim() : _time;
-							calendar.set(Calendar.getInstance().get(Calendar.YEAR),
-									Integer.parseInt(_startTime.split("/")[0]) - 1,
-									Integer.parseInt(_startTime.split("/")[1]));
-							if (calendar.getTime().after(now)) {
-								mInitListPos = mList.size() - 5 < 0 ? 0 : mList.size() - 5;
-							}
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
-					}
-				}
+		if (!isRestored) {
+			int upcoming = mIndex.findFirstUpcoming(System.currentTimeMillis());
+			if (upcoming != ScheduleIndex.NONE) {
+				mInitListPos = Math.max(0, upcoming - UPCOMING_CONTEXT_ROWS);
 			}
-		} catch (JSONException e) {
-			e.printStackTrace();
 		}
 
-		ScheduleAdapter adapter = new ScheduleAdapter(activity);
-		mListView.setAdapter(adapter);
-		mListView.setOnItemClickListener(this);
+		mLayoutManager = new LinearLayoutManager(activity);
+		mRecyclerView.setLayoutManager(mLayoutManager);
+		mRecyclerView.setHasFixedSize(true);
+		mAdapter = new ScheduleAdapter(activity);
+		mRecyclerView.setAdapter(mAdapter);
+		new StickyHeaderDecoration(mRecyclerView);
 
-		((ListView) mListView).setSelectionFromTop(mInitListPos, mInitListOffset);
+		mLayoutManager.scrollToPositionWithOffset(mInitListPos, mInitListOffset);
 	}
 
-	@Override
-	public void onItemClick(AdapterView<?> parent, View view, final int position, long id) {
-		mTracker.send(new HitBuilders.EventBuilder().setCategory("add schedule").setAction("create")
-				.build());
-		new AlertDialog.Builder(activity).setTitle(R.string.schedule).setMessage(
-				getString(R.string.add_cal_content, mList.get(position).split("\\) ")[1]))
+	private void onItemClick(final int position) {
+		final ScheduleEventModel event = mIndex.getEvent(position);
+		if (event == null || event.startMillis == TimeParser.INVALID) {
+			return;
+		}
+		sendEvent("add schedule", "create");
+		new AlertDialog.Builder(activity).setTitle(R.string.schedule)
+				.setMessage(getString(R.string.add_cal_content, event.title))
 				.setPositiveButton(R.string.determine, new DialogInterface.OnClickListener() {
 
 					@Override
 					public void onClick(DialogInterface dialog, int which) {
-						mTracker.send(new HitBuilders.EventBuilder().setCategory("add schedule")
-								.setAction("click").build());
-						AddCalendarEvent(mList.get(position).substring(1));
+						sendEvent("add schedule", "click");
+						AddCalendarEvent(event);
+					}
+				}).setNeutralButton(R.string.export_calendar,
+				new DialogInterface.OnClickListener() {
+
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						sendEvent("export schedule", "click");
+						exportCalendar();
 					}
 				}).setNegativeButton(R.string.cancel, null).show();
 	}
 
-	public void AddCalendarEvent(String Msg) {
-		String _time = Msg.split("\\) ")[0].substring(1);
-		String _msg = Msg.split("\\) ")[1];
-		String _startTime;
-		String _endTime;
-		if (_time.contains("~")) {
-			_startTime = _time.split("~")[0].trim();
-			_endTime = _time.split("~")[1].trim();
-		} else {
-			_startTime = _time;
-			_endTime = _time;
+	private void exportCalendar() {
+		if (ContextCompat.checkSelfPermission(activity, Manifest.permission.WRITE_CALENDAR) !=
+				PackageManager.PERMISSION_GRANTED ||
+				ContextCompat.checkSelfPermission(activity, Manifest.permission.READ_CALENDAR) !=
+						PackageManager.PERMISSION_GRANTED) {
+			requestPermissions(new String[]{Manifest.permission.READ_CALENDAR,
+					Manifest.permission.WRITE_CALENDAR}, REQUEST_CALENDAR_PERMISSION);
+			return;
+		}
+		CalendarExporter.loadCalendars(activity, new CalendarExportCallback() {
+
+			@Override
+			public void onSuccess(List<CalendarModel> modelList) {
+				super.onSuccess(modelList);
+
+				if (isAdded()) {
+					showCalendarPicker(modelList);
+				}
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				if (isAdded()) {
+					Toast.makeText(activity, R.string.something_error, Toast.LENGTH_SHORT).show();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
+	                                       @NonNull int[] grantResults) {
+		super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+
+		if (requestCode != REQUEST_CALENDAR_PERMISSION) {
+			return;
+		}
+		for (int result : grantResults) {
+			if (result != PackageManager.PERMISSION_GRANTED) {
+				Toast.makeText(activity, R.string.export_calendar_permission, Toast.LENGTH_SHORT)
+						.show();
+				return;
+			}
 		}
+		if (grantResults.length > 0) {
+			exportCalendar();
+		}
+	}
+
+	private void showCalendarPicker(final List<CalendarModel> modelList) {
+		if (modelList.isEmpty()) {
+			Toast.makeText(activity, R.string.export_calendar_not_found, Toast.LENGTH_SHORT)
+					.show();
+			return;
+		}
+		String[] names = new String[modelList.size()];
+		for (int i = 0; i < modelList.size(); i++) {
+			CalendarModel model = modelList.get(i);
+			names[i] = model.name == null || model.name.equals(model.account) ? model.account :
+					model.name + " (" + model.account + ")";
+		}
+		new AlertDialog.Builder(activity).setTitle(R.string.export_calendar_title)
+				.setItems(names, new DialogInterface.OnClickListener() {
+
+					@Override
+					public void onClick(DialogInterface dialog, int which) {
+						exportCalendar(modelList.get(which).id);
+					}
+				}).setNegativeButton(R.string.cancel, null).show();
+	}
+
+	private void exportCalendar(long calendarId) {
+		final AlertDialog progressDialog =
+				Utils.createLoadingDialog(activity, R.string.export_calendar, R.string.loading);
+		progressDialog.show();
+		final TextView progressTextView =
+				(TextView) progressDialog.findViewById(R.id.textView_content);
+		CalendarExporter.export(activity, calendarId, mIndex == null ? null : mIndex.getWeeks(),
+				new CalendarExportCallback() {
+
+					@Override
+					public void onProgress(int doneCount, int totalCount) {
+						super.onProgress(doneCount, totalCount);
+
+						if (isAdded() && progressTextView != null) {
+							progressTextView.setText(getString(R.string.export_calendar_progress,
+									doneCount, totalCount));
+						}
+					}
+
+					@Override
+					public void onSuccess(int addedCount, int removedCount) {
+						super.onSuccess(addedCount, removedCount);
+
+						Utils.dismissDialog(progressDialog);
+						if (isAdded()) {
+							sendEvent("export schedule", "success");
+							Toast.makeText(activity, getString(R.string.export_calendar_success,
+									addedCount, removedCount), Toast.LENGTH_SHORT).show();
+						}
+					}
+
+					@Override
+					public void onFail(String errorMessage) {
+						super.onFail(errorMessage);
+
+						Utils.dismissDialog(progressDialog);
+						if (isAdded()) {
+							sendEvent("export schedule", "fail", errorMessage);
+							Toast.makeText(activity, R.string.something_error, Toast.LENGTH_SHORT)
+									.show();
+						}
+					}
+				});
+	}
+
+	public void AddCalendarEvent(ScheduleEventModel event) {
 		Intent calendarIntent =
 				new Intent(Intent.ACTION_INSERT, CalendarContract.Events.CONTENT_URI);
-		Calendar beginTime = Calendar.getInstance();
-		Calendar endTime = Calendar.getInstance();
-		beginTime.set(Calendar.getInstance().get(Calendar.YEAR),
-				Integer.parseInt(_startTime.split("/")[0]) - 1,
-				Integer.parseInt(_startTime.split("/")[1]), 0, 0, 0);
-		endTime.set(Calendar.getInstance().get(Calendar.YEAR),
-				Integer.parseInt(_endTime.split("/")[0]) - 1,
-				Integer.parseInt(_endTime.split("/")[1]), 23, 59, 59);
-		calendarIntent
-				.putExtra(CalendarContract.EXTRA_EVENT_BEGIN_TIME, beginTime.getTimeInMillis());
-		calendarIntent.putExtra(CalendarContract.EXTRA_EVENT_END_TIME, endTime.getTimeInMillis());
+		calendarIntent.putExtra(CalendarContract.EXTRA_EVENT_BEGIN_TIME, event.startMillis);
+		calendarIntent.putExtra(CalendarContract.EXTRA_EVENT_END_TIME, event.endMillis);
 		calendarIntent.putExtra(CalendarContract.EXTRA_EVENT_ALL_DAY, true);
-		calendarIntent.putExtra(CalendarContract.Events.TITLE, _msg);
+		calendarIntent.putExtra(CalendarContract.Events.TITLE, event.title);
 		calendarIntent.putExtra(CalendarContract.Events.EVENT_LOCATION, "國立高雄應用科技大學");
 		try {
 			startActivity(calendarIntent);
@@ -189,35 +297,78 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 		}
 	}
 
-	public ListView getListView() {
-		return mListView;
+	public RecyclerView getRecyclerView() {
+		return mRecyclerView;
 	}
 
 	private void getScheduleData() {
+		Startup.ensure(SilentApplication.INIT_FIREBASE);
 		mFirebaseRemoteConfig = FirebaseRemoteConfig.getInstance();
 		FirebaseRemoteConfigSettings configSettings = new FirebaseRemoteConfigSettings.Builder()
 				.setDeveloperModeEnabled(BuildConfig.DEBUG).build();
 		mFirebaseRemoteConfig.setConfigSettings(configSettings);
 
-		mFirebaseRemoteConfig.fetch(60).addOnCompleteListener(new OnCompleteListener<Void>() {
+		// The saved schedule, or the last activated config before anything is saved, never waits
+		// for the network
+		ScheduleIndex.load(activity, null, new ScheduleCallback() {
 
 			@Override
-			public void onComplete(@NonNull Task<Void> task) {
-				if (task.isSuccessful() && !activity.isFinishing()) {
-					mFirebaseRemoteConfig.activateFetched();
-					try {
-						mScheduleData = mFirebaseRemoteConfig.getString("schedule_data");
-						setUpViews();
-					} catch (Exception e) {
-						// ignore
+			public void onSuccess(ScheduleIndex index) {
+				super.onSuccess(index);
+
+				if (isAdded() && mIndex == null) {
+					setUpViews(index);
+				}
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				if (!activity.isFinishing()) {
+					loadConfigSchedule();
+				}
+			}
+		});
+
+		// The schedule changes a few times a semester, a cached fetch completes without a request
+		long cacheExpiration = BuildConfig.DEBUG ? 0 : SCHEDULE_CACHE_EXPIRATION;
+		mFirebaseRemoteConfig.fetch(cacheExpiration)
+				.addOnCompleteListener(new OnCompleteListener<Void>() {
+
+					@Override
+					public void onComplete(@NonNull Task<Void> task) {
+						if (task.isSuccessful() && !activity.isFinishing()) {
+							mFirebaseRemoteConfig.activateFetched();
+							loadConfigSchedule();
+						}
 					}
+				});
+	}
+
+	/**
+	 * Show the activated schedule_data, unless the saved schedule was parsed from the same
+	 */
+	private void loadConfigSchedule() {
+		String data = mFirebaseRemoteConfig.getString("schedule_data");
+		if (data == null || data.trim().isEmpty()) {
+			return;
+		}
+		ScheduleIndex.load(activity, data, new ScheduleCallback() {
+
+			@Override
+			public void onSuccess(ScheduleIndex index) {
+				super.onSuccess(index);
+
+				if (isAdded()) {
+					setUpViews(index);
 				}
 			}
 		});
 	}
 
-	public class ScheduleAdapter extends BaseAdapter
-			implements PinnedSectionListView.PinnedSectionListAdapter {
+	public class ScheduleAdapter extends RecyclerView.Adapter<ScheduleAdapter.ViewHolder>
+			implements StickyHeaderDecoration.StickyHeaderAdapter, View.OnClickListener {
 
 		private static final int TYPE_WEEK = 0, TYPE_SCHEDULE = 1;
 		private LayoutInflater inflater;
@@ -225,11 +376,13 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 		public ScheduleAdapter(Context context) {
 			this.inflater =
 					(LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+			// Rows of a schedule never move, a new schedule rebinds every row
+			setHasStableIds(true);
 		}
 
 		@Override
-		public int getCount() {
-			return mList.size();
+		public int getItemCount() {
+			return mIndex.getCount();
 		}
 
 		@Override
@@ -238,66 +391,49 @@ public class ScheduleFragment extends SilentFragment implements AdapterView.OnIt
 		}
 
 		@Override
-		public String getItem(int position) {
-			return mList.get(position);
+		public int getItemViewType(int position) {
+			return mIndex.isHeader(position) ? TYPE_WEEK : TYPE_SCHEDULE;
 		}
 
 		@Override
-		public int getViewTypeCount() {
-			// TYPE_WEEK and TYPE_SCHEDULE
-			return 2;
+		public boolean isHeader(int position) {
+			return getItemViewType(position) == TYPE_WEEK;
 		}
 
 		@Override
-		public boolean isItemViewTypePinned(int viewType) {
-			return viewType == TYPE_WEEK;
+		public void onClick(View v) {
+			RecyclerView.ViewHolder holder = mRecyclerView.findContainingViewHolder(v);
+			if (holder != null && holder.getAdapterPosition() != RecyclerView.NO_POSITION) {
+				onItemClick(holder.getAdapterPosition());
+			}
 		}
 
+		@NonNull
 		@Override
-		public int getItemViewType(int position) {
-			if (getItem(position).startsWith("*")) {
-				return TYPE_SCHEDULE;
+		public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+			View view;
+			if (viewType == TYPE_WEEK) {
+				view = inflater.inflate(R.layout.list_schedule_header, parent, false);
+			} else {
+				view = inflater.inflate(R.layout.list_schedule_item, parent, false);
+				view.setOnClickListener(this);
 			}
-			return TYPE_WEEK;
+			return new ViewHolder(view);
 		}
 
 		@Override
-		public boolean isEnabled(int position) {
-			return (getItemViewType(position) != TYPE_WEEK);
+		public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+			holder.textView.setText(mIndex.getText(position));
 		}
 
-		@Override
-		public View getView(int position, View convertView, ViewGroup parent) {
-			int type = getItemViewType(position);
-			ViewHolder holder;
-			if (convertView == null) {
-				holder = new ViewHolder();
-				switch (type) {
-					case TYPE_WEEK:
-						convertView =
-								inflater.inflate(R.layout.list_schedule_header, parent, false);
-						break;
-
-					default:
-						convertView = inflater.inflate(R.layout.list_schedule_item, parent, false);
-				}
-				holder.textView = (TextView) convertView.findViewById(R.id.textView);
-				convertView.setTag(holder);
-			} else {
-				holder = (ViewHolder) convertView.getTag();
-			}
+		class ViewHolder extends RecyclerView.ViewHolder {
 
-			if (type == TYPE_WEEK) {
-				holder.textView.setText(mList.get(position));
-			} else {
-				holder.textView.setText(mList.get(position).substring(1));
-			}
-			return convertView;
-		}
+			final TextView textView;
 
-		class ViewHolder {
-
-			TextView textView;
+			ViewHolder(View view) {
+				super(view);
+				textView = (TextView) view.findViewById(R.id.textView);
+			}
 		}
 	}
 }
\ No newline at end of file
@@ -7,15 +7,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.CustomEvent;
-import com.kuas.ap.R;
-
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import silent.kuasapmaterial.BusAlarmService;
 import silent.kuasapmaterial.CourseAlarmService;
@@ -32,16 +28,15 @@ public class AlarmHelper {
 		// Must cancel bus alarm if user cancel on web
 		List<BusModel> savedBusModelList = Utils.loadBusNotify(context);
 		if (savedBusModelList != null && savedBusModelList.size() != 0) {
+			Set<BusModel> busModelSet = new HashSet<>(busModelList);
 			for (BusModel model : savedBusModelList) {
 				try {
-					if (!busModelList.contains(model)) {
+					if (!busModelSet.contains(model)) {
 						cancelBusAlarm(context, model.endStation, model.runDateTime,
 								Integer.parseInt(model.cancelKey));
 					}
 				} catch (Exception e) {
-					Answers.getInstance().logCustom(
-							new CustomEvent("Gson").putCustomAttribute("Type", "Bus Cancel")
-									.putCustomAttribute("Exception", e.getMessage()));
+					logGsonError("Bus Cancel", e);
 				}
 			}
 		}
@@ -49,12 +44,9 @@ public class AlarmHelper {
 		Utils.saveBusNotify(context, busModelList);
 		for (BusModel model : busModelList) {
 			try {
-				setBusAlarm(context, model.endStation, model.runDateTime,
-						Integer.parseInt(model.cancelKey));
+				setBusAlarm(context, model);
 			} catch (Exception e) {
-				Answers.getInstance().logCustom(
-						new CustomEvent("Gson").putCustomAttribute("Type", "Bus Set")
-								.putCustomAttribute("Exception", e.getMessage()));
+				logGsonError("Bus Set", e);
 			}
 		}
 
@@ -65,41 +57,32 @@ public class AlarmHelper {
 		if (busModelList != null) {
 			for (BusModel model : busModelList) {
 				try {
-					setBusAlarm(context, model.endStation,
-							model.runDateTime == null ? model.Time : model.runDateTime,
-							Integer.parseInt(model.cancelKey));
+					setBusAlarm(context, model);
 				} catch (Exception e) {
-					Answers.getInstance().logCustom(
-							new CustomEvent("Gson").putCustomAttribute("Type", "Bus Boot")
-									.putCustomAttribute("Exception", e.getMessage()));
+					logGsonError("Bus Boot", e);
 				}
 			}
 		}
 	}
 
-	public static void setCourseNotification(Context context,
-	                                         List<List<CourseModel>> courseModelList) {
-		if (courseModelList == null) {
+	public static void setCourseNotification(Context context, TimetableIndex index) {
+		if (index == null) {
 			return;
 		}
 
-		List<String> keyList = new ArrayList<>();
+		boolean[] notified = new boolean[index.getCourseCount()];
 		List<CourseModel> saveModelList = new ArrayList<>();
-		for (int i = 0; i < courseModelList.size(); i++) {
-			if (courseModelList.get(i) != null) {
-				for (int j = 0; j < courseModelList.get(i).size(); j++) {
-					if (courseModelList.get(i).get(j) != null) {
-						if (keyList.contains(courseModelList.get(i).get(j).title + i)) {
-							continue;
-						} else {
-							keyList.add(courseModelList.get(i).get(j).title + i);
-						}
-
-						CourseModel courseModel = courseModelList.get(i).get(j);
-						courseModel.dayOfWeek = i == 6 ? 1 : (i + 2);
-						courseModel.notifyKey = j * 10 + i;
-						saveModelList.add(courseModel);
-					}
+		for (int i = 0; i < TimetableIndex.WEEKDAYS; i++) {
+			// Only notify the first section of a course each day
+			Arrays.fill(notified, false);
+			long occupied = index.getOccupiedSections(i);
+			while (occupied != 0) {
+				int section = Long.numberOfTrailingZeros(occupied);
+				occupied &= occupied - 1;
+				int courseId = index.getCourseId(i, section);
+				if (!notified[courseId]) {
+					notified[courseId] = true;
+					saveModelList.add(index.get(i, section));
 				}
 			}
 		}
@@ -107,15 +90,14 @@ public class AlarmHelper {
 		// Must cancel course alarm if user cancel on web
 		List<CourseModel> savedCourseModelList = Utils.loadCourseNotify(context);
 		if (savedCourseModelList != null) {
+			Set<CourseModel> saveModelSet = new HashSet<>(saveModelList);
 			for (CourseModel courseModel : savedCourseModelList) {
-				if (!saveModelList.contains(courseModel)) {
+				if (!saveModelSet.contains(courseModel)) {
 					try {
 						cancelCourseAlarm(context, courseModel.room.trim(), courseModel.title,
 								courseModel.start_time, courseModel.notifyKey);
 					} catch (Exception e) {
-						Answers.getInstance().logCustom(
-								new CustomEvent("Gson").putCustomAttribute("Type", "Course Cancel")
-										.putCustomAttribute("Exception", e.getMessage()));
+						logGsonError("Course Cancel", e);
 					}
 				}
 			}
@@ -124,12 +106,9 @@ public class AlarmHelper {
 		// Must set alarm after cancel
 		for (CourseModel courseModel : saveModelList) {
 			try {
-				setCourseAlarm(context, courseModel.room.trim(), courseModel.title,
-						courseModel.start_time, courseModel.dayOfWeek, courseModel.notifyKey);
+				setCourseAlarm(context, courseModel);
 			} catch (Exception e) {
-				Answers.getInstance().logCustom(
-						new CustomEvent("Gson").putCustomAttribute("Type", "Course Set")
-								.putCustomAttribute("Exception", e.getMessage()));
+				logGsonError("Course Set", e);
 			}
 		}
 
@@ -141,12 +120,9 @@ public class AlarmHelper {
 		if (courseModelList != null) {
 			for (CourseModel courseModel : courseModelList) {
 				try {
-					setCourseAlarm(context, courseModel.room.trim(), courseModel.title,
-							courseModel.start_time, courseModel.dayOfWeek, courseModel.notifyKey);
+					setCourseAlarm(context, courseModel);
 				} catch (Exception e) {
-					Answers.getInstance().logCustom(
-							new CustomEvent("Gson").putCustomAttribute("Type", "Course Boot")
-									.putCustomAttribute("Exception", e.getMessage()));
+					logGsonError("Course Boot", e);
 				}
 			}
 		}
@@ -167,33 +143,27 @@ public class AlarmHelper {
 		alarm.cancel(pendingIntent);
 	}
 
-	public static void setBusAlarm(Context context, String endStation, String time, int id) {
-		if (!time.contains(" ") || !time.contains("-") || !time.contains(":")) {
+	public static void setBusAlarm(Context context, BusModel model) {
+		if (model.runMillis == TimeParser.INVALID) {
 			return;
 		}
 
 		Intent intent = new Intent(context, BusAlarmService.class);
 
 		Bundle bundle = new Bundle();
-		bundle.putString("endStation", endStation);
-		bundle.putString("Time", time);
+		bundle.putString("endStation", model.endStation);
+		bundle.putString("Time", model.runDateTime == null ? model.Time : model.runDateTime);
 		intent.putExtras(bundle);
 
-		Calendar calendar = Calendar.getInstance();
-		String _date = time.split(" ")[0];
-		String _time = time.split(" ")[1];
-		calendar.set(Integer.parseInt(_date.split("-")[0]),
-				Integer.parseInt(_date.split("-")[1]) - 1, Integer.parseInt(_date.split("-")[2]),
-				Integer.parseInt(_time.split(":")[0]), Integer.parseInt(_time.split(":")[1]));
-		calendar.add(Calendar.MINUTE, -30);
-		PendingIntent pendingIntent =
-				PendingIntent.getService(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+		long triggerAtMillis = model.runMillis - 30 * 60 * 1000L;
+		PendingIntent pendingIntent = PendingIntent
+				.getService(context, Integer.parseInt(model.cancelKey), intent,
+						PendingIntent.FLAG_UPDATE_CURRENT);
 
 		AlarmManager alarm = (AlarmManager) context.getSystemService(Service.ALARM_SERVICE);
 		alarm.cancel(pendingIntent);
-		Date now = new Date(System.currentTimeMillis());
-		if (calendar.getTime().after(now)) {
-			alarm.set(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), pendingIntent);
+		if (triggerAtMillis > System.currentTimeMillis()) {
+			alarm.set(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
 		}
 	}
 
@@ -213,36 +183,31 @@ public class AlarmHelper {
 		alarm.cancel(pendingIntent);
 	}
 
-	public static void setCourseAlarm(Context context, String room, String title, String time,
-	                                  int dayOfWeek, int id) {
-		if (!time.contains(":")) {
+	public static void setCourseAlarm(Context context, CourseModel model) {
+		if (model.startMinute == TimeParser.INVALID) {
 			return;
 		}
 
 		Intent intent = new Intent(context, CourseAlarmService.class);
 
 		Bundle bundle = new Bundle();
-		bundle.putString("room", room);
-		bundle.putString("title", title);
-		bundle.putString("time", time);
+		bundle.putString("room", model.room.trim());
+		bundle.putString("title", model.title);
+		bundle.putString("time", model.start_time);
 		intent.putExtras(bundle);
 
-		Calendar calendar = Calendar.getInstance();
-		calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-		calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(time.split(":")[0]));
-		calendar.set(Calendar.MINUTE, Integer.parseInt(time.split(":")[1]));
-		calendar.set(Calendar.SECOND, 0);
-		calendar.add(Calendar.MINUTE, -10);
-		PendingIntent pendingIntent =
-				PendingIntent.getService(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-		Date now = new Date(System.currentTimeMillis());
-		if (calendar.getTime().before(now)) {
-			calendar.add(Calendar.DAY_OF_MONTH, 7);
-		}
+		PendingIntent pendingIntent = PendingIntent
+				.getService(context, model.notifyKey, intent, PendingIntent.FLAG_UPDATE_CURRENT);
 
 		AlarmManager alarm = (AlarmManager) context.getSystemService(Service.ALARM_SERVICE);
 		alarm.cancel(pendingIntent);
-		alarm.setRepeating(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(),
+		alarm.setRepeating(AlarmManager.RTC_WAKEUP,
+				TimeParser.nextWeeklyMillis(model.dayOfWeek, model.startMinute - 10),
 				AlarmManager.INTERVAL_DAY * 7, pendingIntent);
 	}
+
+	static void logGsonError(String type, Exception e) {
+		// Called once per model from the alarm loops, buffered and sent in one batch
+		Analytics.error("Gson", type, e.getMessage());
+	}
 }
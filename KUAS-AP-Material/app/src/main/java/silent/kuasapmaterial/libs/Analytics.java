@@ -0,0 +1,318 @@
+package silent.kuasapmaterial.libs;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.crashlytics.android.answers.Answers;
+import com.crashlytics.android.answers.CustomEvent;
+import com.google.android.gms.analytics.GoogleAnalytics;
+import com.google.android.gms.analytics.HitBuilders;
+import com.google.android.gms.analytics.Tracker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import silent.kuasapmaterial.base.SilentApplication;
+
+/**
+ * Front of Google Analytics and Answers. Callers only copy the event into a preallocated ring
+ * buffer, hits are built and handed to the SDKs in batches on a background thread, preferably
+ * while the radio is awake anyway (API 21+).
+ * <p>
+ * High-frequency categories are sampled, a sampled event carries the sampling rate as its value,
+ * so the sum of values still estimates the real count.
+ */
+
+public class Analytics {
+
+	private static final int CAPACITY = 256;
+	private static final int MASK = CAPACITY - 1;
+	private static final int BATCH_SIZE = 20;
+	// Flush even without network activity once the buffer is this full, or this long after the
+	// first buffered event
+	private static final int HIGH_WATER = CAPACITY * 3 / 4;
+	private static final long MAX_DELAY = 15 * 60 * 1000;
+
+	private static final int TYPE_SCREEN = 0;
+	private static final int TYPE_EVENT = 1;
+	private static final int TYPE_ERROR = 2;
+
+	// category -> keep one of every N events
+	private static final Map<String, Integer> SAMPLING_RATES = new HashMap<>();
+	private static final Map<String, AtomicInteger> SAMPLING_COUNTERS = new HashMap<>();
+
+	static {
+		SAMPLING_RATES.put("load more", 10);
+		SAMPLING_RATES.put("refresh", 4);
+		SAMPLING_RATES.put("easter egg", 4);
+		for (String category : SAMPLING_RATES.keySet()) {
+			SAMPLING_COUNTERS.put(category, new AtomicInteger());
+		}
+	}
+
+	private static final Slot[] sSlots = new Slot[CAPACITY];
+	// Per slot, the sequence number + 1 of the event published into it
+	private static final AtomicLongArray sPublished = new AtomicLongArray(CAPACITY);
+	private static final AtomicLong sHead = new AtomicLong();
+	private static volatile long sTail = 0;
+	private static final AtomicInteger sDropped = new AtomicInteger();
+	private static final AtomicBoolean isDelayedFlushScheduled = new AtomicBoolean();
+
+	private static volatile Handler sHandler;
+	private static Context sContext;
+
+	static {
+		for (int i = 0; i < CAPACITY; i++) {
+			sSlots[i] = new Slot();
+		}
+	}
+
+	private static class Slot {
+
+		int type;
+		Tracker tracker;
+		String category, action, label;
+		long value;
+	}
+
+	private static final Runnable sFlushRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			if (isNetworkActive() || size() >= HIGH_WATER) {
+				flush();
+			}
+		}
+	};
+	private static final Runnable sForceFlushRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			flush();
+		}
+	};
+	private static final Runnable sDelayedFlushRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			isDelayedFlushScheduled.set(false);
+			flush();
+		}
+	};
+
+	/**
+	 * Start the background dispatcher, events sent before are kept in the buffer
+	 */
+	public static synchronized void init(Context context) {
+		if (sHandler != null) {
+			return;
+		}
+		sContext = context.getApplicationContext();
+		HandlerThread thread = new HandlerThread("Analytics", Process.THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		sHandler = new Handler(thread.getLooper());
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			listenNetworkActive();
+		}
+		if (size() > 0) {
+			scheduleDelayedFlush();
+		}
+	}
+
+	public static void screenView(Tracker tracker) {
+		if (tracker != null) {
+			offer(TYPE_SCREEN, tracker, null, null, null, 0);
+		}
+	}
+
+	public static void event(Tracker tracker, String category, String action) {
+		event(tracker, category, action, null);
+	}
+
+	public static void event(Tracker tracker, String category, String action, String label) {
+		if (tracker == null) {
+			return;
+		}
+		long value = sample(category);
+		if (value >= 0) {
+			offer(TYPE_EVENT, tracker, category, action, label, value);
+		}
+	}
+
+	/**
+	 * Answers custom event with "Type" and "Exception" attributes
+	 */
+	public static void error(String name, String type, String message) {
+		offer(TYPE_ERROR, null, name, type, message, 0);
+	}
+
+	/**
+	 * Hand everything buffered to the SDKs now, e.g. when the app goes to the background
+	 */
+	public static void requestFlush() {
+		Handler handler = sHandler;
+		if (handler != null && size() > 0) {
+			handler.post(sForceFlushRunnable);
+		}
+	}
+
+	/**
+	 * @return 0 to send without a value, the sampling rate if sampled in, -1 if sampled out
+	 */
+	private static long sample(String category) {
+		AtomicInteger counter = SAMPLING_COUNTERS.get(category);
+		if (counter == null) {
+			return 0;
+		}
+		int rate = SAMPLING_RATES.get(category);
+		return counter.getAndIncrement() % rate == 0 ? rate : -1;
+	}
+
+	private static void offer(int type, Tracker tracker, String category, String action,
+	                          String label, long value) {
+		long sequence;
+		do {
+			sequence = sHead.get();
+			if (sequence - sTail >= CAPACITY) {
+				// Never block the caller, the dispatcher is behind
+				sDropped.incrementAndGet();
+				return;
+			}
+		} while (!sHead.compareAndSet(sequence, sequence + 1));
+
+		int index = (int) (sequence & MASK);
+		Slot slot = sSlots[index];
+		slot.type = type;
+		slot.tracker = tracker;
+		slot.category = category;
+		slot.action = action;
+		slot.label = label;
+		slot.value = value;
+		sPublished.lazySet(index, sequence + 1);
+
+		long size = sequence + 1 - sTail;
+		if (size == 1) {
+			scheduleDelayedFlush();
+		}
+		if (size % BATCH_SIZE == 0) {
+			Handler handler = sHandler;
+			if (handler != null) {
+				handler.post(sFlushRunnable);
+			}
+		}
+	}
+
+	private static long size() {
+		return sHead.get() - sTail;
+	}
+
+	private static void scheduleDelayedFlush() {
+		Handler handler = sHandler;
+		if (handler != null && isDelayedFlushScheduled.compareAndSet(false, true)) {
+			handler.postDelayed(sDelayedFlushRunnable, MAX_DELAY);
+		}
+	}
+
+	/**
+	 * Only runs on the dispatcher thread
+	 */
+	private static void flush() {
+		int count = 0;
+		long tail = sTail;
+		while (tail < sHead.get()) {
+			int index = (int) (tail & MASK);
+			if (sPublished.get(index) != tail + 1) {
+				// Claimed but still being written
+				break;
+			}
+			Slot slot = sSlots[index];
+			dispatch(slot);
+			slot.tracker = null;
+			slot.category = slot.action = slot.label = null;
+			tail++;
+			sTail = tail;
+			count++;
+		}
+		int dropped = sDropped.getAndSet(0);
+		if (dropped > 0) {
+			Log.w(Constant.TAG, "Analytics dropped " + dropped + " events");
+		}
+		// Otherwise Google Analytics sends the hits on its own schedule
+		if (count > 0 && sContext != null && isNetworkActive()) {
+			GoogleAnalytics.getInstance(sContext).dispatchLocalHits();
+		}
+		if (size() > 0) {
+			scheduleDelayedFlush();
+		}
+	}
+
+	private static void dispatch(Slot slot) {
+		try {
+			switch (slot.type) {
+				case TYPE_SCREEN:
+					slot.tracker.send(new HitBuilders.ScreenViewBuilder().build());
+					break;
+				case TYPE_EVENT:
+					HitBuilders.EventBuilder builder =
+							new HitBuilders.EventBuilder().setCategory(slot.category)
+									.setAction(slot.action);
+					if (slot.label != null) {
+						builder.setLabel(slot.label);
+					}
+					if (slot.value > 0) {
+						builder.setValue(slot.value);
+					}
+					slot.tracker.send(builder.build());
+					break;
+				case TYPE_ERROR:
+					Startup.ensure(SilentApplication.INIT_CRASHLYTICS);
+					Answers.getInstance().logCustom(new CustomEvent(slot.category)
+							.putCustomAttribute("Type", slot.action)
+							.putCustomAttribute("Exception", slot.label));
+					break;
+			}
+		} catch (Exception e) {
+			// A broken SDK must not stop the dispatcher
+			Log.e(Constant.TAG, "Analytics dispatch failed", e);
+		}
+	}
+
+	private static boolean isNetworkActive() {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || sContext == null) {
+			// No way to tell, batches go out as they fill up
+			return true;
+		}
+		ConnectivityManager connectivityManager =
+				(ConnectivityManager) sContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		return connectivityManager != null && connectivityManager.isDefaultNetworkActive();
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static void listenNetworkActive() {
+		ConnectivityManager connectivityManager =
+				(ConnectivityManager) sContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+		if (connectivityManager == null) {
+			return;
+		}
+		connectivityManager
+				.addDefaultNetworkActiveListener(new ConnectivityManager.OnNetworkActiveListener() {
+
+					@Override
+					public void onNetworkActive() {
+						if (size() >= BATCH_SIZE) {
+							sHandler.post(sForceFlushRunnable);
+						}
+					}
+				});
+	}
+}
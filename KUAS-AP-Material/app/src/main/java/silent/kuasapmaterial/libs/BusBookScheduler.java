@@ -0,0 +1,197 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import silent.kuasapmaterial.callback.BusBookCallback;
+import silent.kuasapmaterial.callback.GeneralCallback;
+
+/**
+ * Books a bus the moment its booking opens, one booking at a time.
+ * <p>
+ * The opening is given in server time and turned into device time with {@link ServerClock}.
+ * Shortly before it the connection is opened by {@link Helper#warmUp}, which also refines the
+ * clock offset, and the booking is sent half a round trip early so that it reaches the server as
+ * it opens. A booking that fails is sent again up to {@link #MAX_ATTEMPTS} times, except when the
+ * account is locked (onReserveFail) or the token expired, neither of which a retry can help.
+ * <p>
+ * The timers only run while the process is alive and the device awake, callers keep the screen
+ * on. Must only be used from the main thread.
+ */
+
+public class BusBookScheduler {
+
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_DELAY = 300;
+	// Before the opening, the first also gives the clock another sample, the last keeps the
+	// connection alive
+	private static final long[] WARM_UP_LEADS = {30 * 1000L, 5 * 1000L};
+
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+	private static Booking sBooking;
+
+	/**
+	 * Book busId once the server clock reaches openMillis, replacing any booking scheduled
+	 * before. Callback gets what {@link Helper#bookingBus} gives for the last attempt.
+	 *
+	 * @return the device time in millis the booking is sent at
+	 */
+	public static long schedule(Context context, String busId, long openMillis,
+	                            BusBookCallback callback) {
+		cancel();
+		sBooking = new Booking(context.getApplicationContext(), busId, openMillis, callback);
+		return sBooking.start();
+	}
+
+	/**
+	 * Stop the scheduled booking, a request already sent is not reported anymore
+	 */
+	public static void cancel() {
+		if (sBooking != null) {
+			sHandler.removeCallbacksAndMessages(sBooking);
+			sHandler.removeCallbacksAndMessages(sBooking.sendToken);
+			sBooking = null;
+		}
+	}
+
+	public static boolean isScheduled() {
+		return sBooking != null;
+	}
+
+	/**
+	 * Report the scheduled booking to callback instead, e.g. to the screen recreated after a
+	 * rotation
+	 */
+	public static void setCallback(BusBookCallback callback) {
+		if (sBooking != null) {
+			sBooking.callback = callback;
+		}
+	}
+
+	private static class Booking extends BusBookCallback {
+
+		final Context context;
+		final String busId;
+		final long openMillis;
+		BusBookCallback callback;
+		// Of the pending send, apart from the warm ups
+		final Object sendToken = new Object();
+		int attemptCount = 0;
+
+		Booking(Context context, String busId, long openMillis, BusBookCallback callback) {
+			this.context = context;
+			this.busId = busId;
+			this.openMillis = openMillis;
+			this.callback = callback;
+		}
+
+		long start() {
+			long now = System.currentTimeMillis();
+			for (long lead : WARM_UP_LEADS) {
+				long warmUpMillis = ServerClock.toLocal(openMillis - lead);
+				if (warmUpMillis > now) {
+					post(new Runnable() {
+
+						@Override
+						public void run() {
+							Helper.warmUp(context, new GeneralCallback() {
+
+								@Override
+								public void onSuccess() {
+									super.onSuccess();
+									// The offset may be more precise now
+									reschedule();
+								}
+							});
+						}
+					}, warmUpMillis - now);
+				}
+			}
+			return reschedule();
+		}
+
+		/**
+		 * @return the device time in millis the booking is sent at, 0 if it was sent
+		 */
+		long reschedule() {
+			if (sBooking != this || attemptCount > 0) {
+				// Sent already, a late warm up must not send it twice
+				return 0;
+			}
+			sHandler.removeCallbacksAndMessages(sendToken);
+			long roundTrip = Math.max(0, ServerClock.getLastRoundTrip());
+			long sendMillis = ServerClock.toLocal(openMillis) - roundTrip / 2;
+			postSend(Math.max(0, sendMillis - System.currentTimeMillis()));
+			return sendMillis;
+		}
+
+		void postSend(long delayMillis) {
+			sHandler.postAtTime(new Runnable() {
+
+				@Override
+				public void run() {
+					if (sBooking == Booking.this) {
+						attemptCount++;
+						Helper.bookingBus(context, busId, Booking.this);
+					}
+				}
+			}, sendToken, SystemClock.uptimeMillis() + delayMillis);
+		}
+
+		void post(Runnable runnable, long delayMillis) {
+			sHandler.postAtTime(runnable, this, SystemClock.uptimeMillis() + delayMillis);
+		}
+
+		/**
+		 * @return whether the booking was still scheduled
+		 */
+		boolean done() {
+			if (sBooking != this) {
+				return false;
+			}
+			cancel();
+			return true;
+		}
+
+		@Override
+		public void onSuccess() {
+			super.onSuccess();
+			if (done()) {
+				callback.onSuccess();
+			}
+		}
+
+		@Override
+		public void onFail(String errorMessage) {
+			super.onFail(errorMessage);
+			if (sBooking != this) {
+				return;
+			}
+			if (attemptCount < MAX_ATTEMPTS) {
+				// e.g. not open yet by a few millis, or the server is swamped
+				postSend(RETRY_DELAY);
+				return;
+			}
+			done();
+			callback.onFail(errorMessage);
+		}
+
+		@Override
+		public void onReserveFail(String errorMsg) {
+			super.onReserveFail(errorMsg);
+			if (done()) {
+				callback.onReserveFail(errorMsg);
+			}
+		}
+
+		@Override
+		public void onTokenExpired() {
+			super.onTokenExpired();
+			if (done()) {
+				callback.onTokenExpired();
+			}
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import silent.kuasapmaterial.callback.BusCallback;
+import silent.kuasapmaterial.models.BusModel;
+
+/**
+ * Bus timetables of recently seen dates kept in memory, so flipping between dates needs no
+ * request. A timetable younger than {@link #FRESH_MILLIS} is used as is. One younger than
+ * {@link #STALE_MILLIS} is shown at once and fetched again for the seat counts, the callback gets
+ * onSuccess a second time with the fetched one. Older ones are fetched before anything is shown.
+ * <p>
+ * Requests for a date already being fetched share that request. Booking or cancelling changes the
+ * seats, {@link #invalidate} drops the date, a request already on the way is fetched again for
+ * its callbacks. The timetables carry the reservations of the user, {@link #clear} drops them
+ * all at logout.
+ * <p>
+ * The cached lists are shared, callers must not modify them. Must only be used from the main
+ * thread.
+ */
+
+public class BusTimetableCache {
+
+	public static final int PREFETCH_DAYS = 7;
+
+	private static final long FRESH_MILLIS = 30 * 1000L;
+	private static final long STALE_MILLIS = 10 * 60 * 1000L;
+	// The prefetch window with some dates picked by hand
+	private static final int MAX_DATES = 14;
+
+	private static final LruCache<String, Entry> sCache = new LruCache<>(MAX_DATES);
+	private static final Map<String, Request> sRequests = new HashMap<>();
+
+	private static class Entry {
+
+		final List<BusModel> jiangongList, yanchaoList;
+		final long fetchedMillis;
+
+		Entry(List<BusModel> jiangongList, List<BusModel> yanchaoList) {
+			this.jiangongList = jiangongList;
+			this.yanchaoList = yanchaoList;
+			this.fetchedMillis = SystemClock.elapsedRealtime();
+		}
+
+		long getAge() {
+			return SystemClock.elapsedRealtime() - fetchedMillis;
+		}
+	}
+
+	/**
+	 * @return date in the format of the bus API, e.g. "2018-9-3"
+	 */
+	public static String formatDate(int year, int monthOfYear, int dayOfMonth) {
+		return year + "-" + (monthOfYear + 1) + "-" + dayOfMonth;
+	}
+
+	public static String formatDate(Calendar calendar) {
+		return formatDate(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH),
+				calendar.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Get the timetable of date from the cache or the server.
+	 *
+	 * @param isForce skip the cache, e.g. on pull to refresh
+	 */
+	public static void get(Context context, String date, boolean isForce, BusCallback callback) {
+		if (isForce) {
+			invalidate(date);
+		}
+		Entry entry = sCache.get(date);
+		long age = entry == null ? Long.MAX_VALUE : entry.getAge();
+		if (age < FRESH_MILLIS) {
+			if (callback != null) {
+				callback.onSuccess(entry.jiangongList, entry.yanchaoList);
+			}
+			return;
+		}
+		boolean isServed = false;
+		if (age < STALE_MILLIS) {
+			if (callback != null) {
+				callback.onSuccess(entry.jiangongList, entry.yanchaoList);
+			}
+			isServed = true;
+		}
+		fetch(context, date, callback, isServed);
+	}
+
+	/**
+	 * Fetch the timetables from today on for days days, one date after another, skipping the
+	 * fresh ones
+	 */
+	public static void prefetch(Context context, int days) {
+		Calendar calendar = Calendar.getInstance();
+		List<String> dates = new ArrayList<>(days);
+		for (int i = 0; i < days; i++) {
+			dates.add(formatDate(calendar));
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+		}
+		prefetchNext(context.getApplicationContext(), dates, 0);
+	}
+
+	private static void prefetchNext(final Context context, final List<String> dates,
+	                                 final int index) {
+		if (index >= dates.size()) {
+			return;
+		}
+		String date = dates.get(index);
+		Entry entry = sCache.get(date);
+		if ((entry != null && entry.getAge() < FRESH_MILLIS) || sRequests.containsKey(date)) {
+			prefetchNext(context, dates, index + 1);
+			return;
+		}
+		fetch(context, date, new BusCallback() {
+
+			@Override
+			public void onSuccess(List<BusModel> jiangongList, List<BusModel> yanchaoList) {
+				super.onSuccess(jiangongList, yanchaoList);
+				prefetchNext(context, dates, index + 1);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				// The next dates would most likely fail too, leave them to the user
+			}
+		}, false);
+	}
+
+	/**
+	 * Drop the timetable of date, e.g. after booking or cancelling a bus of that date
+	 */
+	public static void invalidate(String date) {
+		if (date == null) {
+			return;
+		}
+		sCache.remove(date);
+		Request request = sRequests.remove(date);
+		if (request == null) {
+			return;
+		}
+		// Its response may not count the booking yet, its callbacks get the one fetched again
+		request.isCancelled = true;
+		if (!request.callbacks.isEmpty()) {
+			Request again = new Request(request.context, date);
+			again.callbacks.addAll(request.callbacks);
+			again.served.addAll(request.served);
+			sRequests.put(date, again);
+			Helper.getBusTimeTable(again.context, date, again);
+		}
+	}
+
+	/**
+	 * Drop every timetable and request on the way, e.g. at logout
+	 */
+	public static void clear() {
+		sCache.evictAll();
+		for (Request request : sRequests.values()) {
+			request.isCancelled = true;
+		}
+		sRequests.clear();
+	}
+
+	/**
+	 * @param runMillis departure of a bus, drops the timetable of its date
+	 */
+	public static void invalidate(long runMillis) {
+		if (runMillis == TimeParser.INVALID) {
+			return;
+		}
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(runMillis);
+		invalidate(formatDate(calendar));
+	}
+
+	private static void fetch(Context context, String date, BusCallback callback,
+	                          boolean isServed) {
+		Request request = sRequests.get(date);
+		if (request != null) {
+			request.add(callback, isServed);
+			return;
+		}
+		request = new Request(context.getApplicationContext(), date);
+		request.add(callback, isServed);
+		sRequests.put(date, request);
+		Helper.getBusTimeTable(context, date, request);
+	}
+
+	private static class Request extends BusCallback {
+
+		final Context context;
+		final String date;
+		final List<BusCallback> callbacks = new ArrayList<>();
+		// Whether the callback at the same index got the stale timetable already
+		final List<Boolean> served = new ArrayList<>();
+		// Invalidated on the way, nothing is delivered from it
+		boolean isCancelled = false;
+
+		Request(Context context, String date) {
+			this.context = context;
+			this.date = date;
+		}
+
+		void add(BusCallback callback, boolean isServed) {
+			if (callback != null) {
+				callbacks.add(callback);
+				served.add(isServed);
+			}
+		}
+
+		@Override
+		public void onSuccess(List<BusModel> jiangongList, List<BusModel> yanchaoList) {
+			super.onSuccess(jiangongList, yanchaoList);
+
+			if (isCancelled) {
+				return;
+			}
+			sRequests.remove(date);
+			sCache.put(date, new Entry(jiangongList, yanchaoList));
+			for (BusCallback callback : callbacks) {
+				callback.onSuccess(jiangongList, yanchaoList);
+			}
+		}
+
+		@Override
+		public void onFail(String errorMessage) {
+			super.onFail(errorMessage);
+
+			if (isCancelled) {
+				return;
+			}
+			sRequests.remove(date);
+			for (int i = 0; i < callbacks.size(); i++) {
+				// The stale timetable stays on screen
+				if (!served.get(i)) {
+					callbacks.get(i).onFail(errorMessage);
+				}
+			}
+		}
+
+		@Override
+		public void onTokenExpired() {
+			super.onTokenExpired();
+
+			if (isCancelled) {
+				return;
+			}
+			sRequests.remove(date);
+			for (BusCallback callback : callbacks) {
+				callback.onTokenExpired();
+			}
+		}
+	}
+}
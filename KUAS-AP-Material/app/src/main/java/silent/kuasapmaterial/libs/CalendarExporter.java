@@ -0,0 +1,441 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.RemoteException;
+import android.provider.CalendarContract;
+import android.text.TextUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import silent.kuasapmaterial.callback.CalendarExportCallback;
+import silent.kuasapmaterial.models.CalendarModel;
+import silent.kuasapmaterial.models.CourseModel;
+import silent.kuasapmaterial.models.ScheduleEventModel;
+import silent.kuasapmaterial.models.ScheduleModel;
+import silent.kuasapmaterial.models.TimetableModel;
+
+/**
+ * Writes the academic schedule and the saved course timetable into a calendar of the device
+ * with batched provider operations, the courses as events repeating weekly until the end of the
+ * semester.
+ * <p>
+ * Each exported event is keyed by its content, the keys are saved with the event ids. Exporting
+ * again keeps the events whose key is still wanted, inserts the new ones and deletes the rest, so
+ * an unchanged schedule writes nothing. Needs the calendar permissions, callbacks run on the main
+ * thread.
+ */
+
+public class CalendarExporter {
+
+	// Operations per applyBatch, each batch is one transaction
+	private static final int BATCH_SIZE = 50;
+	private static final String LOCATION = "國立高雄應用科技大學";
+	// The fall semester ends with January, the spring one with June, none is running in July
+	private static final int FALL_END_MONTH = Calendar.JANUARY;
+	private static final int SPRING_END_MONTH = Calendar.JUNE;
+	private static final int SUMMER_MONTH = Calendar.JULY;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+	// Saved with the id of an event whose delete was not applied yet
+	private static final String STALE_KEY = "stale|";
+
+	private static ExecutorService sExecutor;
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Find the calendars events can be written to, callback gets them in onSuccess(List)
+	 */
+	public static void loadCalendars(Context context, final CalendarExportCallback callback) {
+		final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+		getExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final List<CalendarModel> modelList = new ArrayList<>();
+				String errorMessage = null;
+				try {
+					Cursor cursor = resolver.query(CalendarContract.Calendars.CONTENT_URI,
+							new String[]{CalendarContract.Calendars._ID,
+									CalendarContract.Calendars.CALENDAR_DISPLAY_NAME,
+									CalendarContract.Calendars.ACCOUNT_NAME},
+							CalendarContract.Calendars.CALENDAR_ACCESS_LEVEL + " >= ? AND " +
+									CalendarContract.Calendars.VISIBLE + " = 1", new String[]{
+									String.valueOf(
+											CalendarContract.Calendars.CAL_ACCESS_CONTRIBUTOR)},
+							null);
+					if (cursor != null) {
+						try {
+							while (cursor.moveToNext()) {
+								modelList.add(new CalendarModel(cursor.getLong(0),
+										cursor.getString(1), cursor.getString(2)));
+							}
+						} finally {
+							cursor.close();
+						}
+					}
+				} catch (RuntimeException e) {
+					errorMessage = e.toString();
+				}
+				final String message = errorMessage;
+				sHandler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						if (message != null) {
+							callback.onFail(message);
+						} else {
+							callback.onSuccess(modelList);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Export the dated events of weeks and the saved course timetable into the calendar of
+	 * calendarId, replacing what the last export wrote. Callback gets onProgress after each
+	 * batch, then onSuccess(int, int) or onFail.
+	 */
+	public static void export(Context context, final long calendarId,
+	                          final List<ScheduleModel> weeks,
+	                          final CalendarExportCallback callback) {
+		final Context appContext = context.getApplicationContext();
+		// Memory is not thread safe
+		final TimetableModel timetable = Utils.loadCourseTimetable(appContext);
+		final Map<String, Long> savedIds = loadEventIds(appContext);
+		getExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				Map<String, ContentValues> events = new LinkedHashMap<>();
+				if (weeks != null) {
+					addScheduleEvents(events, weeks);
+				}
+				if (timetable != null) {
+					addCourseEvents(events, timetable, Calendar.getInstance());
+				}
+				sync(appContext, calendarId, events, savedIds, callback);
+			}
+		});
+	}
+
+	private static void sync(final Context context, long calendarId,
+	                         Map<String, ContentValues> events, Map<String, Long> savedIds,
+	                         final CalendarExportCallback callback) {
+		ContentResolver resolver = context.getContentResolver();
+		final Map<String, Long> eventIds = new HashMap<>();
+		ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+		// Per operation, the key of an insert, or the key and id of a delete
+		List<String> keys = new ArrayList<>();
+		List<Long> deletedIds = new ArrayList<>();
+		Set<Long> appliedDeletes = new HashSet<>();
+		String errorMessage = null;
+		int addedCount = 0, removedCount = 0;
+		try {
+			Map<Long, Long> existing = queryExisting(resolver, savedIds.values());
+			for (Map.Entry<String, ContentValues> entry : events.entrySet()) {
+				Long id = savedIds.get(entry.getKey());
+				if (id != null && Long.valueOf(calendarId).equals(existing.get(id))) {
+					eventIds.put(entry.getKey(), id);
+					continue;
+				}
+				ContentValues values = entry.getValue();
+				values.put(CalendarContract.Events.CALENDAR_ID, calendarId);
+				operations.add(ContentProviderOperation
+						.newInsert(CalendarContract.Events.CONTENT_URI).withValues(values)
+						.build());
+				keys.add(entry.getKey());
+				deletedIds.add(null);
+			}
+			for (Map.Entry<String, Long> entry : savedIds.entrySet()) {
+				Long id = entry.getValue();
+				if (!eventIds.containsKey(entry.getKey()) && existing.containsKey(id)) {
+					operations.add(ContentProviderOperation.newDelete(
+							ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, id))
+							.build());
+					keys.add(entry.getKey());
+					deletedIds.add(id);
+				}
+			}
+
+			postProgress(callback, 0, operations.size());
+			for (int start = 0; start < operations.size(); start += BATCH_SIZE) {
+				int end = Math.min(start + BATCH_SIZE, operations.size());
+				ContentProviderResult[] results = resolver.applyBatch(CalendarContract.AUTHORITY,
+						new ArrayList<>(operations.subList(start, end)));
+				for (int i = start; i < end; i++) {
+					if (deletedIds.get(i) != null) {
+						appliedDeletes.add(deletedIds.get(i));
+						removedCount++;
+					} else if (results[i - start].uri != null) {
+						eventIds.put(keys.get(i), ContentUris.parseId(results[i - start].uri));
+						addedCount++;
+					}
+				}
+				postProgress(callback, end, operations.size());
+			}
+		} catch (RemoteException e) {
+			errorMessage = e.toString();
+		} catch (OperationApplicationException e) {
+			errorMessage = e.toString();
+		} catch (RuntimeException e) {
+			// e.g. SecurityException, or IllegalArgumentException and SQLiteException of a
+			// provider rejecting the operations
+			errorMessage = e.toString();
+		}
+		if (errorMessage != null) {
+			// Failed before planning or between batches, the saved events not applied yet are
+			// checked again by the next export
+			Set<Long> keptIds = new HashSet<>(eventIds.values());
+			for (Map.Entry<String, Long> entry : savedIds.entrySet()) {
+				Long id = entry.getValue();
+				if (id == null || keptIds.contains(id) || appliedDeletes.contains(id)) {
+					continue;
+				}
+				// Under a stale key if already replaced, deleted by the next export then
+				eventIds.put(eventIds.containsKey(entry.getKey()) ? STALE_KEY + id :
+						entry.getKey(), id);
+			}
+		}
+
+		final String message = errorMessage;
+		final int added = addedCount, removed = removedCount;
+		sHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				Memory.setString(context, Constant.PREF_CALENDAR_EVENT_IDS,
+						new Gson().toJson(eventIds));
+				if (message != null) {
+					callback.onFail(message);
+				} else {
+					callback.onSuccess(added, removed);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return event id -> calendar id of the events in ids not deleted since
+	 */
+	private static Map<Long, Long> queryExisting(ContentResolver resolver, Iterable<Long> ids) {
+		Map<Long, Long> existing = new HashMap<>();
+		String idList = TextUtils.join(",", ids);
+		if (idList.isEmpty()) {
+			return existing;
+		}
+		Cursor cursor = resolver.query(CalendarContract.Events.CONTENT_URI,
+				new String[]{CalendarContract.Events._ID, CalendarContract.Events.CALENDAR_ID},
+				CalendarContract.Events.DELETED + " = 0 AND " + CalendarContract.Events._ID +
+						" IN (" + idList + ")", null, null);
+		if (cursor != null) {
+			try {
+				while (cursor.moveToNext()) {
+					existing.put(cursor.getLong(0), cursor.getLong(1));
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		return existing;
+	}
+
+	private static void addScheduleEvents(Map<String, ContentValues> events,
+	                                      List<ScheduleModel> weeks) {
+		for (ScheduleModel week : weeks) {
+			for (ScheduleEventModel event : week.events) {
+				if (event.startMillis == TimeParser.INVALID) {
+					continue;
+				}
+				// All-day events start and end at midnight UTC
+				long start = toUtcDay(event.startMillis);
+				long end = toUtcDay(event.endMillis) + DAY_MILLIS;
+				ContentValues values = new ContentValues();
+				values.put(CalendarContract.Events.TITLE, event.title);
+				values.put(CalendarContract.Events.EVENT_LOCATION, LOCATION);
+				values.put(CalendarContract.Events.DTSTART, start);
+				values.put(CalendarContract.Events.DTEND, end);
+				values.put(CalendarContract.Events.ALL_DAY, 1);
+				values.put(CalendarContract.Events.EVENT_TIMEZONE, "UTC");
+				events.put("schedule|" + event.title + "|" + start + "|" + end, values);
+			}
+		}
+	}
+
+	/**
+	 * Consecutive sections of the same course are one event, starting on the next class day
+	 */
+	private static void addCourseEvents(Map<String, ContentValues> events,
+	                                    TimetableModel timetable, Calendar today) {
+		long until = getSemesterEnd(today);
+		if (until == TimeParser.INVALID) {
+			return;
+		}
+		String rrule = "FREQ=WEEKLY;UNTIL=" + formatUtc(until);
+		for (int i = 0; i < timetable.courses.size() && i < TimetableIndex.WEEKDAYS; i++) {
+			List<CourseModel> dayList = timetable.courses.get(i);
+			if (dayList == null) {
+				continue;
+			}
+			int dayOfWeek = TimeParser.toCalendarDayOfWeek(i);
+			for (int j = 0; j < dayList.size(); j++) {
+				CourseModel first = dayList.get(j);
+				if (first == null) {
+					continue;
+				}
+				CourseModel last = first;
+				while (j + 1 < dayList.size() && dayList.get(j + 1) != null &&
+						TextUtils.equals(dayList.get(j + 1).title, first.title)) {
+					last = dayList.get(++j);
+				}
+				if (first.startMinute == TimeParser.INVALID ||
+						last.endMinute == TimeParser.INVALID ||
+						last.endMinute <= first.startMinute) {
+					continue;
+				}
+
+				Calendar start = (Calendar) today.clone();
+				while (start.get(Calendar.DAY_OF_WEEK) != dayOfWeek) {
+					start.add(Calendar.DAY_OF_MONTH, 1);
+				}
+				start.set(Calendar.HOUR_OF_DAY, first.startMinute / 60);
+				start.set(Calendar.MINUTE, first.startMinute % 60);
+				start.set(Calendar.SECOND, 0);
+				start.set(Calendar.MILLISECOND, 0);
+				if (start.getTimeInMillis() > until) {
+					continue;
+				}
+				String location = (TextUtils.isEmpty(first.building) ? "" : first.building + " ") +
+						(first.room == null ? "" : first.room.trim());
+
+				ContentValues values = new ContentValues();
+				values.put(CalendarContract.Events.TITLE, first.title);
+				values.put(CalendarContract.Events.EVENT_LOCATION, location.trim());
+				values.put(CalendarContract.Events.DESCRIPTION,
+						TextUtils.join(", ", first.instructors));
+				values.put(CalendarContract.Events.DTSTART, start.getTimeInMillis());
+				values.put(CalendarContract.Events.DURATION,
+						"P" + (last.endMinute - first.startMinute) * 60 + "S");
+				values.put(CalendarContract.Events.RRULE, rrule);
+				values.put(CalendarContract.Events.EVENT_TIMEZONE, start.getTimeZone().getID());
+				// Without the start day, so the same course exported later in the semester is kept
+				events.put("course|" + first.title + "|" + location + "|" + dayOfWeek + "|" +
+						first.startMinute + "|" + last.endMinute + "|" + rrule, values);
+			}
+		}
+	}
+
+	/**
+	 * @return the end of the last day of the semester running at today, {@link TimeParser#INVALID}
+	 * in the summer vacation
+	 */
+	private static long getSemesterEnd(Calendar today) {
+		int month = today.get(Calendar.MONTH);
+		if (month == SUMMER_MONTH) {
+			return TimeParser.INVALID;
+		}
+		Calendar end = Calendar.getInstance(today.getTimeZone());
+		end.clear();
+		if (month > SUMMER_MONTH) {
+			end.set(today.get(Calendar.YEAR) + 1, FALL_END_MONTH, 1);
+		} else if (month == FALL_END_MONTH) {
+			end.set(today.get(Calendar.YEAR), FALL_END_MONTH, 1);
+		} else {
+			end.set(today.get(Calendar.YEAR), SPRING_END_MONTH, 1);
+		}
+		end.add(Calendar.MONTH, 1);
+		return end.getTimeInMillis() - 1000;
+	}
+
+	private static long toUtcDay(long millis) {
+		Calendar local = Calendar.getInstance();
+		local.setTimeInMillis(millis);
+		Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		utc.clear();
+		utc.set(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+				local.get(Calendar.DAY_OF_MONTH));
+		return utc.getTimeInMillis();
+	}
+
+	private static String formatUtc(long millis) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(millis);
+	}
+
+	private static void postProgress(final CalendarExportCallback callback, final int doneCount,
+	                                 final int totalCount) {
+		sHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				callback.onProgress(doneCount, totalCount);
+			}
+		});
+	}
+
+	private static Map<String, Long> loadEventIds(Context context) {
+		String json = Memory.getString(context, Constant.PREF_CALENDAR_EVENT_IDS, null);
+		if (json != null) {
+			try {
+				Map<String, Long> eventIds = new Gson()
+						.fromJson(json, new TypeToken<Map<String, Long>>() {
+
+						}.getType());
+				if (eventIds != null) {
+					return eventIds;
+				}
+			} catch (JsonSyntaxException e) {
+				AlarmHelper.logGsonError("Calendar Load", e);
+			}
+		}
+		return new HashMap<>();
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					return new Thread(new Runnable() {
+
+						@Override
+						public void run() {
+							Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+							r.run();
+						}
+					}, "Calendar");
+				}
+			});
+		}
+		return sExecutor;
+	}
+}
@@ -40,7 +40,20 @@ public class Constant {
 	public static final String PREF_COURSE_VIBRATE_USER_SETTING =
 			"pref_course_vibrate_user_setting";
 
+	public static final String PREF_COURSE_TIMETABLE_DATA = "pref_course_timetable_data";
+	public static final String PREF_BUS_RESERVATIONS_DATA = "pref_bus_reservations_data";
+	public static final String PREF_NOTIFICATION_DATA = "pref_notification_data";
+	public static final String PREF_NOTIFICATION_PAGE_SIZE = "pref_notification_page_size";
+	public static final String PREF_SCHEDULE_DATA = "pref_schedule_data";
+	public static final String PREF_SCHEDULE_HASH = "pref_schedule_hash";
+	public static final String PREF_CALENDAR_EVENT_IDS = "pref_calendar_event_ids";
+	public static final String PREF_TRANSCRIPT_DATA = "pref_transcript_data";
+	public static final String PREF_TRANSCRIPT_USER = "pref_transcript_user";
+	public static final String PREF_SCORE_NOTIFY = "pref_score_notify";
+	public static final String PREF_SCORE_WATCH_DATA = "pref_score_watch_data";
+
 	public static final String PREF_UPDATE_NOTE = "pref_update_note";
+	public static final String PREF_FRAME_MONITOR = "pref_frame_monitor";
 
 	// Activity request code
 	public static final int REQUEST_BUS_RESERVATIONS = 100;
@@ -49,4 +62,5 @@ public class Constant {
 	// Notification ID
 	public static final int NOTIFICATION_BUS_ID = 100;
 	public static final int NOTIFICATION_COURSE_ID = 101;
+	public static final int NOTIFICATION_SCORE_ID = 102;
 }
@@ -0,0 +1,224 @@
+package silent.kuasapmaterial.libs;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * One frame loop shared by every running progress indicator. Frames come from
+ * {@link Choreographer} (a {@link Handler} on API 15), and stop being requested as soon as no
+ * callback is registered.
+ * <p>
+ * Must only be used from the main thread.
+ */
+
+public class FrameAnimator {
+
+	private static final long FRAME_DELAY = 16;
+	// Power save mode renders roughly every other frame
+	private static final long POWER_SAVE_FRAME_DELAY = 33;
+
+	private static FrameAnimator sInstance;
+
+	private final ArrayList<FrameCallback> mCallbacks = new ArrayList<>();
+	private FrameCallback[] mDispatching = new FrameCallback[4];
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private final Runnable mFrameRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			doFrame(SystemClock.uptimeMillis());
+		}
+	};
+	private Object mChoreographerCallback;
+	private boolean isScheduled = false;
+	private boolean isPowerSave = false;
+	private boolean isPowerSaveForced = false;
+
+	public interface FrameCallback {
+
+		/**
+		 * @param frameTimeMillis the frame time in the {@link SystemClock#uptimeMillis()} base
+		 */
+		void doFrame(long frameTimeMillis);
+	}
+
+	public static FrameAnimator getInstance() {
+		if (sInstance == null) {
+			sInstance = new FrameAnimator();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Force the reduced frame rate, otherwise it follows the system battery saver on API 21+.
+	 */
+	public void setPowerSaveMode(boolean powerSave) {
+		isPowerSaveForced = powerSave;
+		isPowerSave = powerSave;
+	}
+
+	public boolean isPowerSaveMode() {
+		return isPowerSave;
+	}
+
+	public void add(FrameCallback callback) {
+		if (!mCallbacks.contains(callback)) {
+			mCallbacks.add(callback);
+		}
+		if (!isScheduled) {
+			isScheduled = true;
+			scheduleFrame();
+		}
+	}
+
+	public void remove(FrameCallback callback) {
+		mCallbacks.remove(callback);
+	}
+
+	/**
+	 * Re-read the system battery saver state, call when the indicator starts.
+	 */
+	void updatePowerSaveMode(Context context) {
+		if (isPowerSaveForced || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+			return;
+		}
+		PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+		isPowerSave = powerManager != null && powerManager.isPowerSaveMode();
+	}
+
+	private void doFrame(long frameTimeMillis) {
+		isScheduled = false;
+		int size = mCallbacks.size();
+		if (size == 0) {
+			return;
+		}
+		mDispatching = mCallbacks.toArray(mDispatching);
+		for (int i = 0; i < size; i++) {
+			mDispatching[i].doFrame(frameTimeMillis);
+			mDispatching[i] = null;
+		}
+		if (mCallbacks.size() > 0) {
+			isScheduled = true;
+			scheduleFrame();
+		}
+	}
+
+	private void scheduleFrame() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			postFrameCallback();
+		} else {
+			mHandler.postDelayed(mFrameRunnable,
+					isPowerSave ? POWER_SAVE_FRAME_DELAY : FRAME_DELAY);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void postFrameCallback() {
+		if (mChoreographerCallback == null) {
+			mChoreographerCallback = new Choreographer.FrameCallback() {
+
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					// Choreographer uses the same monotonic clock as uptimeMillis
+					FrameAnimator.this.doFrame(frameTimeNanos / 1000000);
+				}
+			};
+		}
+		Choreographer.FrameCallback callback = (Choreographer.FrameCallback) mChoreographerCallback;
+		if (isPowerSave) {
+			Choreographer.getInstance()
+					.postFrameCallbackDelayed(callback, POWER_SAVE_FRAME_DELAY - FRAME_DELAY);
+		} else {
+			Choreographer.getInstance().postFrameCallback(callback);
+		}
+	}
+
+	/**
+	 * Ties a {@link TickCallback} to a view, ticks are only delivered while the animation is
+	 * running and the view is attached, shown and its window is focused. Time does not advance
+	 * while paused, so the animation resumes where it stopped.
+	 * Attach state is tracked automatically, the view must call {@link #update()} from
+	 * {@link View#onVisibilityChanged}, {@link View#onWindowVisibilityChanged} and
+	 * {@link View#onWindowFocusChanged}.
+	 */
+	public static class ViewTicker implements FrameCallback, View.OnAttachStateChangeListener {
+
+		private final View mView;
+		private final TickCallback mTarget;
+		private boolean isAttached;
+		private boolean isRunning = false;
+		private boolean isTicking = false;
+		private long mLastFrameTime = -1;
+
+		public interface TickCallback {
+
+			/**
+			 * @param deltaMillis time since the previous tick, 0 on the first tick after a pause
+			 */
+			void onTick(long deltaMillis);
+		}
+
+		public ViewTicker(View view, TickCallback target) {
+			mView = view;
+			mTarget = target;
+			isAttached = view.getWindowToken() != null;
+			mView.addOnAttachStateChangeListener(this);
+		}
+
+		public boolean isRunning() {
+			return isRunning;
+		}
+
+		public void setRunning(boolean running) {
+			if (isRunning == running) {
+				return;
+			}
+			isRunning = running;
+			update();
+		}
+
+		public void update() {
+			boolean ticking = isRunning && isAttached && mView.isShown() && mView.hasWindowFocus();
+			if (ticking == isTicking) {
+				return;
+			}
+			isTicking = ticking;
+			FrameAnimator animator = getInstance();
+			if (ticking) {
+				mLastFrameTime = -1;
+				animator.updatePowerSaveMode(mView.getContext());
+				animator.add(this);
+			} else {
+				animator.remove(this);
+			}
+		}
+
+		@Override
+		public void doFrame(long frameTimeMillis) {
+			long delta = mLastFrameTime < 0 ? 0 : frameTimeMillis - mLastFrameTime;
+			mLastFrameTime = frameTimeMillis;
+			mTarget.onTick(delta);
+		}
+
+		@Override
+		public void onViewAttachedToWindow(View v) {
+			isAttached = true;
+			update();
+		}
+
+		@Override
+		public void onViewDetachedFromWindow(View v) {
+			isAttached = false;
+			update();
+		}
+	}
+}
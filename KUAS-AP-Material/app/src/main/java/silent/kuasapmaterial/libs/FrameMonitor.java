@@ -0,0 +1,317 @@
+package silent.kuasapmaterial.libs;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Opt-in collector of per-screen UI smoothness numbers: frame intervals and janky frames (from
+ * {@link Choreographer}, API 16+), slow layout inflations, and main thread stalls seen by a
+ * watchdog thread. Nothing runs until it is enabled from the settings screen.
+ * <p>
+ * Screens report themselves from {@link silent.kuasapmaterial.base.SilentActivity} and
+ * {@link silent.kuasapmaterial.base.SilentFragment}, which must be called from the main thread.
+ */
+
+public class FrameMonitor {
+
+	// A frame later than 1.5 vsync intervals missed at least one vsync
+	private static final float JANK_FACTOR = 1.5f;
+	private static final long FROZEN_FRAME_MILLIS = 700;
+	private static final long SLOW_INFLATION_MILLIS = 32;
+	private static final long STALL_MILLIS = 500;
+	private static final long WATCHDOG_INTERVAL = 100;
+	private static final long SUMMARY_INTERVAL = 5 * 60 * 1000;
+
+	private static FrameMonitor sInstance;
+
+	private final Map<String, ScreenStats> mStats = new LinkedHashMap<>();
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	private Handler mWatchdogHandler;
+	private Boolean isEnabled;
+	private boolean isSummaryScheduled = false;
+	private volatile String mCurrentScreen;
+	private volatile boolean isRunning = false;
+
+	private long mFrameIntervalNanos = 16666667;
+	private long mLastFrameNanos = -1;
+	private Object mFrameCallback;
+
+	private volatile boolean isTickPending = false;
+	private volatile long mTickPostedAt;
+	private boolean isStallReported = false;
+
+	private final Runnable mTickRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			long stall = SystemClock.uptimeMillis() - mTickPostedAt;
+			isTickPending = false;
+			if (stall >= STALL_MILLIS) {
+				recordStall(stall);
+			}
+		}
+	};
+	private final Runnable mWatchdogRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			long now = SystemClock.uptimeMillis();
+			if (!isTickPending) {
+				isStallReported = false;
+				mTickPostedAt = now;
+				isTickPending = true;
+				mMainHandler.post(mTickRunnable);
+			} else if (!isStallReported && now - mTickPostedAt >= STALL_MILLIS) {
+				isStallReported = true;
+				logStall();
+			}
+			if (isRunning) {
+				mWatchdogHandler.postDelayed(this, WATCHDOG_INTERVAL);
+			}
+		}
+	};
+	private final Runnable mSummaryRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			// Keeps going between screens, until the monitor is disabled
+			String report = getReport();
+			if (report.length() > 0) {
+				Log.i(Constant.TAG, report);
+			}
+			mWatchdogHandler.postDelayed(this, SUMMARY_INTERVAL);
+		}
+	};
+
+	private static class ScreenStats {
+
+		long frames, frameNanos, maxFrameNanos;
+		int jankyFrames, frozenFrames;
+		int inflations, slowInflations;
+		long maxInflationMillis;
+		int stalls;
+		long maxStallMillis;
+	}
+
+	public static FrameMonitor getInstance() {
+		if (sInstance == null) {
+			sInstance = new FrameMonitor();
+		}
+		return sInstance;
+	}
+
+	public boolean isEnabled(Context context) {
+		if (isEnabled == null) {
+			isEnabled = Memory.getBoolean(context, Constant.PREF_FRAME_MONITOR, false);
+		}
+		return isEnabled;
+	}
+
+	/**
+	 * Takes effect from the next screen resumed
+	 */
+	public void setEnabled(Context context, boolean enabled) {
+		isEnabled = enabled;
+		Memory.setBoolean(context, Constant.PREF_FRAME_MONITOR, enabled);
+		if (!enabled) {
+			stop();
+			if (mWatchdogHandler != null) {
+				mWatchdogHandler.removeCallbacks(mSummaryRunnable);
+				isSummaryScheduled = false;
+			}
+		}
+	}
+
+	public void onScreenResumed(Activity activity) {
+		if (!isEnabled(activity)) {
+			return;
+		}
+		mCurrentScreen = activity.getClass().getSimpleName();
+		float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+		if (refreshRate > 0) {
+			mFrameIntervalNanos = (long) (1000000000 / refreshRate);
+		}
+		start();
+	}
+
+	public void onScreenPaused(Activity activity) {
+		stop();
+		mCurrentScreen = null;
+	}
+
+	/**
+	 * @param startMillis {@link SystemClock#uptimeMillis()} before the layout was inflated
+	 */
+	public void recordInflation(Context context, String screen, long startMillis) {
+		if (context == null || !isEnabled(context)) {
+			return;
+		}
+		long time = SystemClock.uptimeMillis() - startMillis;
+		synchronized (mStats) {
+			ScreenStats stats = getStats(screen);
+			stats.inflations++;
+			stats.maxInflationMillis = Math.max(stats.maxInflationMillis, time);
+			if (time >= SLOW_INFLATION_MILLIS) {
+				stats.slowInflations++;
+			}
+		}
+	}
+
+	public void reset() {
+		synchronized (mStats) {
+			mStats.clear();
+		}
+	}
+
+	public String getReport() {
+		StringBuilder builder = new StringBuilder();
+		synchronized (mStats) {
+			for (Map.Entry<String, ScreenStats> entry : mStats.entrySet()) {
+				ScreenStats stats = entry.getValue();
+				builder.append(entry.getKey()).append('\n');
+				if (stats.frames > 0) {
+					builder.append(String.format(Locale.US,
+							"  frames %d, avg %.1fms, max %dms, janky %d (%.1f%%), frozen %d\n",
+							stats.frames, stats.frameNanos / 1e6 / stats.frames,
+							stats.maxFrameNanos / 1000000, stats.jankyFrames,
+							stats.jankyFrames * 100f / stats.frames, stats.frozenFrames));
+				}
+				if (stats.inflations > 0) {
+					builder.append(String.format(Locale.US,
+							"  inflations %d, slow %d, max %dms\n", stats.inflations,
+							stats.slowInflations, stats.maxInflationMillis));
+				}
+				if (stats.stalls > 0) {
+					builder.append(String.format(Locale.US, "  stalls %d, max %dms\n",
+							stats.stalls, stats.maxStallMillis));
+				}
+			}
+		}
+		Map<String, Long> timings = Startup.getTimings();
+		if (!timings.isEmpty()) {
+			builder.append("Startup\n");
+			for (Map.Entry<String, Long> entry : timings.entrySet()) {
+				builder.append("  ").append(entry.getKey()).append(' ').append(entry.getValue())
+						.append("ms\n");
+			}
+		}
+		return builder.toString().trim();
+	}
+
+	private ScreenStats getStats(String screen) {
+		ScreenStats stats = mStats.get(screen);
+		if (stats == null) {
+			stats = new ScreenStats();
+			mStats.put(screen, stats);
+		}
+		return stats;
+	}
+
+	private void start() {
+		if (isRunning) {
+			return;
+		}
+		isRunning = true;
+		if (mWatchdogHandler == null) {
+			HandlerThread thread =
+					new HandlerThread("FrameMonitor", Process.THREAD_PRIORITY_BACKGROUND);
+			thread.start();
+			mWatchdogHandler = new Handler(thread.getLooper());
+		}
+		isTickPending = false;
+		mWatchdogHandler.post(mWatchdogRunnable);
+		if (!isSummaryScheduled) {
+			isSummaryScheduled = true;
+			mWatchdogHandler.postDelayed(mSummaryRunnable, SUMMARY_INTERVAL);
+		}
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			mLastFrameNanos = -1;
+			postFrameCallback();
+		}
+	}
+
+	private void stop() {
+		if (!isRunning) {
+			return;
+		}
+		isRunning = false;
+		mWatchdogHandler.removeCallbacks(mWatchdogRunnable);
+		mMainHandler.removeCallbacks(mTickRunnable);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && mFrameCallback != null) {
+			Choreographer.getInstance()
+					.removeFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+		}
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private void postFrameCallback() {
+		if (mFrameCallback == null) {
+			mFrameCallback = new Choreographer.FrameCallback() {
+
+				@Override
+				public void doFrame(long frameTimeNanos) {
+					recordFrame(frameTimeNanos);
+					if (isRunning) {
+						Choreographer.getInstance().postFrameCallback(this);
+					}
+				}
+			};
+		}
+		Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) mFrameCallback);
+	}
+
+	private void recordFrame(long frameTimeNanos) {
+		long interval = mLastFrameNanos < 0 ? 0 : frameTimeNanos - mLastFrameNanos;
+		mLastFrameNanos = frameTimeNanos;
+		String screen = mCurrentScreen;
+		if (interval <= 0 || screen == null) {
+			return;
+		}
+		synchronized (mStats) {
+			ScreenStats stats = getStats(screen);
+			stats.frames++;
+			stats.frameNanos += interval;
+			stats.maxFrameNanos = Math.max(stats.maxFrameNanos, interval);
+			if (interval > mFrameIntervalNanos * JANK_FACTOR) {
+				stats.jankyFrames++;
+			}
+			if (interval >= FROZEN_FRAME_MILLIS * 1000000) {
+				stats.frozenFrames++;
+			}
+		}
+	}
+
+	private void recordStall(long stallMillis) {
+		String screen = mCurrentScreen;
+		if (screen == null) {
+			return;
+		}
+		synchronized (mStats) {
+			ScreenStats stats = getStats(screen);
+			stats.stalls++;
+			stats.maxStallMillis = Math.max(stats.maxStallMillis, stallMillis);
+		}
+	}
+
+	/**
+	 * Log where the main thread is stuck while it still is
+	 */
+	private void logStall() {
+		Throwable stack = new Throwable("Main thread stalled on " + mCurrentScreen);
+		stack.setStackTrace(Looper.getMainLooper().getThread().getStackTrace());
+		Log.w(Constant.TAG, stack);
+	}
+}
@@ -6,6 +6,7 @@ import android.text.TextUtils;
 import com.kuas.ap.R;
 import com.loopj.android.http.AsyncHttpClient;
 import com.loopj.android.http.JsonHttpResponseHandler;
+import com.loopj.android.http.RequestHandle;
 import com.loopj.android.http.RequestParams;
 import com.loopj.android.http.TextHttpResponseHandler;
 
@@ -20,6 +21,8 @@ import java.util.List;
 import cz.msebera.android.httpclient.Header;
 import cz.msebera.android.httpclient.auth.AuthScope;
 import cz.msebera.android.httpclient.auth.UsernamePasswordCredentials;
+import cz.msebera.android.httpclient.impl.client.DefaultHttpClient;
+import cz.msebera.android.httpclient.message.BasicHeader;
 import silent.kuasapmaterial.callback.BusBookCallback;
 import silent.kuasapmaterial.callback.BusCallback;
 import silent.kuasapmaterial.callback.BusReservationsCallback;
@@ -72,15 +75,32 @@ public class Helper {
 	public static final String NEWS_URL = BASE_URL + "/news";
 	public static final String NEWS_ALL_URL = BASE_URL + "/latest/news/all";
 	private static final AsyncHttpClient mClient = init();
+	// Whether login set the credentials in this process
+	private static boolean sHasCredentials = false;
 
 	private static AsyncHttpClient init() {
 		AsyncHttpClient client = new AsyncHttpClient();
 		client.addHeader("Connection", "Keep-Alive");
 		client.setTimeout(10 * 1000);
 		client.setEnableRedirects(true, true, true);
+		ServerClock.attach((DefaultHttpClient) client.getHttpClient());
 		return client;
 	}
 
+	/**
+	 * @return the value of the first header named name, null if there is none
+	 */
+	private static String getHeader(Header[] headers, String name) {
+		if (headers != null) {
+			for (Header header : headers) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
 	private static void onHelperTimeOut(GeneralCallback callback) {
 		if (callback != null) {
 			callback.onTimeOut();
@@ -131,6 +151,13 @@ public class Helper {
 		}
 	}
 
+	/**
+	 * @return whether requests carry the credentials, a new process has to login again first
+	 */
+	public static boolean hasCredentials() {
+		return sHasCredentials;
+	}
+
 	public static void login(final Context context, String user, String pwd,
 	                         final GeneralCallback callback) {
 		// Basic Authorization
@@ -138,6 +165,7 @@ public class Helper {
 		mClient.setAuthenticationPreemptive(true);
 		mClient.setCredentials(new AuthScope(SERVER_HOST, SERVER_PORT, AuthScope.ANY_REALM),
 				credentials);
+		sHasCredentials = true;
 
 		mClient.get(context, LOGIN_URL, new JsonHttpResponseHandler() {
 
@@ -293,7 +321,8 @@ public class Helper {
 					List<String> sections = new ArrayList<>();
 					if (!coursetables.keys().hasNext()) {
 						if (callback != null) {
-							callback.onSuccess(sections, modelList);
+							callback.onSuccess(sections, modelList,
+									TimetableIndex.build(sections, modelList));
 						}
 						return;
 					}
@@ -307,23 +336,25 @@ public class Helper {
 									Arrays.asList(new CourseModel[sections.size()]));
 							JSONArray jsonArray = coursetables.getJSONArray(weekdays.get(i));
 							for (int j = 0; j < jsonArray.length(); j++) {
-								CourseModel model = new CourseModel();
 								JSONObject jsonObject = jsonArray.getJSONObject(j);
 								JSONObject dateObject = jsonObject.getJSONObject("date");
 								JSONObject locationObject = jsonObject.getJSONObject("location");
 								JSONArray instructorArray = jsonObject.getJSONArray("instructors");
-								model.instructors = new ArrayList<>();
+								List<String> instructors = new ArrayList<>();
 								for (int k = 0; k < instructorArray.length(); k++) {
-									model.instructors.add(instructorArray.getString(k));
+									instructors.add(instructorArray.getString(k));
 								}
-								model.title = jsonObject.getString("title");
-								model.start_time = dateObject.getString("start_time");
-								model.end_time = dateObject.getString("end_time");
-								model.weekday = dateObject.getString("weekday");
-								model.section = dateObject.getString("section");
-								model.building = locationObject.getString("building");
-								model.room = locationObject.getString("room");
-								tmpList.set(sections.indexOf(model.section), model);
+								int section = sections.indexOf(dateObject.getString("section"));
+								CourseModel model = new CourseModel(instructors,
+										jsonObject.getString("title"),
+										locationObject.getString("building"),
+										locationObject.getString("room"),
+										dateObject.getString("start_time"),
+										dateObject.getString("end_time"),
+										dateObject.getString("weekday"),
+										dateObject.getString("section"),
+										TimeParser.toCalendarDayOfWeek(i), section * 10 + i);
+								tmpList.set(section, model);
 							}
 							modelList.add(i, tmpList);
 						} else {
@@ -331,7 +362,8 @@ public class Helper {
 						}
 					}
 					if (callback != null) {
-						callback.onSuccess(sections, modelList);
+						callback.onSuccess(sections, modelList,
+								TimetableIndex.build(sections, modelList));
 					}
 				} catch (JSONException e) {
 					onHelperFail(context, callback, e);
@@ -349,8 +381,19 @@ public class Helper {
 
 	public static void getScoreTimeTable(final Context context, String year, String semester,
 	                                     final ScoreCallback callback) {
+		getScoreTimeTable(context, year, semester, null, callback);
+	}
+
+	/**
+	 * @param eTag ETag of the scores already on hand, callback gets onNotModified if they are
+	 *             still the same, null to always get the scores
+	 */
+	public static void getScoreTimeTable(final Context context, String year, String semester,
+	                                     String eTag, final ScoreCallback callback) {
 		String url = String.format(SCORE_TIMETABLE_URL, year, semester);
-		mClient.get(url, new JsonHttpResponseHandler() {
+		Header[] requestHeaders = eTag == null ? null :
+				new Header[]{new BasicHeader("If-None-Match", eTag)};
+		mClient.get(context, url, requestHeaders, null, new JsonHttpResponseHandler() {
 
 			@Override
 			public void onSuccess(int statusCode, Header[] headers, JSONObject response) {
@@ -358,10 +401,11 @@ public class Helper {
 				try {
 					List<ScoreModel> modelList = new ArrayList<>();
 					ScoreDetailModel scoreDetailModel = new ScoreDetailModel();
+					String responseETag = getHeader(headers, "ETag");
 					JSONObject scores = response.getJSONObject("scores");
 					if (!scores.keys().hasNext()) {
 						if (callback != null) {
-							callback.onSuccess(modelList, scoreDetailModel);
+							callback.onSuccess(modelList, scoreDetailModel, responseETag);
 						}
 						return;
 					}
@@ -385,7 +429,7 @@ public class Helper {
 					scoreDetailModel.class_rank = detail.getString("class_rank");
 					scoreDetailModel.conduct = detail.getDouble("conduct");
 					if (callback != null) {
-						callback.onSuccess(modelList, scoreDetailModel);
+						callback.onSuccess(modelList, scoreDetailModel, responseETag);
 					}
 				} catch (JSONException e) {
 					onHelperFail(context, callback, e);
@@ -396,6 +440,13 @@ public class Helper {
 			public void onFailure(int statusCode, Header[] headers, Throwable throwable,
 			                      JSONObject errorResponse) {
 				super.onFailure(statusCode, headers, throwable, errorResponse);
+				if (statusCode == 304) {
+					// A 304 has no body and comes here
+					if (callback != null) {
+						callback.onNotModified();
+					}
+					return;
+				}
 				onHelperFail(context, callback, statusCode, headers, throwable, errorResponse);
 			}
 		});
@@ -543,17 +594,14 @@ public class Helper {
 					List<BusModel> yanchaoList = new ArrayList<>();
 					JSONArray jsonArray = response.getJSONArray("timetable");
 					for (int i = 0; i < jsonArray.length(); i++) {
-						BusModel model = new BusModel();
-						model.isReserve = jsonArray.getJSONObject(i).getInt("isReserve") != 0;
-						model.EndEnrollDateTime =
-								jsonArray.getJSONObject(i).getString("EndEnrollDateTime");
-						model.runDateTime = jsonArray.getJSONObject(i).getString("runDateTime");
-						model.endStation = jsonArray.getJSONObject(i).getString("endStation");
-						model.limitCount = jsonArray.getJSONObject(i).getString("limitCount");
-						model.reserveCount = jsonArray.getJSONObject(i).getString("reserveCount");
-						model.Time = jsonArray.getJSONObject(i).getString("Time");
-						model.busId = jsonArray.getJSONObject(i).getString("busId");
-						model.cancelKey = jsonArray.getJSONObject(i).getString("cancelKey");
+						JSONObject jsonObject = jsonArray.getJSONObject(i);
+						BusModel model = new BusModel(jsonObject.getInt("isReserve") != 0,
+								jsonObject.getString("EndEnrollDateTime"),
+								jsonObject.getString("runDateTime"),
+								jsonObject.getString("endStation"),
+								jsonObject.getString("limitCount"),
+								jsonObject.getString("reserveCount"), jsonObject.getString("Time"),
+								jsonObject.getString("busId"), jsonObject.getString("cancelKey"));
 						if (model.endStation.equals("建工")) {
 							yanchaoList.add(model);
 						} else {
@@ -588,12 +636,10 @@ public class Helper {
 					JSONArray jsonArray = response.getJSONArray("reservation");
 					List<BusModel> modelList = new ArrayList<>();
 					for (int i = 0; i < jsonArray.length(); i++) {
-						BusModel model = new BusModel();
-						model.EndEnrollDateTime = jsonArray.getJSONObject(i).getString("endTime");
-						model.endStation = jsonArray.getJSONObject(i).getString("end");
-						model.runDateTime = jsonArray.getJSONObject(i).getString("time");
-						model.cancelKey = jsonArray.getJSONObject(i).getString("cancelKey");
-						modelList.add(model);
+						JSONObject jsonObject = jsonArray.getJSONObject(i);
+						modelList.add(new BusModel(false, jsonObject.getString("endTime"),
+								jsonObject.getString("time"), jsonObject.getString("end"), null,
+								null, null, null, jsonObject.getString("cancelKey")));
 					}
 					if (callback != null) {
 						callback.onSuccess(modelList);
@@ -628,6 +674,11 @@ public class Helper {
 			public void onFailure(int statusCode, Header[] headers, String responseString,
 			                      Throwable throwable) {
 				super.onFailure(statusCode, headers, responseString, throwable);
+				if (isReserveLocked(responseString)) {
+					// A locked account may come as a page rather than JSON
+					onBookingFail(callback, responseString);
+					return;
+				}
 				onHelperFail(context, callback, statusCode, headers, throwable, responseString);
 			}
 
@@ -649,14 +700,7 @@ public class Helper {
 								onHelperFail(context, callback, statusCode, headers);
 								return;
 							}
-							if (callback != null) {
-								String msg = response.getString("message");
-								if (!TextUtils.isEmpty(msg) && msg.contains("鎖定")) {
-									callback.onReserveFail(msg);
-								} else {
-									callback.onFail(msg);
-								}
-							}
+							onBookingFail(callback, response.getString("message"));
 						}
 					} else {
 						onHelperFail(context, callback, statusCode, headers, null, response);
@@ -672,14 +716,7 @@ public class Helper {
 				super.onFailure(statusCode, headers, throwable, errorResponse);
 				try {
 					if (errorResponse != null && errorResponse.has("message")) {
-						if (callback != null) {
-							String msg = errorResponse.getString("message");
-							if (!TextUtils.isEmpty(msg) && msg.contains("鎖定")) {
-								callback.onReserveFail(msg);
-							} else {
-								callback.onFail(msg);
-							}
-						}
+						onBookingFail(callback, errorResponse.getString("message"));
 					} else {
 						onHelperFail(context, callback, statusCode, headers, throwable,
 								errorResponse);
@@ -691,6 +728,54 @@ public class Helper {
 		});
 	}
 
+	private static boolean isReserveLocked(String message) {
+		return !TextUtils.isEmpty(message) && message.contains("鎖定");
+	}
+
+	/**
+	 * The account being locked from booking (鎖定) goes to onReserveFail, retrying can't help it
+	 */
+	private static void onBookingFail(BusBookCallback callback, String message) {
+		if (callback == null) {
+			return;
+		}
+		if (isReserveLocked(message)) {
+			callback.onReserveFail(message);
+		} else {
+			callback.onFail(message);
+		}
+	}
+
+	/**
+	 * Open a connection to the server ahead of a request that must be quick, e.g. a timed
+	 * booking, the connection is kept alive for it. The response also updates
+	 * {@link ServerClock}. Callback gets onSuccess once there is a response, whatever its status.
+	 */
+	public static void warmUp(final Context context, final GeneralCallback callback) {
+		mClient.get(context, SERVER_STATUS_URL, new TextHttpResponseHandler() {
+
+			@Override
+			public void onSuccess(int statusCode, Header[] headers, String responseString) {
+				if (callback != null) {
+					callback.onSuccess();
+				}
+			}
+
+			@Override
+			public void onFailure(int statusCode, Header[] headers, String responseString,
+			                      Throwable throwable) {
+				if (statusCode != 0) {
+					// The server answered, the connection is open
+					if (callback != null) {
+						callback.onSuccess();
+					}
+				} else {
+					onHelperFail(context, callback, statusCode, headers, throwable);
+				}
+			}
+		});
+	}
+
 	public static void cancelBookingBus(final Context context, String cancelKey,
 	                                    final GeneralCallback callback) {
 		String url = String.format(BUS_BOOKING_URL, cancelKey);
@@ -754,10 +839,10 @@ public class Helper {
 		});
 	}
 
-	public static void getNotification(final Context context, int page,
-	                                   final NotificationCallback callback) {
+	public static RequestHandle getNotification(final Context context, int page,
+	                                            final NotificationCallback callback) {
 		String url = String.format(NOTIFICATION_URL, page);
-		mClient.get(url, new JsonHttpResponseHandler() {
+		return mClient.get(url, new JsonHttpResponseHandler() {
 
 			@Override
 			public void onSuccess(int statusCode, Header[] headers, JSONObject response) {
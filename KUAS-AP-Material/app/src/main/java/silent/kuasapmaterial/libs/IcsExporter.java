@@ -0,0 +1,227 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.v4.content.FileProvider;
+
+import com.kuas.ap.BuildConfig;
+import com.kuas.ap.R;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import silent.kuasapmaterial.callback.CourseCallback;
+import silent.kuasapmaterial.callback.GeneralCallback;
+import silent.kuasapmaterial.models.BusModel;
+import silent.kuasapmaterial.models.CourseModel;
+import silent.kuasapmaterial.models.SemesterModel;
+
+/**
+ * Exports the course timetables of some semesters and the saved bus reservations to an .ics
+ * file for other calendar apps. The timetables are fetched one semester after another, the file
+ * is written by {@link IcsWriter} on a background thread and shared through a
+ * {@link FileProvider}.
+ */
+
+public class IcsExporter {
+
+	public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".fileprovider";
+	private static final String DIRECTORY = "ics";
+	private static final String FILE_NAME = "nkust_ap.ics";
+	// Semesters follow the ROC calendar
+	private static final int ROC_YEAR_OFFSET = 1911;
+
+	private static ExecutorService sExecutor;
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Fetch the timetables of semesters and write them with the saved bus reservations,
+	 * callback gets onSuccess(String) with the content Uri of the file
+	 */
+	public static void export(Context context, List<SemesterModel> semesters,
+	                          GeneralCallback callback) {
+		Context appContext = context.getApplicationContext();
+		fetchNext(appContext, semesters, new ArrayList<List<List<CourseModel>>>(), callback);
+	}
+
+	private static void fetchNext(final Context context, final List<SemesterModel> semesters,
+	                              final List<List<List<CourseModel>>> timetables,
+	                              final GeneralCallback callback) {
+		if (timetables.size() == semesters.size()) {
+			write(context, semesters, timetables, callback);
+			return;
+		}
+		String[] value = semesters.get(timetables.size()).value.split(",");
+		Helper.getCourseTimeTable(context, value[0], value[1], new CourseCallback() {
+
+			@Override
+			public void onSuccess(List<String> sections, List<List<CourseModel>> modelList) {
+				super.onSuccess(sections, modelList);
+
+				timetables.add(modelList);
+				fetchNext(context, semesters, timetables, callback);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				callback.onFail(errorMessage);
+			}
+
+			@Override
+			public void onTokenExpired() {
+				super.onTokenExpired();
+
+				callback.onTokenExpired();
+			}
+		});
+	}
+
+	private static void write(final Context context, final List<SemesterModel> semesters,
+	                          final List<List<List<CourseModel>>> timetables,
+	                          final GeneralCallback callback) {
+		// Memory is not thread safe
+		final List<BusModel> busList = Utils.loadBusReservations(context);
+		final String busSummary = context.getString(R.string.ics_bus_summary);
+		getExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				File directory = new File(context.getCacheDir(), DIRECTORY);
+				File file = new File(directory, FILE_NAME);
+				String errorMessage = null;
+				IcsWriter writer = null;
+				try {
+					if (!directory.isDirectory() && !directory.mkdirs()) {
+						throw new IOException("Can't create " + directory);
+					}
+					writer = new IcsWriter(new FileOutputStream(file));
+					writer.begin();
+					for (int i = 0; i < semesters.size(); i++) {
+						long[] range = getSemesterRange(semesters.get(i).value);
+						if (range != null) {
+							writer.writeCourses(semesters.get(i).value, timetables.get(i),
+									range[0], range[1]);
+						}
+					}
+					if (busList != null) {
+						for (BusModel model : busList) {
+							writer.writeBus(model, String.format(busSummary, model.endStation));
+						}
+					}
+					writer.end();
+				} catch (IOException e) {
+					errorMessage = e.getMessage();
+				} finally {
+					if (writer != null) {
+						try {
+							writer.close();
+						} catch (IOException e) {
+							// ignore
+						}
+					}
+				}
+
+				final String message = errorMessage;
+				final Uri uri = message == null ?
+						FileProvider.getUriForFile(context, AUTHORITY, file) : null;
+				sHandler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						if (uri != null) {
+							callback.onSuccess(uri.toString());
+						} else {
+							callback.onFail(message);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * @param uri content Uri given by {@link #export}
+	 */
+	public static Intent createShareIntent(String uri) {
+		Intent intent = new Intent(Intent.ACTION_SEND);
+		intent.setType("text/calendar");
+		intent.putExtra(Intent.EXTRA_STREAM, Uri.parse(uri));
+		intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+		return intent;
+	}
+
+	/**
+	 * The school publishes no dates with the semesters, the fall semester is taken to run from
+	 * September to January, the spring one from February to June and the summer from July to
+	 * August.
+	 *
+	 * @param value the semester value, e.g. "107,1" for the fall of 2018
+	 * @return the first and the last day in epoch millis, null if value is malformed
+	 */
+	private static long[] getSemesterRange(String value) {
+		String[] parts = value == null ? new String[0] : value.split(",");
+		if (parts.length < 2) {
+			return null;
+		}
+		int year, term;
+		try {
+			year = Integer.parseInt(parts[0].trim()) + ROC_YEAR_OFFSET;
+			term = Integer.parseInt(parts[1].trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+
+		Calendar start = Calendar.getInstance();
+		start.clear();
+		Calendar end = Calendar.getInstance();
+		end.clear();
+		switch (term) {
+			case 1:
+				start.set(year, Calendar.SEPTEMBER, 1);
+				end.set(year + 1, Calendar.JANUARY, 31);
+				break;
+			case 2:
+				start.set(year + 1, Calendar.FEBRUARY, 1);
+				end.set(year + 1, Calendar.JUNE, 30);
+				break;
+			default:
+				start.set(year + 1, Calendar.JULY, 1);
+				end.set(year + 1, Calendar.AUGUST, 31);
+				break;
+		}
+		return new long[]{start.getTimeInMillis(), end.getTimeInMillis()};
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					return new Thread(new Runnable() {
+
+						@Override
+						public void run() {
+							Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+							r.run();
+						}
+					}, "Ics");
+				}
+			});
+		}
+		return sExecutor;
+	}
+}
@@ -0,0 +1,251 @@
+package silent.kuasapmaterial.libs;
+
+import android.text.TextUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import silent.kuasapmaterial.models.BusModel;
+import silent.kuasapmaterial.models.CourseModel;
+
+/**
+ * Writes an iCalendar (RFC 5545) document event by event to a stream, nothing but the current
+ * line is held in memory, so the cost grows linearly with the events and memory stays flat.
+ * <p>
+ * Courses become events repeating weekly through their semester, consecutive sections of the
+ * same course are one event. Bus reservations become single events. Times are written in UTC.
+ */
+
+public class IcsWriter implements Closeable {
+
+	private static final String CRLF = "\r\n";
+	// Octets per line before folding, not counting the CRLF
+	private static final int MAX_LINE_OCTETS = 75;
+	// The ride between the campuses
+	private static final int BUS_MINUTES = 30;
+	private static final String UID_DOMAIN = "@ap.kuas.edu.tw";
+
+	private final Writer mWriter;
+	private final Calendar mUtc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+	private final Calendar mLocal = Calendar.getInstance();
+	private final String mStamp;
+	private final char[] mDigits = new char[16];
+	private int mLineOctets = 0;
+
+	public IcsWriter(OutputStream outputStream) {
+		mWriter = new BufferedWriter(
+				new OutputStreamWriter(outputStream, Charset.forName("UTF-8")));
+		mStamp = formatUtc(System.currentTimeMillis());
+	}
+
+	public void begin() throws IOException {
+		writeLine("BEGIN", "VCALENDAR");
+		writeLine("VERSION", "2.0");
+		writeLine("PRODID", "-//NKUST AP//Android//ZH");
+		writeLine("CALSCALE", "GREGORIAN");
+		writeLine("METHOD", "PUBLISH");
+	}
+
+	/**
+	 * @param semester  the semester value, e.g. "107,1", tells the events of different semesters
+	 *                  apart
+	 * @param courses   weekday (0 is Monday) -> section -> course, null if free
+	 * @param startDate first day of the semester in epoch millis
+	 * @param endDate   last day of the semester in epoch millis
+	 */
+	public void writeCourses(String semester, List<List<CourseModel>> courses, long startDate,
+	                         long endDate) throws IOException {
+		long lastMillis = endOfDay(endDate);
+		String until = formatUtc(lastMillis);
+		for (int i = 0; i < courses.size() && i < TimetableIndex.WEEKDAYS; i++) {
+			List<CourseModel> dayList = courses.get(i);
+			if (dayList == null) {
+				continue;
+			}
+			int dayOfWeek = TimeParser.toCalendarDayOfWeek(i);
+			for (int j = 0; j < dayList.size(); j++) {
+				CourseModel first = dayList.get(j);
+				if (first == null) {
+					continue;
+				}
+				CourseModel last = first;
+				while (j + 1 < dayList.size() && dayList.get(j + 1) != null &&
+						TextUtils.equals(dayList.get(j + 1).title, first.title)) {
+					last = dayList.get(++j);
+				}
+				if (first.startMinute == TimeParser.INVALID ||
+						last.endMinute == TimeParser.INVALID ||
+						last.endMinute <= first.startMinute) {
+					continue;
+				}
+
+				// The first class on or after the start of the semester
+				mLocal.setTimeInMillis(startDate);
+				while (mLocal.get(Calendar.DAY_OF_WEEK) != dayOfWeek) {
+					mLocal.add(Calendar.DAY_OF_MONTH, 1);
+				}
+				mLocal.set(Calendar.HOUR_OF_DAY, first.startMinute / 60);
+				mLocal.set(Calendar.MINUTE, first.startMinute % 60);
+				mLocal.set(Calendar.SECOND, 0);
+				mLocal.set(Calendar.MILLISECOND, 0);
+				long start = mLocal.getTimeInMillis();
+				if (start > lastMillis) {
+					continue;
+				}
+
+				writeLine("BEGIN", "VEVENT");
+				writeLine("UID", "course-" + semester.replace(',', '-') + "-" + dayOfWeek + "-" +
+						first.startMinute + UID_DOMAIN);
+				writeLine("DTSTAMP", mStamp);
+				writeLine("DTSTART", formatUtc(start));
+				writeLine("DTEND",
+						formatUtc(start + (last.endMinute - first.startMinute) * 60 * 1000L));
+				writeLine("RRULE", "FREQ=WEEKLY;UNTIL=" + until);
+				writeTextLine("SUMMARY", first.title);
+				writeTextLine("LOCATION", getLocation(first));
+				if (!first.instructors.isEmpty()) {
+					writeTextLine("DESCRIPTION", TextUtils.join(", ", first.instructors));
+				}
+				writeLine("END", "VEVENT");
+			}
+		}
+	}
+
+	/**
+	 * @param summary title of the event, e.g. where the bus goes
+	 */
+	public void writeBus(BusModel model, String summary) throws IOException {
+		if (model.runMillis == TimeParser.INVALID) {
+			return;
+		}
+		writeLine("BEGIN", "VEVENT");
+		writeLine("UID", "bus-" + (model.busId != null ? model.busId : model.runMillis) +
+				UID_DOMAIN);
+		writeLine("DTSTAMP", mStamp);
+		writeLine("DTSTART", formatUtc(model.runMillis));
+		writeLine("DTEND", formatUtc(model.runMillis + BUS_MINUTES * 60 * 1000L));
+		writeTextLine("SUMMARY", summary);
+		writeLine("END", "VEVENT");
+	}
+
+	public void end() throws IOException {
+		writeLine("END", "VCALENDAR");
+		mWriter.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		mWriter.close();
+	}
+
+	private static String getLocation(CourseModel model) {
+		String building = model.building == null ? "" : model.building.trim();
+		String room = model.room == null ? "" : model.room.trim();
+		return building.isEmpty() ? room : room.isEmpty() ? building : building + " " + room;
+	}
+
+	private long endOfDay(long millis) {
+		mLocal.setTimeInMillis(millis);
+		mLocal.set(Calendar.HOUR_OF_DAY, 23);
+		mLocal.set(Calendar.MINUTE, 59);
+		mLocal.set(Calendar.SECOND, 59);
+		mLocal.set(Calendar.MILLISECOND, 0);
+		return mLocal.getTimeInMillis();
+	}
+
+	/**
+	 * @return millis as yyyyMMdd'T'HHmmss'Z'
+	 */
+	private String formatUtc(long millis) {
+		mUtc.setTimeInMillis(millis);
+		char[] digits = mDigits;
+		putDigits(digits, 0, mUtc.get(Calendar.YEAR), 4);
+		putDigits(digits, 4, mUtc.get(Calendar.MONTH) + 1, 2);
+		putDigits(digits, 6, mUtc.get(Calendar.DAY_OF_MONTH), 2);
+		digits[8] = 'T';
+		putDigits(digits, 9, mUtc.get(Calendar.HOUR_OF_DAY), 2);
+		putDigits(digits, 11, mUtc.get(Calendar.MINUTE), 2);
+		putDigits(digits, 13, mUtc.get(Calendar.SECOND), 2);
+		digits[15] = 'Z';
+		return new String(digits);
+	}
+
+	private static void putDigits(char[] digits, int offset, int value, int count) {
+		for (int i = offset + count - 1; i >= offset; i--) {
+			digits[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
+	private void writeLine(String name, String value) throws IOException {
+		mLineOctets = 0;
+		write(name, false);
+		write(":", false);
+		write(value, false);
+		mWriter.write(CRLF);
+	}
+
+	/**
+	 * Value of TEXT type, with backslashes, semicolons, commas and newlines escaped
+	 */
+	private void writeTextLine(String name, String value) throws IOException {
+		mLineOctets = 0;
+		write(name, false);
+		write(":", false);
+		write(value == null ? "" : value, true);
+		mWriter.write(CRLF);
+	}
+
+	/**
+	 * Write text to the current line, folding it before a character would pass
+	 * {@link #MAX_LINE_OCTETS} UTF-8 octets
+	 */
+	private void write(String text, boolean isEscaped) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (isEscaped) {
+				if (c == '\\' || c == ';' || c == ',') {
+					fold(1);
+					mWriter.write('\\');
+					mLineOctets++;
+				} else if (c == '\n') {
+					fold(2);
+					mWriter.write("\\n");
+					mLineOctets += 2;
+					continue;
+				} else if (c == '\r') {
+					continue;
+				}
+			}
+			if (Character.isHighSurrogate(c) && i + 1 < text.length()) {
+				// Never split a surrogate pair
+				fold(4);
+				mWriter.write(c);
+				mWriter.write(text.charAt(++i));
+				mLineOctets += 4;
+				continue;
+			}
+			int octets = c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+			fold(octets);
+			mWriter.write(c);
+			mLineOctets += octets;
+		}
+	}
+
+	private void fold(int octets) throws IOException {
+		if (mLineOctets + octets > MAX_LINE_OCTETS) {
+			// The leading space of a continuation line counts too
+			mWriter.write(CRLF);
+			mWriter.write(' ');
+			mLineOctets = 1;
+		}
+	}
+}
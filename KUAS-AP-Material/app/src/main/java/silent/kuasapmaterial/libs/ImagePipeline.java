@@ -0,0 +1,247 @@
+package silent.kuasapmaterial.libs;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.support.v4.app.ActivityManagerCompat;
+import android.support.v4.graphics.BitmapCompat;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.kuas.ap.R;
+import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+import com.nostra13.universalimageloader.core.assist.ImageScaleType;
+import com.nostra13.universalimageloader.core.assist.QueueProcessingType;
+import com.nostra13.universalimageloader.core.display.RoundedBitmapDisplayer;
+import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
+import com.nostra13.universalimageloader.core.process.BitmapProcessor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Image loader setup sized after the device memory class, with a cache of processed avatars.
+ * <p>
+ * An avatar is decoded and cropped from the full user photo once per size, the result is kept as
+ * a small file next to the image cache and loaded from there afterwards.
+ */
+
+public class ImagePipeline {
+
+	private static final String AVATAR_DIR = "avatar";
+	private static final int DISK_CACHE_SIZE = 30 * 1024 * 1024;
+
+	private static TrimmableMemoryCache sMemoryCache;
+
+	public static ImageLoaderConfiguration createConfiguration(Context context) {
+		ActivityManager activityManager =
+				(ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+		int memoryClass = activityManager.getMemoryClass();
+		boolean isLowRam = ActivityManagerCompat.isLowRamDevice(activityManager) ||
+				memoryClass <= 64;
+		int memoryBytes = memoryClass * 1024 * 1024;
+
+		// 1/8 of the heap for bitmaps on display, less on small devices
+		sMemoryCache = new TrimmableMemoryCache(memoryBytes / (isLowRam ? 16 : 8));
+
+		return new ImageLoaderConfiguration.Builder(context).threadPoolSize(isLowRam ? 2 : 3)
+				.threadPriority(Thread.NORM_PRIORITY - 2)
+				.tasksProcessingOrder(QueueProcessingType.LIFO).memoryCache(sMemoryCache)
+				.diskCacheSize(DISK_CACHE_SIZE).build();
+	}
+
+	/**
+	 * Release memory as requested by {@link ComponentCallbacks2#onTrimMemory}
+	 */
+	public static void onTrimMemory(int level) {
+		if (sMemoryCache == null) {
+			return;
+		}
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND ||
+				level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			sMemoryCache.clear();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			// Includes TRIM_MEMORY_UI_HIDDEN, nothing is on screen anymore
+			sMemoryCache.trimToSize(sMemoryCache.maxSize() / 2);
+		}
+	}
+
+	/**
+	 * Show the user photo at url as a round avatar of sizePixels
+	 */
+	public static void displayAvatar(ImageView imageView, String url, final int sizePixels) {
+		Context context = imageView.getContext().getApplicationContext();
+		File avatarFile = getAvatarFile(context, url, sizePixels);
+		// A fixed target size, so the memory cache key is the same on every screen, and the
+		// decoder samples the photo down to the avatar instead of the view's maximum size
+		ImageViewAware imageAware = new ImageViewAware(imageView) {
+
+			@Override
+			public int getWidth() {
+				return sizePixels;
+			}
+
+			@Override
+			public int getHeight() {
+				return sizePixels;
+			}
+		};
+
+		if (avatarFile.exists()) {
+			ImageLoader.getInstance()
+					.displayImage(Uri.fromFile(avatarFile).toString(), imageAware,
+							getAvatarBuilder(sizePixels).build());
+		} else {
+			ImageLoader.getInstance().displayImage(url, imageAware,
+					getAvatarBuilder(sizePixels).cacheOnDisk(true)
+							.preProcessor(new AvatarProcessor(context, avatarFile, sizePixels))
+							.build());
+		}
+	}
+
+	private static DisplayImageOptions.Builder getAvatarBuilder(int sizePixels) {
+		return new DisplayImageOptions.Builder().cacheInMemory(true)
+				.bitmapConfig(Bitmap.Config.RGB_565).imageScaleType(ImageScaleType.IN_SAMPLE_INT)
+				.showImageOnLoading(R.drawable.ic_account_circle_white_48dp)
+				.displayer(new RoundedBitmapDisplayer(sizePixels / 2));
+	}
+
+	private static File getAvatarFile(Context context, String url, int sizePixels) {
+		File dir = new File(context.getCacheDir(), AVATAR_DIR);
+		return new File(dir, Integer.toHexString(url.hashCode()) + "_" + sizePixels + ".png");
+	}
+
+	/**
+	 * Crops the centre square of the photo, scales it to the avatar size and saves the result
+	 */
+	private static class AvatarProcessor implements BitmapProcessor {
+
+		private final Context mContext;
+		private final File mAvatarFile;
+		private final int mSizePixels;
+
+		AvatarProcessor(Context context, File avatarFile, int sizePixels) {
+			mContext = context;
+			mAvatarFile = avatarFile;
+			mSizePixels = sizePixels;
+		}
+
+		@Override
+		public Bitmap process(Bitmap src) {
+			if (src.getWidth() == 0 || src.getHeight() == 0) {
+				return BitmapFactory.decodeResource(mContext.getResources(),
+						R.drawable.ic_account_circle_white_48dp);
+			}
+
+			int size = Math.min(src.getWidth(), src.getHeight());
+			Matrix matrix = new Matrix();
+			if (size > mSizePixels) {
+				float scale = mSizePixels / (float) size;
+				matrix.setScale(scale, scale);
+			}
+			Bitmap result = Bitmap.createBitmap(src, (src.getWidth() - size) / 2,
+					(src.getHeight() - size) / 2, size, size, matrix, true);
+			save(result);
+			return result;
+		}
+
+		private void save(Bitmap bitmap) {
+			File dir = mAvatarFile.getParentFile();
+			if (!dir.exists() && !dir.mkdirs()) {
+				return;
+			}
+			// Avatars of an older photo are never shown again
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					if (file.getName().endsWith("_" + mSizePixels + ".png")) {
+						file.delete();
+					}
+				}
+			}
+
+			File tempFile = new File(dir, mAvatarFile.getName() + ".tmp");
+			FileOutputStream outputStream = null;
+			try {
+				outputStream = new FileOutputStream(tempFile);
+				if (bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream)) {
+					outputStream.close();
+					outputStream = null;
+					tempFile.renameTo(mAvatarFile);
+				}
+			} catch (IOException e) {
+				Log.e(Constant.TAG, "Save avatar failed", e);
+			} finally {
+				if (outputStream != null) {
+					try {
+						outputStream.close();
+					} catch (IOException ignored) {
+					}
+				}
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Memory cache that can shrink when the system asks for memory, sized in bytes
+	 */
+	private static class TrimmableMemoryCache implements MemoryCache {
+
+		private final LruCache<String, Bitmap> mCache;
+
+		TrimmableMemoryCache(int maxSize) {
+			mCache = new LruCache<String, Bitmap>(maxSize) {
+
+				@Override
+				protected int sizeOf(String key, Bitmap value) {
+					return BitmapCompat.getAllocationByteCount(value);
+				}
+			};
+		}
+
+		@Override
+		public boolean put(String key, Bitmap value) {
+			mCache.put(key, value);
+			return true;
+		}
+
+		@Override
+		public Bitmap get(String key) {
+			return mCache.get(key);
+		}
+
+		@Override
+		public Bitmap remove(String key) {
+			return mCache.remove(key);
+		}
+
+		@Override
+		public Collection<String> keys() {
+			return mCache.snapshot().keySet();
+		}
+
+		@Override
+		public void clear() {
+			mCache.evictAll();
+		}
+
+		int maxSize() {
+			return mCache.maxSize();
+		}
+
+		void trimToSize(int maxSize) {
+			mCache.trimToSize(maxSize);
+		}
+	}
+}
@@ -30,9 +30,11 @@ import android.graphics.drawable.shapes.OvalShape;
 import android.net.Uri;
 import android.os.Build;
 import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
+import android.view.View;
 import android.view.animation.Animation;
 import android.widget.ImageView;
 
@@ -201,7 +203,10 @@ public class MaterialProgressBar extends ImageView {
 		super.setImageDrawable(null);
 		super.setImageDrawable(mProgressDrawable);
 		mProgressDrawable.setAlpha(255);
-		mProgressDrawable.start();
+		// Layout passes happen often, restarting here would reset the spinner each time
+		if (!mProgressDrawable.isRunning()) {
+			mProgressDrawable.start();
+		}
 	}
 
 	@Override
@@ -329,6 +334,30 @@ public class MaterialProgressBar extends ImageView {
 		}
 	}
 
+	@Override
+	protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+		super.onVisibilityChanged(changedView, visibility);
+		if (mProgressDrawable != null) {
+			mProgressDrawable.updateTicker();
+		}
+	}
+
+	@Override
+	protected void onWindowVisibilityChanged(int visibility) {
+		super.onWindowVisibilityChanged(visibility);
+		if (mProgressDrawable != null) {
+			mProgressDrawable.updateTicker();
+		}
+	}
+
+	@Override
+	public void onWindowFocusChanged(boolean hasWindowFocus) {
+		super.onWindowFocusChanged(hasWindowFocus);
+		if (mProgressDrawable != null) {
+			mProgressDrawable.updateTicker();
+		}
+	}
+
 	@Override
 	protected void onAttachedToWindow() {
 		super.onAttachedToWindow();
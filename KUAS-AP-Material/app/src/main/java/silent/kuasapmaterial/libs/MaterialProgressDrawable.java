@@ -41,14 +41,14 @@ import android.view.animation.Transformation;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.util.ArrayList;
 
 /**
  * Fancy progress indicator for Material theme.
  *
  * @hide
  */
-public class MaterialProgressDrawable extends Drawable implements Animatable {
+public class MaterialProgressDrawable extends Drawable
+		implements Animatable, FrameAnimator.ViewTicker.TickCallback {
 
 	// Maps to ProgressBar.XLarge style
 	public static final int XLARGE = 2;
@@ -93,10 +93,6 @@ public class MaterialProgressDrawable extends Drawable implements Animatable {
 	private static final float ARROW_OFFSET_ANGLE = 0;
 	private static final float MAX_PROGRESS_ARC = .8f;
 	private final int[] COLORS = new int[]{Color.BLACK};
-	/**
-	 * The list of animators operating on this drawable.
-	 */
-	private final ArrayList<Animation> mAnimators = new ArrayList<>();
 	/**
 	 * The indicator ring, used to manage animation state.
 	 */
@@ -124,14 +120,17 @@ public class MaterialProgressDrawable extends Drawable implements Animatable {
 	 */
 	private float mRotation;
 	private Resources mResources;
-	private View mAnimExcutor;
+	private final FrameAnimator.ViewTicker mTicker;
 	private Animation mAnimation;
+	private final Transformation mTransformation = new Transformation();
+	// Animation clock, only advances while the ticker is delivering frames
+	private long mAnimationTime;
 	private float mRotationCount;
 	private double mWidth;
 	private double mHeight;
 
 	public MaterialProgressDrawable(Context context, View animExcutor) {
-		mAnimExcutor = animExcutor;
+		mTicker = new FrameAnimator.ViewTicker(animExcutor, this);
 		mResources = context.getResources();
 
 		mRing = new Ring(mCallback);
@@ -287,15 +286,7 @@ public class MaterialProgressDrawable extends Drawable implements Animatable {
 
 	@Override
 	public boolean isRunning() {
-		final ArrayList<Animation> animators = mAnimators;
-		final int N = animators.size();
-		for (int i = 0; i < N; i++) {
-			final Animation animator = animators.get(i);
-			if (animator.hasStarted() && !animator.hasEnded()) {
-				return true;
-			}
-		}
-		return false;
+		return mTicker.isRunning();
 	}
 
 	@Override
@@ -306,24 +297,38 @@ public class MaterialProgressDrawable extends Drawable implements Animatable {
 		if (mRing.getEndTrim() != mRing.getStartTrim()) {
 			mFinishing = true;
 			mAnimation.setDuration(ANIMATION_DURATION / 2);
-			mAnimExcutor.startAnimation(mAnimation);
 		} else {
 			mRing.setColorIndex(0);
 			mRing.resetOriginals();
 			mAnimation.setDuration(ANIMATION_DURATION);
-			mAnimExcutor.startAnimation(mAnimation);
 		}
+		mAnimation.setStartTime(mAnimationTime);
+		mTicker.setRunning(true);
 	}
 
 	@Override
 	public void stop() {
-		mAnimExcutor.clearAnimation();
+		mTicker.setRunning(false);
 		setRotation(0);
 		mRing.setShowArrow(false);
 		mRing.setColorIndex(0);
 		mRing.resetOriginals();
 	}
 
+	@Override
+	public void onTick(long deltaMillis) {
+		mAnimationTime += deltaMillis;
+		mAnimation.getTransformation(mAnimationTime, mTransformation);
+	}
+
+	/**
+	 * Re-check whether frames should be delivered, call when the host view's visibility or
+	 * window focus changes.
+	 */
+	public void updateTicker() {
+		mTicker.update();
+	}
+
 	private void applyFinishTranslation(float interpolatedTime, Ring ring) {
 		// shrink back down and complete a full rotation before
 		// starting other circles
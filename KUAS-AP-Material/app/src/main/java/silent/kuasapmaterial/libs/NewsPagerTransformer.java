@@ -6,12 +6,20 @@ import android.view.View;
 
 /**
  * Created by Ray on 2017/9/10.
+ * <p>
+ * Runs for every page on every scroll frame, so the pager geometry is cached once per layout
+ * and properties are only written when they change.
  */
 
-public class NewsPagerTransformer implements ViewPager.PageTransformer {
+public class NewsPagerTransformer
+		implements ViewPager.PageTransformer, View.OnLayoutChangeListener {
 
-	private int maxTranslateOffsetX;
+	private static final float OFFSET_RATE = 0.38f;
+
+	private final int maxTranslateOffsetX;
 	private ViewPager viewPager;
+	private int mHalfPagerWidth;
+	private float mOffsetRateScale;
 
 	public NewsPagerTransformer(Context context) {
 		this.maxTranslateOffsetX = dp2px(context, 180);
@@ -20,20 +28,50 @@ public class NewsPagerTransformer implements ViewPager.PageTransformer {
 	public void transformPage(View view, float position) {
 		if (viewPager == null) {
 			viewPager = (ViewPager) view.getParent();
+			viewPager.addOnLayoutChangeListener(this);
+			updateGeometry();
+		}
+		if (mOffsetRateScale == 0) {
+			return;
 		}
 
-		int leftInScreen = view.getLeft() - viewPager.getScrollX();
-		int centerXInViewPager = leftInScreen + view.getMeasuredWidth() / 2;
-		int offsetX = centerXInViewPager - viewPager.getMeasuredWidth() / 2;
-		float offsetRate = (float) offsetX * 0.38f / viewPager.getMeasuredWidth();
+		int offsetX = view.getLeft() - viewPager.getScrollX() + view.getMeasuredWidth() / 2 -
+				mHalfPagerWidth;
+		float offsetRate = offsetX * mOffsetRateScale;
 		float scaleFactor = 1 - Math.abs(offsetRate);
 		if (scaleFactor > 0) {
-			view.setScaleX(scaleFactor);
-			view.setScaleY(scaleFactor);
-			view.setTranslationX(-maxTranslateOffsetX * offsetRate);
+			float translationX = -maxTranslateOffsetX * offsetRate;
+			if (view.getScaleX() != scaleFactor) {
+				view.setScaleX(scaleFactor);
+			}
+			if (view.getScaleY() != scaleFactor) {
+				view.setScaleY(scaleFactor);
+			}
+			if (view.getTranslationX() != translationX) {
+				view.setTranslationX(translationX);
+			}
+		}
+	}
+
+	@Override
+	public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft,
+	                           int oldTop, int oldRight, int oldBottom) {
+		if (right - left == oldRight - oldLeft) {
+			return;
+		}
+		updateGeometry();
+		// The pager transformed its pages during its own layout, with the old geometry
+		for (int i = 0; i < viewPager.getChildCount(); i++) {
+			transformPage(viewPager.getChildAt(i), 0);
 		}
 	}
 
+	private void updateGeometry() {
+		int pagerWidth = viewPager.getMeasuredWidth();
+		mHalfPagerWidth = pagerWidth / 2;
+		mOffsetRateScale = pagerWidth == 0 ? 0 : OFFSET_RATE / pagerWidth;
+	}
+
 	/**
 	 * dp和像素转换
 	 */
@@ -0,0 +1,206 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.loopj.android.http.RequestHandle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import silent.kuasapmaterial.callback.NotificationCallback;
+import silent.kuasapmaterial.models.NotificationModel;
+
+/**
+ * Notifications kept on the device, newest first and keyed by {@link NotificationModel#id}, so
+ * the list shows up without a request.
+ * <p>
+ * A refresh fetches from the first page and stops at the first notification already stored, so
+ * usually one page is requested and nothing is added. Only the newest notifications are
+ * persisted, up to {@link #MAX_STORED_COUNT}, older pages loaded in this session stay in memory.
+ * <p>
+ * Must only be used from the main thread.
+ */
+
+public class NotificationStore {
+
+	private static final int MAX_STORED_COUNT = 100;
+	// Without meeting a stored notification after this many pages, the stored ones are too old
+	// to join the new ones, and are replaced
+	private static final int MAX_REFRESH_PAGES = 5;
+
+	private static List<NotificationModel> sList;
+	private static Set<String> sIds;
+	// Bumped by every refresh, older pages fetched before it are dropped
+	private static int sGeneration = 0;
+
+	/**
+	 * @return the live list, changed by {@link #refresh} and {@link #loadMore}
+	 */
+	public static List<NotificationModel> getList(Context context) {
+		if (sList == null) {
+			sList = new ArrayList<>();
+			sIds = new HashSet<>();
+			String json = Memory.getString(context, Constant.PREF_NOTIFICATION_DATA, null);
+			if (json != null) {
+				try {
+					List<NotificationModel> modelList = new Gson()
+							.fromJson(json, new TypeToken<List<NotificationModel>>() {
+
+							}.getType());
+					if (modelList != null) {
+						addAll(sList.size(), modelList);
+					}
+				} catch (JsonSyntaxException e) {
+					AlarmHelper.logGsonError("Notification Load", e);
+				}
+			}
+		}
+		return sList;
+	}
+
+	/**
+	 * Fetch the notifications newer than the stored ones, callback gets the ones added in front
+	 * of the list, or the whole list if the stored ones were replaced
+	 */
+	public static void refresh(Context context, NotificationCallback callback) {
+		getList(context);
+		sGeneration++;
+		fetchNewer(context.getApplicationContext(), 1, new ArrayList<NotificationModel>(),
+				callback);
+	}
+
+	/**
+	 * Fetch the page following the last notification in the list, callback gets the ones added
+	 * at the end of the list, none once the last page is reached. A page still on the way when
+	 * {@link #refresh} is called is dropped without calling back, the caller cancels it then.
+	 */
+	public static RequestHandle loadMore(Context context, NotificationCallback callback) {
+		getList(context);
+		int pageSize = Memory.getInt(context, Constant.PREF_NOTIFICATION_PAGE_SIZE, 0);
+		// Notifications published since the list was fetched push the older ones down, the page
+		// may start with ones already in the list, but never skips any
+		int page = pageSize > 0 ? sList.size() / pageSize + 1 : 1;
+		return fetchOlder(context.getApplicationContext(), page, sGeneration, callback);
+	}
+
+	private static RequestHandle fetchOlder(final Context context, final int page,
+	                                        final int generation,
+	                                        final NotificationCallback callback) {
+		return Helper.getNotification(context, page, new NotificationCallback() {
+
+			@Override
+			public void onSuccess(List<NotificationModel> modelList) {
+				super.onSuccess(modelList);
+
+				if (generation != sGeneration) {
+					// Its page numbers are of the list before the refresh
+					return;
+				}
+				List<NotificationModel> addedList = new ArrayList<>();
+				for (NotificationModel model : modelList) {
+					if (!sIds.contains(model.id)) {
+						addedList.add(model);
+					}
+				}
+				if (addedList.isEmpty() && modelList.size() > 0) {
+					// Pushed down by enough new notifications to fill the whole page
+					fetchOlder(context, page + 1, generation, callback);
+					return;
+				}
+				boolean isStoredChanged = sList.size() < MAX_STORED_COUNT;
+				addAll(sList.size(), addedList);
+				if (isStoredChanged && addedList.size() > 0) {
+					save(context);
+				}
+				if (callback != null) {
+					callback.onSuccess(addedList);
+				}
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				if (callback != null && generation == sGeneration) {
+					callback.onFail(errorMessage);
+				}
+			}
+		});
+	}
+
+	private static void fetchNewer(final Context context, final int page,
+	                               final List<NotificationModel> newerList,
+	                               final NotificationCallback callback) {
+		Helper.getNotification(context, page, new NotificationCallback() {
+
+			@Override
+			public void onSuccess(List<NotificationModel> modelList) {
+				super.onSuccess(modelList);
+
+				if (page == 1 && modelList.size() > 0) {
+					Memory.setInt(context, Constant.PREF_NOTIFICATION_PAGE_SIZE,
+							modelList.size());
+				}
+				boolean isKnownReached = false;
+				for (NotificationModel model : modelList) {
+					if (sIds.contains(model.id)) {
+						isKnownReached = true;
+						break;
+					}
+					newerList.add(model);
+				}
+
+				if (isKnownReached || sList.isEmpty() || modelList.isEmpty()) {
+					addAll(0, newerList);
+				} else if (page < MAX_REFRESH_PAGES) {
+					fetchNewer(context, page + 1, newerList, callback);
+					return;
+				} else {
+					sList.clear();
+					sIds.clear();
+					addAll(0, newerList);
+				}
+				if (newerList.size() > 0) {
+					save(context);
+				}
+				if (callback != null) {
+					callback.onSuccess(newerList);
+				}
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+
+				if (callback != null) {
+					callback.onFail(errorMessage);
+				}
+			}
+		});
+	}
+
+	private static void addAll(int index, List<NotificationModel> modelList) {
+		List<NotificationModel> uniqueList = new ArrayList<>(modelList.size());
+		for (NotificationModel model : modelList) {
+			if (model.id != null && sIds.add(model.id)) {
+				uniqueList.add(model);
+			}
+		}
+		sList.addAll(index, uniqueList);
+	}
+
+	private static void save(Context context) {
+		if (sList == null) {
+			return;
+		}
+		// Evict the oldest beyond the limit, from the stored copy only
+		int count = Math.min(sList.size(), MAX_STORED_COUNT);
+		Memory.setString(context, Constant.PREF_NOTIFICATION_DATA,
+				new Gson().toJson(new ArrayList<>(sList.subList(0, count))));
+	}
+}
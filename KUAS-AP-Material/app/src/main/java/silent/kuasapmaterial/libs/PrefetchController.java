@@ -0,0 +1,137 @@
+package silent.kuasapmaterial.libs;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.loopj.android.http.RequestHandle;
+
+/**
+ * Asks for the next page before a list laid out by a {@link LinearLayoutManager} reaches its
+ * end. The page is requested once fewer than the prefetch distance items are left below the
+ * screen, a fast fling widens that distance by the items it will pass while a page is loading.
+ * <p>
+ * At most one page is in flight, {@link #cancel()} drops it when its screen goes away.
+ */
+
+public class PrefetchController extends RecyclerView.OnScrollListener {
+
+	// Typical time to fetch and show a page
+	private static final long PAGE_LOAD_MILLIS = 1500;
+	// Weight of the newest sample in the velocity average
+	private static final float VELOCITY_SMOOTHING = 0.3f;
+
+	private final int mDistance;
+	private final PageLoader mPageLoader;
+	private RequestHandle mRequestHandle;
+	private RecyclerView mRecyclerView;
+	private boolean isRequestPosted = false;
+
+	private int mLastFirstVisibleItem = -1;
+	private long mLastScrollTime;
+	// Items per millisecond, positive while scrolling towards the end
+	private float mVelocity = 0;
+
+	private final Runnable mRequestRunnable = new Runnable() {
+
+		@Override
+		public void run() {
+			isRequestPosted = false;
+			requestNextPage();
+		}
+	};
+
+	public interface PageLoader {
+
+		/**
+		 * Start loading the next page, call {@link PrefetchController#onPageLoaded()} once it is
+		 * shown or failed
+		 *
+		 * @return the request in flight, null if nothing was requested
+		 */
+		RequestHandle loadNextPage();
+	}
+
+	/**
+	 * @param distance prefetch once this many items or fewer are left below the screen
+	 */
+	public PrefetchController(int distance, PageLoader pageLoader) {
+		mDistance = distance;
+		mPageLoader = pageLoader;
+	}
+
+	public boolean isLoading() {
+		return mRequestHandle != null;
+	}
+
+	public void onPageLoaded() {
+		mRequestHandle = null;
+	}
+
+	/**
+	 * Request the next page now unless one is in flight, e.g. to retry a failed one
+	 */
+	public void requestNextPage() {
+		if (mRequestHandle == null) {
+			mRequestHandle = mPageLoader.loadNextPage();
+		}
+	}
+
+	public void cancel() {
+		if (mRecyclerView != null) {
+			mRecyclerView.removeCallbacks(mRequestRunnable);
+			isRequestPosted = false;
+		}
+		if (mRequestHandle != null) {
+			mRequestHandle.cancel(true);
+			mRequestHandle = null;
+		}
+		mVelocity = 0;
+		mLastFirstVisibleItem = -1;
+	}
+
+	@Override
+	public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+		if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+			mVelocity = 0;
+		}
+	}
+
+	/**
+	 * Also called after a layout that changed the visible items, so a list too short to scroll
+	 * still gets its next page
+	 */
+	@Override
+	public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+		LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+		int totalItemCount = layoutManager == null ? 0 : layoutManager.getItemCount();
+		int firstVisibleItem = totalItemCount == 0 ? RecyclerView.NO_POSITION :
+				layoutManager.findFirstVisibleItemPosition();
+		if (firstVisibleItem == RecyclerView.NO_POSITION) {
+			return;
+		}
+		long now = SystemClock.uptimeMillis();
+		if (mLastFirstVisibleItem >= 0 && firstVisibleItem != mLastFirstVisibleItem) {
+			long interval = Math.max(1, now - mLastScrollTime);
+			float velocity = (firstVisibleItem - mLastFirstVisibleItem) / (float) interval;
+			mVelocity += (velocity - mVelocity) * VELOCITY_SMOOTHING;
+		}
+		if (firstVisibleItem != mLastFirstVisibleItem) {
+			mLastFirstVisibleItem = firstVisibleItem;
+			mLastScrollTime = now;
+		}
+
+		if (mRequestHandle != null || isRequestPosted) {
+			return;
+		}
+		int remaining = totalItemCount - 1 - layoutManager.findLastVisibleItemPosition();
+		int distance = mDistance + (int) Math.ceil(Math.max(0, mVelocity) * PAGE_LOAD_MILLIS);
+		if (remaining <= distance) {
+			// May be called during layout, the loader changes the adapter
+			mRecyclerView = recyclerView;
+			isRequestPosted = true;
+			recyclerView.post(mRequestRunnable);
+		}
+	}
+}
@@ -9,7 +9,6 @@ import android.graphics.Paint.Style;
 import android.graphics.RectF;
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.AttributeSet;
@@ -28,7 +27,7 @@ import com.kuas.ap.R;
  * Licensed under the Apache License 2.0 license see:
  * http://www.apache.org/licenses/LICENSE-2.0
  */
-public class ProgressWheel extends View {
+public class ProgressWheel extends View implements FrameAnimator.ViewTicker.TickCallback {
 
 	private static final String TAG = ProgressWheel.class.getSimpleName();
 	private final int barLength = 16;
@@ -68,8 +67,8 @@ public class ProgressWheel extends View {
 	//The amount of degrees per second
 	private float spinSpeed = 230.0f;
 	//private float spinSpeed = 120.0f;
-	// The last time the spinner was animated
-	private long lastTimeAnimated = 0;
+	// Drives the animation, only ticks while the wheel is visible to the user
+	private final FrameAnimator.ViewTicker mTicker = new FrameAnimator.ViewTicker(this, this);
 	private boolean linearProgress;
 	private float mProgress = 0.0f;
 	private float mTargetProgress = 0.0f;
@@ -336,28 +335,8 @@ public class ProgressWheel extends View {
 
 		canvas.drawArc(circleBounds, 360, 360, false, rimPaint);
 
-		boolean mustInvalidate = false;
-
 		if (isSpinning) {
 			//Draw the spinning bar
-			mustInvalidate = true;
-
-			long deltaTime = (SystemClock.uptimeMillis() - lastTimeAnimated);
-			float deltaNormalized = deltaTime * spinSpeed / 1000.0f;
-
-			updateBarLength(deltaTime);
-
-			mProgress += deltaNormalized;
-			if (mProgress > 360) {
-				mProgress -= 360f;
-
-				// A full turn has been completed
-				// we run the callback with -1 in case we want to
-				// do something, like changing the color
-				runCallback(-1.0f);
-			}
-			lastTimeAnimated = SystemClock.uptimeMillis();
-
 			float from = mProgress - 90;
 			float length = barLength + barExtraLength;
 
@@ -368,23 +347,6 @@ public class ProgressWheel extends View {
 
 			canvas.drawArc(circleBounds, from, length, false, barPaint);
 		} else {
-			float oldProgress = mProgress;
-
-			if (mProgress != mTargetProgress) {
-				//We smoothly increase the progress bar
-				mustInvalidate = true;
-
-				float deltaTime = (float) (SystemClock.uptimeMillis() - lastTimeAnimated) / 1000;
-				float deltaNormalized = deltaTime * spinSpeed;
-
-				mProgress = Math.min(mProgress + deltaNormalized, mTargetProgress);
-				lastTimeAnimated = SystemClock.uptimeMillis();
-			}
-
-			if (oldProgress != mProgress) {
-				runCallback();
-			}
-
 			float offset = 0.0f;
 			float progress = mProgress;
 			if (!linearProgress) {
@@ -400,19 +362,63 @@ public class ProgressWheel extends View {
 
 			canvas.drawArc(circleBounds, offset - 90, progress, false, barPaint);
 		}
+	}
 
-		if (mustInvalidate) {
-			invalidate();
+	/**
+	 * Advance the animation, drawing is only requested when the wheel actually moved
+	 */
+	@Override
+	public void onTick(long deltaTime) {
+		if (isSpinning) {
+			float deltaNormalized = deltaTime * spinSpeed / 1000.0f;
+
+			updateBarLength(deltaTime);
+
+			mProgress += deltaNormalized;
+			if (mProgress > 360) {
+				mProgress -= 360f;
+
+				// A full turn has been completed
+				// we run the callback with -1 in case we want to
+				// do something, like changing the color
+				runCallback(-1.0f);
+			}
+			if (deltaTime > 0) {
+				invalidate();
+			}
+		} else if (mProgress != mTargetProgress) {
+			//We smoothly increase the progress bar
+			float deltaNormalized = (float) deltaTime / 1000 * spinSpeed;
+			float oldProgress = mProgress;
+
+			mProgress = Math.min(mProgress + deltaNormalized, mTargetProgress);
+
+			if (oldProgress != mProgress) {
+				runCallback();
+				invalidate();
+			}
+		} else {
+			// Reached the target, nothing left to animate
+			mTicker.setRunning(false);
 		}
 	}
 
 	@Override
 	protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
 		super.onVisibilityChanged(changedView, visibility);
+		mTicker.update();
+	}
 
-		if (visibility == VISIBLE) {
-			lastTimeAnimated = SystemClock.uptimeMillis();
-		}
+	@Override
+	protected void onWindowVisibilityChanged(int visibility) {
+		super.onWindowVisibilityChanged(visibility);
+		mTicker.update();
+	}
+
+	@Override
+	public void onWindowFocusChanged(boolean hasWindowFocus) {
+		super.onWindowFocusChanged(hasWindowFocus);
+		mTicker.update();
 	}
 
 	private void updateBarLength(long deltaTimeInMilliSeconds) {
@@ -523,6 +529,7 @@ public class ProgressWheel extends View {
 		isSpinning = false;
 		mProgress = 0.0f;
 		mTargetProgress = 0.0f;
+		mTicker.setRunning(false);
 		invalidate();
 	}
 
@@ -530,8 +537,8 @@ public class ProgressWheel extends View {
 	 * Puts the view on spin mode
 	 */
 	public void spin() {
-		lastTimeAnimated = SystemClock.uptimeMillis();
 		isSpinning = true;
+		mTicker.setRunning(true);
 		invalidate();
 	}
 
@@ -596,7 +603,7 @@ public class ProgressWheel extends View {
 
 		mTargetProgress = Math.min(progress * 360.0f, 360.0f);
 		mProgress = mTargetProgress;
-		lastTimeAnimated = SystemClock.uptimeMillis();
+		mTicker.setRunning(false);
 		invalidate();
 	}
 
@@ -645,7 +652,7 @@ public class ProgressWheel extends View {
 		this.linearProgress = ss.linearProgress;
 		this.fillRadius = ss.fillRadius;
 
-		this.lastTimeAnimated = SystemClock.uptimeMillis();
+		mTicker.setRunning(isSpinning || mProgress != mTargetProgress);
 	}
 
 	/**
@@ -684,15 +691,10 @@ public class ProgressWheel extends View {
 			return;
 		}
 
-		// If we are currently in the right position
-		// we set again the last time animated so the
-		// animation starts smooth from here
-		if (mProgress == mTargetProgress) {
-			lastTimeAnimated = SystemClock.uptimeMillis();
-		}
-
 		mTargetProgress = Math.min(progress * 360.0f, 360.0f);
 
+		// The ticker restarts with a zero delta, so the animation starts smooth from here
+		mTicker.setRunning(true);
 		invalidate();
 	}
 
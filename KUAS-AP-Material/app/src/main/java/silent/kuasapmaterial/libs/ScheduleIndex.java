@@ -0,0 +1,334 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import silent.kuasapmaterial.callback.ScheduleCallback;
+import silent.kuasapmaterial.models.ScheduleEventModel;
+import silent.kuasapmaterial.models.ScheduleModel;
+
+/**
+ * Read-only index over the academic schedule, one row per week header or event in list order.
+ * <p>
+ * The schedule_data JSON is parsed once into {@link ScheduleModel}s on a background thread and
+ * saved along with a hash of the JSON, so later screens only load the parsed models and the same
+ * JSON fetched again is not parsed at all. Event dates carry no year, the first event is taken to
+ * fall in the current academic year and the year grows whenever the dates go back by more than
+ * half a year.
+ */
+
+public class ScheduleIndex {
+
+	public static final int NONE = -1;
+
+	// Events of an academic year starting from this month on begin in the previous calendar year
+	// while it is the spring semester
+	private static final int FALL_MONTH = Calendar.JULY;
+	// In month * 100 + day
+	private static final int YEAR_BACK = 600;
+
+	private static ExecutorService sExecutor;
+	private static final Handler sHandler = new Handler(Looper.getMainLooper());
+	// Whether the saved schedule was restored or parsed, only used on the executor
+	private static boolean sIsRestored = false;
+
+	private final List<ScheduleModel> mWeeks;
+	// Row -> event, null for a week header
+	private final ScheduleEventModel[] mEvents;
+	private final String[] mTexts;
+	// Event end millis in ascending order, and the smallest row of the events ending at or after
+	// the same index
+	private final long[] mEndMillis;
+	private final int[] mFirstRows;
+
+	private ScheduleIndex(List<ScheduleModel> weeks) {
+		mWeeks = weeks;
+		int count = 0, eventCount = 0;
+		for (ScheduleModel week : weeks) {
+			count += 1 + week.events.size();
+			eventCount += week.events.size();
+		}
+		mEvents = new ScheduleEventModel[count];
+		mTexts = new String[count];
+
+		long[][] ends = new long[eventCount][];
+		int row = 0, datedCount = 0;
+		for (ScheduleModel week : weeks) {
+			mTexts[row++] = week.week;
+			for (ScheduleEventModel event : week.events) {
+				mEvents[row] = event;
+				mTexts[row] = event.text;
+				if (event.endMillis != TimeParser.INVALID) {
+					ends[datedCount++] = new long[]{event.endMillis, row};
+				}
+				row++;
+			}
+		}
+
+		ends = Arrays.copyOf(ends, datedCount);
+		Arrays.sort(ends, new Comparator<long[]>() {
+
+			@Override
+			public int compare(long[] a, long[] b) {
+				return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+			}
+		});
+		mEndMillis = new long[datedCount];
+		mFirstRows = new int[datedCount];
+		int firstRow = Integer.MAX_VALUE;
+		for (int i = datedCount - 1; i >= 0; i--) {
+			mEndMillis[i] = ends[i][0];
+			firstRow = Math.min(firstRow, (int) ends[i][1]);
+			mFirstRows[i] = firstRow;
+		}
+	}
+
+	public static ScheduleIndex build(List<ScheduleModel> weeks) {
+		return new ScheduleIndex(weeks);
+	}
+
+	/**
+	 * Parse data (the schedule_data JSON) and save the result, or load the saved schedule if data
+	 * is null. The callback runs on the main thread, onUnchanged if data is what the saved
+	 * schedule was parsed from and was restored before, onFail if there is nothing to show.
+	 */
+	public static void load(Context context, final String data, final ScheduleCallback callback) {
+		final Context appContext = context.getApplicationContext();
+		getExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				List<ScheduleModel> weeks = null;
+				String json = null, hash = null, errorMessage = null;
+				if (data == null) {
+					weeks = restore(appContext);
+					sIsRestored = weeks != null;
+				} else {
+					hash = hash(data);
+					String savedHash =
+							Memory.getString(appContext, Constant.PREF_SCHEDULE_HASH, null);
+					// A saved schedule that failed to restore is parsed again from data
+					if (sIsRestored && hash.equals(savedHash)) {
+						postUnchanged(callback);
+						return;
+					}
+					try {
+						weeks = parse(data, Calendar.getInstance());
+						json = new Gson().toJson(weeks);
+						// Saved next, as good as restored
+						sIsRestored = true;
+					} catch (JSONException e) {
+						errorMessage = e.getMessage();
+					}
+				}
+				final ScheduleIndex index = weeks == null ? null : build(weeks);
+				final String parsedJson = json, parsedHash = hash, message = errorMessage;
+				sHandler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						// Memory is not thread safe
+						if (parsedJson != null) {
+							Memory.setString(appContext, Constant.PREF_SCHEDULE_DATA, parsedJson);
+							Memory.setString(appContext, Constant.PREF_SCHEDULE_HASH, parsedHash);
+						}
+						if (callback == null) {
+							return;
+						}
+						if (index != null) {
+							callback.onSuccess(index);
+						} else {
+							callback.onFail(message);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	private static void postUnchanged(final ScheduleCallback callback) {
+		sHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				if (callback != null) {
+					callback.onUnchanged();
+				}
+			}
+		});
+	}
+
+	private static String hash(String data) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1")
+					.digest(data.getBytes(Charset.forName("UTF-8")));
+			StringBuilder builder = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+						.append(Character.forDigit(b & 0xf, 16));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every Android device has SHA-1
+			return String.valueOf(data.hashCode());
+		}
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (sExecutor == null) {
+			sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					return new Thread(new Runnable() {
+
+						@Override
+						public void run() {
+							Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+							r.run();
+						}
+					}, "Schedule");
+				}
+			});
+		}
+		return sExecutor;
+	}
+
+	private static List<ScheduleModel> restore(Context context) {
+		String json = Memory.getString(context, Constant.PREF_SCHEDULE_DATA, null);
+		if (json == null) {
+			return null;
+		}
+		try {
+			return new Gson().fromJson(json, new TypeToken<List<ScheduleModel>>() {
+
+			}.getType());
+		} catch (JsonSyntaxException e) {
+			AlarmHelper.logGsonError("Schedule Load", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @param today decides the academic year the first event falls in
+	 */
+	public static List<ScheduleModel> parse(String data, Calendar today) throws JSONException {
+		JSONArray jsonArray = new JSONArray(data.trim());
+		List<ScheduleModel> weeks = new ArrayList<>(jsonArray.length());
+		int year = NONE, lastMonthDay = 0;
+		for (int i = 0; i < jsonArray.length(); i++) {
+			JSONObject weekObject = jsonArray.getJSONObject(i);
+			JSONArray eventArray = weekObject.getJSONArray("events");
+			List<ScheduleEventModel> events = new ArrayList<>(eventArray.length());
+			for (int j = 0; j < eventArray.length(); j++) {
+				String text = eventArray.getString(j);
+				// "(9/11~9/15) event" or "(9/11) event"
+				int close = text.startsWith("(") ? text.indexOf(") ") : -1;
+				if (close < 0) {
+					events.add(new ScheduleEventModel(text, text, TimeParser.INVALID,
+							TimeParser.INVALID));
+					continue;
+				}
+				int tilde = text.lastIndexOf('~', close);
+				int startMonthDay = TimeParser.parseMonthDay(text, 1, tilde < 0 ? close : tilde);
+				int endMonthDay = tilde < 0 ? startMonthDay :
+						TimeParser.parseMonthDay(text, tilde + 1, close);
+				String title = text.substring(close + 2);
+				if (startMonthDay == TimeParser.INVALID || endMonthDay == TimeParser.INVALID) {
+					events.add(new ScheduleEventModel(text, title, TimeParser.INVALID,
+							TimeParser.INVALID));
+					continue;
+				}
+
+				if (year == NONE) {
+					year = today.get(Calendar.YEAR);
+					if (startMonthDay / 100 - 1 >= FALL_MONTH &&
+							today.get(Calendar.MONTH) < FALL_MONTH) {
+						year--;
+					}
+				} else if (lastMonthDay - startMonthDay > YEAR_BACK) {
+					// Overlapping events may go back a little, a new year goes back a lot
+					year++;
+				}
+				lastMonthDay = startMonthDay;
+				int endYear = endMonthDay < startMonthDay ? year + 1 : year;
+				events.add(new ScheduleEventModel(text, title, toMillis(year, startMonthDay, false),
+						toMillis(endYear, endMonthDay, true)));
+			}
+			weeks.add(new ScheduleModel(weekObject.getString("week"), events));
+		}
+		return weeks;
+	}
+
+	private static long toMillis(int year, int monthDay, boolean isEndOfDay) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		if (isEndOfDay) {
+			calendar.set(year, monthDay / 100 - 1, monthDay % 100, 23, 59, 59);
+		} else {
+			calendar.set(year, monthDay / 100 - 1, monthDay % 100, 0, 0, 0);
+		}
+		return calendar.getTimeInMillis();
+	}
+
+	public List<ScheduleModel> getWeeks() {
+		return mWeeks;
+	}
+
+	public int getCount() {
+		return mTexts.length;
+	}
+
+	public boolean isHeader(int row) {
+		return mEvents[row] == null;
+	}
+
+	public String getText(int row) {
+		return mTexts[row];
+	}
+
+	/**
+	 * @return the event at row, null for a week header
+	 */
+	public ScheduleEventModel getEvent(int row) {
+		return mEvents[row];
+	}
+
+	/**
+	 * @return the row of the first event in the list not over at millis, {@link #NONE} if all are
+	 */
+	public int findFirstUpcoming(long millis) {
+		int low = 0, high = mEndMillis.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (mEndMillis[mid] < millis) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < mEndMillis.length ? mFirstRows[low] : NONE;
+	}
+}
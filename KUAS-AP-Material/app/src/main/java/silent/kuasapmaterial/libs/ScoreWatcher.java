@@ -0,0 +1,357 @@
+package silent.kuasapmaterial.libs;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import com.google.gson.JsonSyntaxException;
+import com.kuas.ap.R;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import silent.kuasapmaterial.ScoreWatchJobService;
+import silent.kuasapmaterial.ScoreWatchService;
+import silent.kuasapmaterial.callback.GeneralCallback;
+import silent.kuasapmaterial.callback.ScoreCallback;
+import silent.kuasapmaterial.callback.SemesterCallback;
+import silent.kuasapmaterial.models.ScoreDetailModel;
+import silent.kuasapmaterial.models.ScoreModel;
+import silent.kuasapmaterial.models.ScoreWatchModel;
+import silent.kuasapmaterial.models.SemesterModel;
+
+/**
+ * Checks the scores of the current semester in the background and notifies the courses whose
+ * grades changed, so grading week needs no pull to refresh.
+ * <p>
+ * Each course is kept as a hash of its grades. The scores are requested with the ETag of the last
+ * ones and a 304 ends the check. The delay before the next check doubles after every check
+ * without a change, up to {@link #MAX_INTERVAL}, and goes back to {@link #MIN_INTERVAL} after a
+ * change.
+ * <p>
+ * From API 21 the checks are jobs of {@link ScoreWatchJobService}, run once a network is
+ * connected, a failed check is retried with the exponential backoff of the job scheduler. A
+ * service started by an alarm is refused in the background from API 26. Before API 21 an alarm
+ * starts {@link ScoreWatchService}, it doesn't wake the device up, a check is only made once it
+ * is awake anyway.
+ * <p>
+ * Only the logged in account is watched, {@link #cancel} stops at logout and the snapshot of
+ * another account is dropped at the next check.
+ * <p>
+ * Must only be used from the main thread.
+ */
+
+public class ScoreWatcher {
+
+	private static final long MIN_INTERVAL = 30 * 60 * 1000L;
+	private static final long MAX_INTERVAL = AlarmManager.INTERVAL_DAY;
+	// The current semester is asked again after this long
+	private static final long SEMESTER_TTL = AlarmManager.INTERVAL_DAY;
+	private static final int REQUEST_CODE = 0;
+	private static final int JOB_ID = 1;
+
+	public static void setEnabled(Context context, boolean isEnabled) {
+		Memory.setBoolean(context, Constant.PREF_SCORE_NOTIFY, isEnabled);
+		if (isEnabled) {
+			ScoreWatchModel model = load(context);
+			model.intervalMillis = MIN_INTERVAL;
+			save(context, model);
+			schedule(context);
+		} else {
+			cancel(context);
+			// Turned on again later, the snapshot would be stale
+			save(context, new ScoreWatchModel());
+		}
+	}
+
+	/**
+	 * Schedule the next check if enabled and logged in, e.g. after a check, a login or a reboot
+	 */
+	public static void schedule(Context context) {
+		if (!Memory.getBoolean(context, Constant.PREF_SCORE_NOTIFY, false) ||
+				!Memory.getBoolean(context, Constant.PREF_IS_LOGIN, false)) {
+			return;
+		}
+		long intervalMillis = Math.max(MIN_INTERVAL, load(context).intervalMillis);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			scheduleJob(context, intervalMillis);
+			return;
+		}
+		AlarmManager alarm = (AlarmManager) context.getSystemService(Service.ALARM_SERVICE);
+		alarm.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + intervalMillis,
+				getPendingIntent(context));
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static void scheduleJob(Context context, long intervalMillis) {
+		JobScheduler jobScheduler =
+				(JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+		// Replaces the job scheduled before, persisted across reboots
+		jobScheduler.schedule(new JobInfo.Builder(JOB_ID,
+				new ComponentName(context, ScoreWatchJobService.class))
+				.setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+				.setMinimumLatency(intervalMillis)
+				.setBackoffCriteria(MIN_INTERVAL, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+				.setPersisted(true).build());
+	}
+
+	/**
+	 * Stop checking until {@link #schedule} is called again, e.g. at logout
+	 */
+	public static void cancel(Context context) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			JobScheduler jobScheduler =
+					(JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+			jobScheduler.cancel(JOB_ID);
+		}
+		AlarmManager alarm = (AlarmManager) context.getSystemService(Service.ALARM_SERVICE);
+		alarm.cancel(getPendingIntent(context));
+	}
+
+	private static PendingIntent getPendingIntent(Context context) {
+		Intent intent = new Intent(context, ScoreWatchService.class);
+		return PendingIntent
+				.getService(context, REQUEST_CODE, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+	}
+
+	/**
+	 * Scores shown to the user need no notification, take them as the snapshot if they are of
+	 * the watched semester
+	 */
+	public static void onScoresShown(Context context, String semester, List<ScoreModel> scores) {
+		if (!Memory.getBoolean(context, Constant.PREF_SCORE_NOTIFY, false)) {
+			return;
+		}
+		ScoreWatchModel model = load(context);
+		if (TextUtils.equals(model.semester, semester)) {
+			model.hashes = hash(scores);
+			// The ETag is of other scores perhaps
+			model.eTag = null;
+			save(context, model);
+		}
+	}
+
+	/**
+	 * Check the scores once, callback gets onSuccess when done, onFail if the scores couldn't be
+	 * checked. The caller schedules the next check or retries.
+	 */
+	public static void check(Context context, final GeneralCallback callback) {
+		final Context appContext = context.getApplicationContext();
+		if (!Memory.getBoolean(appContext, Constant.PREF_IS_LOGIN, false)) {
+			// Logged out since the check was scheduled, schedule won't set another one
+			finish(appContext, null, false, callback, "Logged out");
+			return;
+		}
+		if (Helper.hasCredentials()) {
+			checkSemester(appContext, callback);
+			return;
+		}
+
+		String user = Memory.getString(appContext, Constant.PREF_USERNAME, "");
+		String pwd = Utils.decryptPassword(appContext);
+		if (user.length() == 0 || pwd.length() == 0) {
+			// Not remembered, wait for the user to login
+			finish(appContext, null, false, callback, "No credentials");
+			return;
+		}
+		Helper.login(appContext, user, pwd, new GeneralCallback() {
+
+			@Override
+			public void onSuccess() {
+				super.onSuccess();
+				checkSemester(appContext, callback);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				finish(appContext, null, false, callback, errorMessage);
+			}
+		});
+	}
+
+	private static void checkSemester(final Context context, final GeneralCallback callback) {
+		final ScoreWatchModel model = load(context);
+		if (model.semester != null &&
+				System.currentTimeMillis() - model.semesterMillis < SEMESTER_TTL) {
+			checkScores(context, model, callback);
+			return;
+		}
+		Helper.getSemester(context, new SemesterCallback() {
+
+			@Override
+			public void onSuccess(List<SemesterModel> modelList, SemesterModel selectedModel) {
+				super.onSuccess(modelList, selectedModel);
+
+				if (!TextUtils.equals(model.semester, selectedModel.value)) {
+					// A new semester, its first scores are the snapshot
+					model.semester = selectedModel.value;
+					model.eTag = null;
+					model.hashes = null;
+				}
+				model.semesterMillis = System.currentTimeMillis();
+				checkScores(context, model, callback);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				finish(context, model, false, callback, errorMessage);
+			}
+
+			@Override
+			public void onTokenExpired() {
+				super.onTokenExpired();
+				finish(context, model, false, callback, "Token expired");
+			}
+		});
+	}
+
+	private static void checkScores(final Context context, final ScoreWatchModel model,
+	                                final GeneralCallback callback) {
+		String[] value = model.semester.split(",");
+		if (value.length < 2) {
+			finish(context, model, false, callback, "Malformed semester " + model.semester);
+			return;
+		}
+		// Without a snapshot a 304 would leave nothing to compare with
+		String eTag = model.hashes == null ? null : model.eTag;
+		Helper.getScoreTimeTable(context, value[0], value[1], eTag, new ScoreCallback() {
+
+			@Override
+			public void onSuccess(List<ScoreModel> modelList, ScoreDetailModel scoreDetailModel,
+			                      String eTag) {
+				super.onSuccess(modelList, scoreDetailModel, eTag);
+
+				Map<String, Integer> hashes = hash(modelList);
+				boolean isChanged = false;
+				if (model.hashes != null) {
+					List<String> lines = getChangedLines(context, model.hashes, modelList);
+					if (lines.size() > 0) {
+						isChanged = true;
+						NotificationHelper.createNotification(context,
+								context.getString(R.string.score_notify_title),
+								TextUtils.join("\n", lines), Constant.NOTIFICATION_SCORE_ID);
+					}
+				}
+				model.hashes = hashes;
+				model.eTag = eTag;
+				finish(context, model, isChanged, callback, null);
+			}
+
+			@Override
+			public void onNotModified() {
+				super.onNotModified();
+				finish(context, model, false, callback, null);
+			}
+
+			@Override
+			public void onFail(String errorMessage) {
+				super.onFail(errorMessage);
+				finish(context, model, false, callback, errorMessage);
+			}
+
+			@Override
+			public void onTokenExpired() {
+				super.onTokenExpired();
+				finish(context, model, false, callback, "Token expired");
+			}
+		});
+	}
+
+	/**
+	 * @return a line for each course whose grades are not those of hashes
+	 */
+	private static List<String> getChangedLines(Context context, Map<String, Integer> hashes,
+	                                            List<ScoreModel> modelList) {
+		List<String> lines = new ArrayList<>();
+		Map<String, Integer> keyCounts = new HashMap<>();
+		for (ScoreModel model : modelList) {
+			Integer oldHash = hashes.get(getKey(keyCounts, model));
+			boolean hasGrade = !TextUtils.isEmpty(model.middle_score) ||
+					!TextUtils.isEmpty(model.final_score);
+			// A course new to the semester only counts once it has a grade
+			if (oldHash == null ? hasGrade : oldHash != hash(model)) {
+				lines.add(context.getString(R.string.score_notify_content, model.title,
+						model.middle_score, model.final_score));
+			}
+		}
+		return lines;
+	}
+
+	private static Map<String, Integer> hash(List<ScoreModel> modelList) {
+		Map<String, Integer> hashes = new HashMap<>();
+		Map<String, Integer> keyCounts = new HashMap<>();
+		for (ScoreModel model : modelList) {
+			hashes.put(getKey(keyCounts, model), hash(model));
+		}
+		return hashes;
+	}
+
+	private static int hash(ScoreModel model) {
+		return (model.middle_score + "|" + model.final_score + "|" + model.remark).hashCode();
+	}
+
+	/**
+	 * @return the title, with the count of the courses of the same title before it if any
+	 */
+	private static String getKey(Map<String, Integer> keyCounts, ScoreModel model) {
+		String title = model.title == null ? "" : model.title;
+		Integer count = keyCounts.get(title);
+		keyCounts.put(title, count == null ? 1 : count + 1);
+		return count == null ? title : title + "#" + count;
+	}
+
+	private static void finish(Context context, ScoreWatchModel model, boolean isChanged,
+	                           GeneralCallback callback, String errorMessage) {
+		if (model == null) {
+			model = load(context);
+		}
+		model.intervalMillis = isChanged ? MIN_INTERVAL :
+				Math.min(MAX_INTERVAL, Math.max(MIN_INTERVAL, model.intervalMillis * 2));
+		save(context, model);
+		if (callback == null) {
+			return;
+		}
+		if (errorMessage == null) {
+			callback.onSuccess();
+		} else {
+			callback.onFail(errorMessage);
+		}
+	}
+
+	private static ScoreWatchModel load(Context context) {
+		ScoreWatchModel model = null;
+		try {
+			model = (ScoreWatchModel) Memory
+					.getObject(context, Constant.PREF_SCORE_WATCH_DATA, ScoreWatchModel.class);
+		} catch (JsonSyntaxException e) {
+			AlarmHelper.logGsonError("Score Watch Load", e);
+		}
+		String user = Memory.getString(context, Constant.PREF_USERNAME, "");
+		if (model == null || !user.equals(model.user)) {
+			// Another account logged in, its first scores are the snapshot
+			model = new ScoreWatchModel();
+			model.user = user;
+		}
+		if (model.intervalMillis <= 0) {
+			model.intervalMillis = MIN_INTERVAL;
+		}
+		return model;
+	}
+
+	private static void save(Context context, ScoreWatchModel model) {
+		Memory.setObject(context, Constant.PREF_SCORE_WATCH_DATA, model);
+	}
+}
@@ -0,0 +1,140 @@
+package silent.kuasapmaterial.libs;
+
+import java.util.Date;
+
+import cz.msebera.android.httpclient.Header;
+import cz.msebera.android.httpclient.HttpRequest;
+import cz.msebera.android.httpclient.HttpRequestInterceptor;
+import cz.msebera.android.httpclient.HttpResponse;
+import cz.msebera.android.httpclient.HttpResponseInterceptor;
+import cz.msebera.android.httpclient.client.utils.DateUtils;
+import cz.msebera.android.httpclient.impl.client.DefaultHttpClient;
+import cz.msebera.android.httpclient.protocol.HttpContext;
+
+/**
+ * Estimates how far the server clock is ahead of the device clock from the Date header of the
+ * responses.
+ * <p>
+ * A Date header only has seconds, but the server read it between sending the request and
+ * receiving the response, so each response bounds the offset to [date - received, date + 1s -
+ * sent]. The bounds of the recent responses are intersected, the estimate is the middle of the
+ * intersection and gets more precise as responses come in. Bounds that don't intersect mean a
+ * clock was set, the older ones are then dropped.
+ * <p>
+ * Thread safe, the samples are taken on the network threads.
+ */
+
+public class ServerClock {
+
+	private static final String ATTRIBUTE_SENT = "silent.kuasapmaterial.sent";
+	private static final int MAX_SAMPLES = 8;
+	private static final long DATE_RESOLUTION = 1000;
+
+	// Ring of the recent bounds, newest at sNext - 1
+	private static final long[] sLowers = new long[MAX_SAMPLES];
+	private static final long[] sUppers = new long[MAX_SAMPLES];
+	private static int sCount = 0, sNext = 0;
+	private static long sLastRoundTrip = -1;
+
+	/**
+	 * Take a sample from every response of client
+	 */
+	static void attach(DefaultHttpClient client) {
+		client.addRequestInterceptor(new HttpRequestInterceptor() {
+
+			@Override
+			public void process(HttpRequest request, HttpContext context) {
+				// Interceptors run once connected, the handshake is not counted
+				context.setAttribute(ATTRIBUTE_SENT, System.currentTimeMillis());
+			}
+		});
+		client.addResponseInterceptor(new HttpResponseInterceptor() {
+
+			@Override
+			public void process(HttpResponse response, HttpContext context) {
+				long received = System.currentTimeMillis();
+				Object sent = context.getAttribute(ATTRIBUTE_SENT);
+				Header header = response.getFirstHeader("Date");
+				if (!(sent instanceof Long) || header == null) {
+					return;
+				}
+				Date date = DateUtils.parseDate(header.getValue());
+				if (date != null) {
+					addSample((Long) sent, received, date.getTime());
+				}
+			}
+		});
+	}
+
+	static synchronized void addSample(long sent, long received, long serverMillis) {
+		if (received < sent) {
+			// The device clock was set in between
+			return;
+		}
+		sLowers[sNext] = serverMillis - received;
+		sUppers[sNext] = serverMillis + DATE_RESOLUTION - sent;
+		sNext = (sNext + 1) % MAX_SAMPLES;
+		sCount = Math.min(sCount + 1, MAX_SAMPLES);
+		sLastRoundTrip = received - sent;
+	}
+
+	/**
+	 * @return whether any response had a Date header yet
+	 */
+	public static synchronized boolean hasSample() {
+		return sCount > 0;
+	}
+
+	/**
+	 * @return server time minus device time in millis, 0 without any sample
+	 */
+	public static synchronized long getOffset() {
+		long[] bounds = intersect();
+		return bounds == null ? 0 : bounds[0] + (bounds[1] - bounds[0]) / 2;
+	}
+
+	/**
+	 * @return the uncertainty of {@link #getOffset} in millis either way, -1 without any sample
+	 */
+	public static synchronized long getError() {
+		long[] bounds = intersect();
+		return bounds == null ? -1 : (bounds[1] - bounds[0]) / 2;
+	}
+
+	/**
+	 * @return the lower and upper bounds of the offset, null without any sample
+	 */
+	private static long[] intersect() {
+		if (sCount == 0) {
+			return null;
+		}
+		long lower = Long.MIN_VALUE, upper = Long.MAX_VALUE;
+		for (int i = 1; i <= sCount; i++) {
+			int index = (sNext - i + MAX_SAMPLES) % MAX_SAMPLES;
+			long newLower = Math.max(lower, sLowers[index]);
+			long newUpper = Math.min(upper, sUppers[index]);
+			if (newLower > newUpper) {
+				// Older than a clock change, drop this one and the rest
+				sCount = i - 1;
+				break;
+			}
+			lower = newLower;
+			upper = newUpper;
+		}
+		return new long[]{lower, upper};
+	}
+
+	/**
+	 * @return the round trip of the last response in millis, -1 without any sample
+	 */
+	public static synchronized long getLastRoundTrip() {
+		return sLastRoundTrip;
+	}
+
+	/**
+	 * @return the device time in millis when the server clock reads serverMillis
+	 */
+	public static long toLocal(long serverMillis) {
+		return serverMillis - getOffset();
+	}
+}
@@ -0,0 +1,207 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the app's initializers off the critical path of a cold start.
+ * <p>
+ * Critical initializers start on a background thread as soon as the process starts, the rest
+ * wait until the main thread is first idle (after the first frame when an activity is
+ * launching). Anything that needs an initializer before that calls {@link #ensure}, which runs
+ * it, and its dependencies, on the calling thread if it hasn't run yet.
+ */
+
+public class Startup {
+
+	private static final List<Initializer> sInitializers = new ArrayList<>();
+	private static final Map<String, Long> sTimings = new LinkedHashMap<>();
+	private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+	private static final List<Runnable> sCriticalListeners = new ArrayList<>();
+	private static ExecutorService sExecutor;
+	private static Context sContext;
+	private static int sPendingCritical = 0;
+
+	public static abstract class Initializer {
+
+		final String name;
+		final boolean isCritical;
+		final String[] dependencies;
+		private boolean isDone = false;
+
+		/**
+		 * @param name         unique name, used by {@link #ensure} and dependencies
+		 * @param isCritical   true if the first screen can't be shown before it ran
+		 * @param dependencies names of initializers that must run first
+		 */
+		public Initializer(String name, boolean isCritical, String... dependencies) {
+			this.name = name;
+			this.isCritical = isCritical;
+			this.dependencies = dependencies;
+		}
+
+		protected abstract void run(Context context);
+
+		synchronized boolean runOnce(Context context) {
+			if (isDone) {
+				return false;
+			}
+			for (String dependency : dependencies) {
+				ensure(dependency);
+			}
+			long start = SystemClock.uptimeMillis();
+			try {
+				run(context);
+			} catch (Exception e) {
+				// Never block the critical path on a broken SDK, users of it fail on their own
+				Log.e(Constant.TAG, "Startup " + name + " failed", e);
+			}
+			long time = SystemClock.uptimeMillis() - start;
+			isDone = true;
+			synchronized (sTimings) {
+				sTimings.put(name, time);
+			}
+			Log.d(Constant.TAG, "Startup " + name + " took " + time + "ms on " +
+					Thread.currentThread().getName());
+			return true;
+		}
+
+		synchronized boolean isDone() {
+			return isDone;
+		}
+	}
+
+	/**
+	 * Register an initializer, must be called before {@link #start}
+	 */
+	public static void register(Initializer initializer) {
+		sInitializers.add(initializer);
+		if (initializer.isCritical) {
+			sPendingCritical++;
+		}
+	}
+
+	public static void start(Context context) {
+		sContext = context.getApplicationContext();
+		sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				return new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+						runnable.run();
+					}
+				}, "Startup");
+			}
+		});
+
+		for (Initializer initializer : sInitializers) {
+			if (initializer.isCritical) {
+				submit(initializer);
+			}
+		}
+		Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+
+			@Override
+			public boolean queueIdle() {
+				for (Initializer initializer : sInitializers) {
+					if (!initializer.isCritical) {
+						submit(initializer);
+					}
+				}
+				return false;
+			}
+		});
+	}
+
+	/**
+	 * Make sure the named initializer has run, running it on the calling thread if needed
+	 */
+	public static void ensure(String name) {
+		Initializer initializer = find(name);
+		if (initializer == null || sContext == null) {
+			return;
+		}
+		if (initializer.runOnce(sContext) && initializer.isCritical) {
+			onCriticalDone();
+		}
+	}
+
+	public static boolean isDone(String name) {
+		Initializer initializer = find(name);
+		return initializer != null && initializer.isDone();
+	}
+
+	/**
+	 * Run the listener on the main thread once every critical initializer has run
+	 */
+	public static void runWhenCriticalReady(Runnable listener) {
+		synchronized (sCriticalListeners) {
+			if (sPendingCritical > 0) {
+				sCriticalListeners.add(listener);
+				return;
+			}
+		}
+		sMainHandler.post(listener);
+	}
+
+	/**
+	 * @return initializer name to its run time in milliseconds, in completion order
+	 */
+	public static Map<String, Long> getTimings() {
+		synchronized (sTimings) {
+			return new LinkedHashMap<>(sTimings);
+		}
+	}
+
+	private static Initializer find(String name) {
+		for (Initializer initializer : sInitializers) {
+			if (initializer.name.equals(name)) {
+				return initializer;
+			}
+		}
+		return null;
+	}
+
+	private static void submit(final Initializer initializer) {
+		sExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (initializer.runOnce(sContext) && initializer.isCritical) {
+					onCriticalDone();
+				}
+			}
+		});
+	}
+
+	private static void onCriticalDone() {
+		List<Runnable> listeners;
+		synchronized (sCriticalListeners) {
+			if (--sPendingCritical > 0) {
+				return;
+			}
+			listeners = new ArrayList<>(sCriticalListeners);
+			sCriticalListeners.clear();
+		}
+		for (Runnable listener : listeners) {
+			sMainHandler.post(listener);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package silent.kuasapmaterial.libs;
+
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the header of the section at the top of a vertical {@link RecyclerView} drawn over it,
+ * pushed up by the next header. The header is a view holder of the adapter, created once and
+ * bound again only when the section changes.
+ * <p>
+ * Header positions are collected into a table whenever the adapter data changes, finding the
+ * section of a position is then a binary search. Taps on the drawn header are swallowed, so
+ * they don't reach the item below it.
+ */
+
+public class StickyHeaderDecoration extends RecyclerView.ItemDecoration
+		implements RecyclerView.OnItemTouchListener {
+
+	private final RecyclerView mRecyclerView;
+	private final RecyclerView.Adapter mAdapter;
+	private final StickyHeaderAdapter mHeaderAdapter;
+	private final int mTouchSlop;
+
+	private int[] mHeaderPositions = new int[0];
+	private boolean isTableValid = false;
+
+	private RecyclerView.ViewHolder mHeaderHolder;
+	private int mHeaderPosition = RecyclerView.NO_POSITION;
+	// Where the header was drawn last, to catch taps on it
+	private int mHeaderBottom = -1;
+
+	private boolean isHeaderTouched = false;
+	private float mDownX, mDownY;
+
+	private final RecyclerView.AdapterDataObserver mObserver =
+			new RecyclerView.AdapterDataObserver() {
+
+				@Override
+				public void onChanged() {
+					invalidate();
+				}
+
+				@Override
+				public void onItemRangeChanged(int positionStart, int itemCount) {
+					invalidate();
+				}
+
+				@Override
+				public void onItemRangeInserted(int positionStart, int itemCount) {
+					invalidate();
+				}
+
+				@Override
+				public void onItemRangeRemoved(int positionStart, int itemCount) {
+					invalidate();
+				}
+
+				@Override
+				public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+					invalidate();
+				}
+			};
+
+	public interface StickyHeaderAdapter {
+
+		boolean isHeader(int position);
+	}
+
+	/**
+	 * Draws the headers of the adapter of recyclerView, which must implement
+	 * {@link StickyHeaderAdapter}
+	 */
+	public StickyHeaderDecoration(RecyclerView recyclerView) {
+		if (!(recyclerView.getAdapter() instanceof StickyHeaderAdapter)) {
+			throw new IllegalArgumentException("Adapter must implement StickyHeaderAdapter");
+		}
+		mRecyclerView = recyclerView;
+		mAdapter = recyclerView.getAdapter();
+		mHeaderAdapter = (StickyHeaderAdapter) mAdapter;
+		mTouchSlop = ViewConfiguration.get(recyclerView.getContext()).getScaledTouchSlop();
+		mAdapter.registerAdapterDataObserver(mObserver);
+		recyclerView.addItemDecoration(this);
+		recyclerView.addOnItemTouchListener(this);
+	}
+
+	public void detach() {
+		mAdapter.unregisterAdapterDataObserver(mObserver);
+		mRecyclerView.removeItemDecoration(this);
+		mRecyclerView.removeOnItemTouchListener(this);
+	}
+
+	/**
+	 * @return the position of the header of the section holding position, or
+	 * {@link RecyclerView#NO_POSITION} if it comes before the first header
+	 */
+	public int getHeaderPosition(int position) {
+		int[] headerPositions = getHeaderPositions();
+		int index = Arrays.binarySearch(headerPositions, position);
+		if (index < 0) {
+			// Insertion point - 1 is the last header before position
+			index = -index - 2;
+		}
+		return index < 0 ? RecyclerView.NO_POSITION : headerPositions[index];
+	}
+
+	private int getNextHeaderPosition(int headerPosition) {
+		int[] headerPositions = getHeaderPositions();
+		int index = Arrays.binarySearch(headerPositions, headerPosition);
+		return index >= 0 && index + 1 < headerPositions.length ? headerPositions[index + 1] :
+				RecyclerView.NO_POSITION;
+	}
+
+	private int[] getHeaderPositions() {
+		if (!isTableValid) {
+			int count = mAdapter.getItemCount();
+			int[] positions = new int[count];
+			int size = 0;
+			for (int i = 0; i < count; i++) {
+				if (mHeaderAdapter.isHeader(i)) {
+					positions[size++] = i;
+				}
+			}
+			mHeaderPositions = Arrays.copyOf(positions, size);
+			isTableValid = true;
+		}
+		return mHeaderPositions;
+	}
+
+	private void invalidate() {
+		isTableValid = false;
+		// The header content may have changed too
+		mHeaderPosition = RecyclerView.NO_POSITION;
+	}
+
+	@Override
+	public void onDrawOver(@NonNull Canvas c, @NonNull RecyclerView parent,
+	                       @NonNull RecyclerView.State state) {
+		mHeaderBottom = -1;
+		View firstChild = parent.getChildAt(0);
+		if (firstChild == null) {
+			return;
+		}
+		int position = parent.getChildAdapterPosition(firstChild);
+		if (position == RecyclerView.NO_POSITION) {
+			return;
+		}
+		int headerPosition = getHeaderPosition(position);
+		if (headerPosition == RecyclerView.NO_POSITION ||
+				(headerPosition == position && firstChild.getTop() >= parent.getPaddingTop())) {
+			// The header is in its place anyway
+			return;
+		}
+
+		View header = getHeaderView(parent, headerPosition);
+		int top = parent.getPaddingTop();
+		int nextHeaderPosition = getNextHeaderPosition(headerPosition);
+		if (nextHeaderPosition != RecyclerView.NO_POSITION) {
+			RecyclerView.ViewHolder nextHolder =
+					parent.findViewHolderForAdapterPosition(nextHeaderPosition);
+			if (nextHolder != null) {
+				top = Math.min(top, nextHolder.itemView.getTop() - header.getHeight());
+			}
+		}
+
+		c.save();
+		c.translate(parent.getPaddingLeft(), top);
+		header.draw(c);
+		c.restore();
+		mHeaderBottom = top + header.getHeight();
+	}
+
+	private View getHeaderView(RecyclerView parent, int headerPosition) {
+		int viewType = mAdapter.getItemViewType(headerPosition);
+		if (mHeaderHolder == null || mHeaderHolder.getItemViewType() != viewType) {
+			mHeaderHolder = mAdapter.createViewHolder(parent, viewType);
+			mHeaderPosition = RecyclerView.NO_POSITION;
+		}
+		View header = mHeaderHolder.itemView;
+		int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+		if (headerPosition != mHeaderPosition || header.getWidth() != width) {
+			//noinspection unchecked
+			mAdapter.bindViewHolder(mHeaderHolder, headerPosition);
+			mHeaderPosition = headerPosition;
+
+			ViewGroup.LayoutParams layoutParams = header.getLayoutParams();
+			int heightSpec = layoutParams != null && layoutParams.height > 0 ?
+					View.MeasureSpec.makeMeasureSpec(layoutParams.height,
+							View.MeasureSpec.EXACTLY) :
+					View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+			header.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+					heightSpec);
+			header.layout(0, 0, header.getMeasuredWidth(), header.getMeasuredHeight());
+		}
+		return header;
+	}
+
+	@Override
+	public boolean onInterceptTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+		switch (e.getActionMasked()) {
+			case MotionEvent.ACTION_DOWN:
+				isHeaderTouched = e.getY() < mHeaderBottom;
+				mDownX = e.getX();
+				mDownY = e.getY();
+				break;
+			case MotionEvent.ACTION_MOVE:
+				if (Math.abs(e.getX() - mDownX) > mTouchSlop ||
+						Math.abs(e.getY() - mDownY) > mTouchSlop) {
+					// A scroll, let the list have it
+					isHeaderTouched = false;
+				}
+				break;
+			case MotionEvent.ACTION_UP:
+				// Intercepting cancels the click of the item below
+				return isHeaderTouched;
+			case MotionEvent.ACTION_CANCEL:
+				isHeaderTouched = false;
+				break;
+		}
+		return false;
+	}
+
+	@Override
+	public void onTouchEvent(@NonNull RecyclerView rv, @NonNull MotionEvent e) {
+		isHeaderTouched = false;
+	}
+
+	@Override
+	public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+	}
+}
@@ -0,0 +1,33 @@
+package silent.kuasapmaterial.libs;
+
+import java.util.HashMap;
+
+/**
+ * Share one instance of strings that repeat across models (buildings, rooms, instructors,
+ * stations), without pinning them in the VM-wide {@link String#intern()} table.
+ */
+
+public class StringPool {
+
+	private static final int MAX_SIZE = 2048;
+	private static final HashMap<String, String> sPool = new HashMap<>();
+
+	public static synchronized String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String pooled = sPool.get(value);
+		if (pooled != null) {
+			return pooled;
+		}
+		if (sPool.size() >= MAX_SIZE) {
+			sPool.clear();
+		}
+		sPool.put(value, value);
+		return value;
+	}
+
+	public static synchronized void clear() {
+		sPool.clear();
+	}
+}
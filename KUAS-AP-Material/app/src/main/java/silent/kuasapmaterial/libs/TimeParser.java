@@ -0,0 +1,169 @@
+package silent.kuasapmaterial.libs;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Allocation-free parsers for the time strings returned by the AP server.
+ * Every method returns {@link #INVALID} when the input is malformed.
+ */
+
+public class TimeParser {
+
+	public static final int INVALID = -1;
+
+	private static final long MINUTE_MILLIS = 60 * 1000L;
+	private static final long DAY_MILLIS = 24 * 60 * MINUTE_MILLIS;
+
+	/**
+	 * Parse "HH:mm" into minutes of day, e.g. "08:10" -> 490.
+	 */
+	public static int parseMinuteOfDay(CharSequence text) {
+		return text == null ? INVALID : parseMinuteOfDay(text, 0, text.length());
+	}
+
+	public static int parseMinuteOfDay(CharSequence text, int start, int end) {
+		int pos = skipSpaces(text, start, end);
+		int hourEnd = scanDigits(text, pos, end);
+		if (hourEnd == pos || hourEnd >= end || text.charAt(hourEnd) != ':') {
+			return INVALID;
+		}
+		int minuteEnd = scanDigits(text, hourEnd + 1, end);
+		if (minuteEnd == hourEnd + 1) {
+			return INVALID;
+		}
+		int hour = toInt(text, pos, hourEnd);
+		int minute = toInt(text, hourEnd + 1, minuteEnd);
+		if (hour > 23 || minute > 59) {
+			return INVALID;
+		}
+		return hour * 60 + minute;
+	}
+
+	/**
+	 * Parse "yyyy-MM-dd HH:mm[:ss]" in the default time zone into epoch millis.
+	 */
+	public static long parseDateTime(CharSequence text) {
+		return parseDateTime(text, TimeZone.getDefault());
+	}
+
+	public static long parseDateTime(CharSequence text, TimeZone timeZone) {
+		if (text == null) {
+			return INVALID;
+		}
+		int end = text.length();
+		int pos = skipSpaces(text, 0, end);
+
+		int yearEnd = scanDigits(text, pos, end);
+		if (yearEnd == pos || yearEnd >= end || text.charAt(yearEnd) != '-') {
+			return INVALID;
+		}
+		int monthEnd = scanDigits(text, yearEnd + 1, end);
+		if (monthEnd == yearEnd + 1 || monthEnd >= end || text.charAt(monthEnd) != '-') {
+			return INVALID;
+		}
+		int dayEnd = scanDigits(text, monthEnd + 1, end);
+		if (dayEnd == monthEnd + 1) {
+			return INVALID;
+		}
+		int timeStart = skipSpaces(text, dayEnd, end);
+		if (timeStart == dayEnd) {
+			return INVALID;
+		}
+		int minuteOfDay = parseMinuteOfDay(text, timeStart, end);
+		if (minuteOfDay == INVALID) {
+			return INVALID;
+		}
+
+		int year = toInt(text, pos, yearEnd);
+		int month = toInt(text, yearEnd + 1, monthEnd);
+		int day = toInt(text, monthEnd + 1, dayEnd);
+		if (month < 1 || month > 12 || day < 1 || day > 31) {
+			return INVALID;
+		}
+		long local = daysFromCivil(year, month, day) * DAY_MILLIS + minuteOfDay * MINUTE_MILLIS;
+		return local - timeZone.getOffset(local - timeZone.getRawOffset());
+	}
+
+	/**
+	 * Parse "M/d" into month * 100 + day, e.g. "9/11" -> 911.
+	 */
+	public static int parseMonthDay(CharSequence text, int start, int end) {
+		if (text == null) {
+			return INVALID;
+		}
+		int pos = skipSpaces(text, start, end);
+		int monthEnd = scanDigits(text, pos, end);
+		if (monthEnd == pos || monthEnd >= end || text.charAt(monthEnd) != '/') {
+			return INVALID;
+		}
+		int dayEnd = scanDigits(text, monthEnd + 1, end);
+		if (dayEnd == monthEnd + 1) {
+			return INVALID;
+		}
+		int month = toInt(text, pos, monthEnd);
+		int day = toInt(text, monthEnd + 1, dayEnd);
+		if (month < 1 || month > 12 || day < 1 || day > 31) {
+			return INVALID;
+		}
+		return month * 100 + day;
+	}
+
+	/**
+	 * Convert the weekday index used by the course table (0 = Monday) into
+	 * {@link Calendar#DAY_OF_WEEK}.
+	 */
+	public static int toCalendarDayOfWeek(int weekdayIndex) {
+		return weekdayIndex == 6 ? Calendar.SUNDAY : weekdayIndex + 2;
+	}
+
+	/**
+	 * Next time (epoch millis, strictly after now) that dayOfWeek at minuteOfDay occurs.
+	 */
+	public static long nextWeeklyMillis(int dayOfWeek, int minuteOfDay) {
+		Calendar calendar = Calendar.getInstance();
+		long now = calendar.getTimeInMillis();
+		calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.MINUTE, minuteOfDay);
+		if (calendar.getTimeInMillis() < now) {
+			calendar.add(Calendar.DAY_OF_MONTH, 7);
+		}
+		return calendar.getTimeInMillis();
+	}
+
+	private static int skipSpaces(CharSequence text, int pos, int end) {
+		while (pos < end && text.charAt(pos) == ' ') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int scanDigits(CharSequence text, int pos, int end) {
+		while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+			pos++;
+		}
+		return pos;
+	}
+
+	private static int toInt(CharSequence text, int start, int end) {
+		int value = 0;
+		for (int i = start; i < end && i < start + 9; i++) {
+			value = value * 10 + (text.charAt(i) - '0');
+		}
+		return value;
+	}
+
+	// Howard Hinnant's days_from_civil, days since 1970-01-01
+	private static long daysFromCivil(int year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		int era = (year >= 0 ? year : year - 399) / 400;
+		int yoe = year - era * 400;
+		int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468;
+	}
+}
@@ -0,0 +1,231 @@
+package silent.kuasapmaterial.libs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import silent.kuasapmaterial.models.CourseModel;
+
+/**
+ * Compact, read-only index over a course table.
+ * Weekdays are indexed 0 (Monday) to 6 (Sunday), sections follow the "timecode" order of the
+ * server. Only the first 64 sections are indexed.
+ */
+
+public class TimetableIndex {
+
+	public static final int WEEKDAYS = 7;
+	public static final int MAX_SECTIONS = 64;
+	public static final int NONE = -1;
+
+	// Sections after "A" (index 10) are night classes, "A" itself is the B-type break section
+	private static final int B_SECTION = 10;
+	private static final long B_MASK = 1L << B_SECTION;
+	private static final long NIGHT_MASK = -1L << (B_SECTION + 1);
+
+	private final List<String> mSections;
+	private final int mSectionCount;
+	// weekday * mSectionCount + section -> course id, NONE if free
+	private final short[] mSlots;
+	private final CourseModel[] mCells;
+	// course id -> first model of that course
+	private final CourseModel[] mCourses;
+	// Per weekday bitset of occupied sections
+	private final long[] mOccupied = new long[WEEKDAYS];
+	// Per section minute boundaries, NONE if no course in that section
+	private final int[] mSectionStart;
+	private final int[] mSectionEnd;
+	// Sorted distinct start / end minutes of all sections
+	private final int[] mBoundaries;
+	private final int mDayMask;
+
+	public final boolean isHoliday, isNight, isHolidayNight, isB, isHolidayB;
+
+	private TimetableIndex(List<String> sections, List<List<CourseModel>> modelList) {
+		mSections = sections;
+		mSectionCount = Math.min(sections.size(), MAX_SECTIONS);
+		mSlots = new short[WEEKDAYS * mSectionCount];
+		mCells = new CourseModel[WEEKDAYS * mSectionCount];
+		mSectionStart = new int[mSectionCount];
+		mSectionEnd = new int[mSectionCount];
+		Arrays.fill(mSlots, (short) NONE);
+		Arrays.fill(mSectionStart, NONE);
+		Arrays.fill(mSectionEnd, NONE);
+
+		Map<String, Integer> courseIds = new HashMap<>();
+		CourseModel[] courses = new CourseModel[mSlots.length];
+		int dayMask = 0;
+		for (int i = 0; i < WEEKDAYS && i < modelList.size(); i++) {
+			List<CourseModel> dayList = modelList.get(i);
+			if (dayList == null) {
+				continue;
+			}
+			dayMask |= 1 << i;
+			for (int j = 0; j < mSectionCount && j < dayList.size(); j++) {
+				CourseModel model = dayList.get(j);
+				if (model == null) {
+					continue;
+				}
+				Integer id = courseIds.get(model.title);
+				if (id == null) {
+					id = courseIds.size();
+					courseIds.put(model.title, id);
+					courses[id] = model;
+				}
+				mSlots[i * mSectionCount + j] = (short) (int) id;
+				mCells[i * mSectionCount + j] = model;
+				mOccupied[i] |= 1L << j;
+				if (model.startMinute != TimeParser.INVALID &&
+						(mSectionStart[j] == NONE || model.startMinute < mSectionStart[j])) {
+					mSectionStart[j] = model.startMinute;
+				}
+				if (model.endMinute > mSectionEnd[j]) {
+					mSectionEnd[j] = model.endMinute;
+				}
+			}
+		}
+		mCourses = Arrays.copyOf(courses, courseIds.size());
+		mDayMask = dayMask;
+		mBoundaries = buildBoundaries(mSectionStart, mSectionEnd);
+
+		long weekdays = 0, weekend = 0;
+		for (int i = 0; i < WEEKDAYS; i++) {
+			if (i > 4) {
+				weekend |= mOccupied[i];
+			} else {
+				weekdays |= mOccupied[i];
+			}
+		}
+		isHoliday = (dayMask & 0x60) != 0;
+		isNight = (weekdays & NIGHT_MASK) != 0;
+		isB = (weekdays & B_MASK) != 0;
+		isHolidayNight = (weekend & NIGHT_MASK) != 0;
+		isHolidayB = (weekend & B_MASK) != 0;
+	}
+
+	public static TimetableIndex build(List<String> sections, List<List<CourseModel>> modelList) {
+		return new TimetableIndex(sections, modelList);
+	}
+
+	private static int[] buildBoundaries(int[] sectionStart, int[] sectionEnd) {
+		int[] boundaries = new int[sectionStart.length * 2];
+		int count = 0;
+		for (int i = 0; i < sectionStart.length; i++) {
+			if (sectionStart[i] != NONE) {
+				boundaries[count++] = sectionStart[i];
+			}
+			if (sectionEnd[i] != NONE) {
+				boundaries[count++] = sectionEnd[i];
+			}
+		}
+		Arrays.sort(boundaries, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || boundaries[distinct - 1] != boundaries[i]) {
+				boundaries[distinct++] = boundaries[i];
+			}
+		}
+		return Arrays.copyOf(boundaries, distinct);
+	}
+
+	public boolean isEmpty() {
+		return mDayMask == 0;
+	}
+
+	public List<String> getSections() {
+		return mSections;
+	}
+
+	public int getSectionCount() {
+		return mSectionCount;
+	}
+
+	public int getCourseCount() {
+		return mCourses.length;
+	}
+
+	public CourseModel getCourse(int courseId) {
+		return mCourses[courseId];
+	}
+
+	/**
+	 * @return the course id in the slot, {@link #NONE} if free
+	 */
+	public int getCourseId(int weekday, int section) {
+		if (!inRange(weekday, section)) {
+			return NONE;
+		}
+		return mSlots[weekday * mSectionCount + section];
+	}
+
+	public CourseModel get(int weekday, int section) {
+		return inRange(weekday, section) ? mCells[weekday * mSectionCount + section] : null;
+	}
+
+	public boolean isFree(int weekday, int section) {
+		return !inRange(weekday, section) || (mOccupied[weekday] & (1L << section)) == 0;
+	}
+
+	public boolean hasWeekday(int weekday) {
+		return weekday >= 0 && weekday < WEEKDAYS && (mDayMask & (1 << weekday)) != 0;
+	}
+
+	public long getOccupiedSections(int weekday) {
+		return weekday >= 0 && weekday < WEEKDAYS ? mOccupied[weekday] : 0;
+	}
+
+	public int getSectionStart(int section) {
+		return section >= 0 && section < mSectionCount ? mSectionStart[section] : NONE;
+	}
+
+	public int getSectionEnd(int section) {
+		return section >= 0 && section < mSectionCount ? mSectionEnd[section] : NONE;
+	}
+
+	/**
+	 * @return the occupied section running at minuteOfDay, {@link #NONE} if none
+	 */
+	public int findCurrentSection(int weekday, int minuteOfDay) {
+		long occupied = getOccupiedSections(weekday);
+		while (occupied != 0) {
+			int section = Long.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			if (mSectionStart[section] != NONE && mSectionStart[section] <= minuteOfDay &&
+					minuteOfDay < mSectionEnd[section]) {
+				return section;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @return the first occupied section starting at or after minuteOfDay, {@link #NONE} if none
+	 */
+	public int findNextSection(int weekday, int minuteOfDay) {
+		long occupied = getOccupiedSections(weekday);
+		while (occupied != 0) {
+			int section = Long.numberOfTrailingZeros(occupied);
+			occupied &= occupied - 1;
+			if (mSectionStart[section] >= minuteOfDay) {
+				return section;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @return the first section start or end strictly after minuteOfDay, {@link #NONE} if none
+	 */
+	public int findNextBoundary(int minuteOfDay) {
+		int pos = Arrays.binarySearch(mBoundaries, minuteOfDay + 1);
+		if (pos < 0) {
+			pos = -pos - 1;
+		}
+		return pos < mBoundaries.length ? mBoundaries[pos] : NONE;
+	}
+
+	private boolean inRange(int weekday, int section) {
+		return weekday >= 0 && weekday < WEEKDAYS && section >= 0 && section < mSectionCount;
+	}
+}
@@ -0,0 +1,51 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * Tinted icons keyed by (drawable resource, color). The tint is applied once to a mutated
+ * drawable, later requests get a new drawable sharing its constant state, so the bitmap is never
+ * copied.
+ * <p>
+ * Must only be used from the main thread.
+ */
+
+public class TintCache {
+
+	private static final LongSparseArray<Drawable.ConstantState> sCache = new LongSparseArray<>();
+	private static int sDensityDpi = 0;
+
+	public static Drawable getDrawable(Context context, @DrawableRes int resId,
+	                                   @ColorInt int color) {
+		// Cached states hold the bitmap of one density, drop them if it changes
+		int densityDpi = context.getResources().getDisplayMetrics().densityDpi;
+		if (densityDpi != sDensityDpi) {
+			sDensityDpi = densityDpi;
+			sCache.clear();
+		}
+
+		long key = ((long) resId << 32) | (color & 0xffffffffL);
+		Drawable.ConstantState state = sCache.get(key);
+		if (state != null) {
+			return state.newDrawable(context.getResources());
+		}
+
+		Drawable drawable = ContextCompat.getDrawable(context, resId);
+		if (drawable == null) {
+			return null;
+		}
+		drawable = drawable.mutate();
+		drawable.setColorFilter(color, PorterDuff.Mode.SRC_IN);
+		state = drawable.getConstantState();
+		if (state != null) {
+			sCache.put(key, state);
+		}
+		return drawable;
+	}
+}
@@ -0,0 +1,332 @@
+package silent.kuasapmaterial.libs;
+
+import android.content.Context;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import silent.kuasapmaterial.callback.ScoreCallback;
+import silent.kuasapmaterial.callback.TranscriptCallback;
+import silent.kuasapmaterial.models.ScoreDetailModel;
+import silent.kuasapmaterial.models.ScoreModel;
+import silent.kuasapmaterial.models.SemesterModel;
+import silent.kuasapmaterial.models.SemesterScoreModel;
+
+/**
+ * Scores of every semester kept on the device, with the cumulative and per academic year
+ * averages weighted by units.
+ * <p>
+ * A refresh fetches the semesters with at most a given number of requests in flight. A semester
+ * fetched with the same content as the stored one changes nothing, a changed one only takes its
+ * old sums out of the totals and adds its new ones, the other semesters are never summed again.
+ * <p>
+ * The scores are of the user stored in {@link Constant#PREF_USERNAME}, another user logging in
+ * starts from an empty store.
+ * <p>
+ * Must only be used from the main thread.
+ */
+
+public class TranscriptStore {
+
+	public static final int DEFAULT_CONCURRENCY = 3;
+	// Scores of older semesters are final, a refresh that isn't full only fetches these newest
+	// ones again, along with the semesters never fetched
+	private static final int RECENT_SEMESTERS = 2;
+
+	// Owner of the loaded semesters
+	private static String sUser;
+	private static Map<String, SemesterScoreModel> sSemesters;
+	private static double sUnits, sWeightedScore;
+	// Academic year, e.g. "107" -> {units, weighted score}
+	private static TreeMap<String, double[]> sYears;
+
+	private static final Comparator<String> NEWEST_FIRST = new Comparator<String>() {
+
+		@Override
+		public int compare(String a, String b) {
+			int keyA = getSortKey(a), keyB = getSortKey(b);
+			return keyA > keyB ? -1 : keyA < keyB ? 1 : 0;
+		}
+	};
+
+	/**
+	 * @return the stored semesters, newest first
+	 */
+	public static List<SemesterScoreModel> getList(Context context) {
+		load(context);
+		List<SemesterScoreModel> modelList = new ArrayList<>(sSemesters.values());
+		Collections.sort(modelList, new Comparator<SemesterScoreModel>() {
+
+			@Override
+			public int compare(SemesterScoreModel a, SemesterScoreModel b) {
+				return NEWEST_FIRST.compare(a.value, b.value);
+			}
+		});
+		return modelList;
+	}
+
+	/**
+	 * @return the average of all final scores weighted by units, NaN if there is none
+	 */
+	public static double getAverage(Context context) {
+		load(context);
+		return sUnits > 0 ? sWeightedScore / sUnits : Double.NaN;
+	}
+
+	/**
+	 * @return the academic years of the stored semesters, newest first
+	 */
+	public static List<String> getYears(Context context) {
+		load(context);
+		return new ArrayList<>(sYears.descendingKeySet());
+	}
+
+	/**
+	 * @return the weighted average of the semesters of an academic year, NaN if there is none
+	 */
+	public static double getYearAverage(Context context, String year) {
+		load(context);
+		double[] sums = sYears.get(year);
+		return sums != null && sums[0] > 0 ? sums[1] / sums[0] : Double.NaN;
+	}
+
+	/**
+	 * Fetch the scores of semesters, all of them if isFull, otherwise only the recent ones and
+	 * those never fetched. Callback gets onProgress after each semester, then onSuccess with the
+	 * stored list, or onFail if any semester failed, the others are kept anyway.
+	 *
+	 * @param concurrency most requests in flight at once
+	 */
+	public static void refresh(Context context, List<SemesterModel> semesters, boolean isFull,
+	                           int concurrency, TranscriptCallback callback) {
+		load(context);
+		List<SemesterModel> sorted = new ArrayList<>(semesters);
+		Collections.sort(sorted, new Comparator<SemesterModel>() {
+
+			@Override
+			public int compare(SemesterModel a, SemesterModel b) {
+				return NEWEST_FIRST.compare(a.value, b.value);
+			}
+		});
+		Queue<SemesterModel> queue = new ArrayDeque<>();
+		for (int i = 0; i < sorted.size(); i++) {
+			SemesterModel model = sorted.get(i);
+			if (model.value == null || !model.value.contains(",")) {
+				continue;
+			}
+			if (isFull || i < RECENT_SEMESTERS || !sSemesters.containsKey(model.value)) {
+				queue.add(model);
+			}
+		}
+		new Refresh(context.getApplicationContext(), queue, Math.max(1, concurrency), callback)
+				.start();
+	}
+
+	private static class Refresh {
+
+		final Context context;
+		final Queue<SemesterModel> queue;
+		final int concurrency;
+		final TranscriptCallback callback;
+		final String user = sUser;
+		final int totalCount;
+		int inFlightCount = 0, doneCount = 0, changedCount = 0;
+		String errorMessage;
+		boolean isTokenExpired = false;
+
+		Refresh(Context context, Queue<SemesterModel> queue, int concurrency,
+		        TranscriptCallback callback) {
+			this.context = context;
+			this.queue = queue;
+			this.concurrency = concurrency;
+			this.callback = callback;
+			this.totalCount = queue.size();
+		}
+
+		void start() {
+			if (queue.isEmpty()) {
+				finish();
+				return;
+			}
+			while (inFlightCount < concurrency && !queue.isEmpty() && !isTokenExpired) {
+				fetch(queue.poll());
+			}
+		}
+
+		void fetch(final SemesterModel semester) {
+			inFlightCount++;
+			String[] value = semester.value.split(",");
+			Helper.getScoreTimeTable(context, value[0], value[1], new ScoreCallback() {
+
+				@Override
+				public void onSuccess(List<ScoreModel> modelList,
+				                      ScoreDetailModel scoreDetailModel) {
+					super.onSuccess(modelList, scoreDetailModel);
+
+					// Scores of a user logged out on the way are dropped
+					if (user.equals(sUser) && put(semester, modelList, scoreDetailModel)) {
+						changedCount++;
+					}
+					onDone();
+				}
+
+				@Override
+				public void onFail(String errorMessage) {
+					super.onFail(errorMessage);
+
+					Refresh.this.errorMessage = errorMessage;
+					onDone();
+				}
+
+				@Override
+				public void onTokenExpired() {
+					super.onTokenExpired();
+
+					// The other semesters would fail alike
+					isTokenExpired = true;
+					onDone();
+				}
+			});
+		}
+
+		void onDone() {
+			inFlightCount--;
+			doneCount++;
+			if (callback != null && !isTokenExpired) {
+				callback.onProgress(doneCount, totalCount);
+			}
+			if (!queue.isEmpty() && !isTokenExpired) {
+				// Keep the window full
+				fetch(queue.poll());
+			} else if (inFlightCount == 0) {
+				finish();
+			}
+		}
+
+		void finish() {
+			if (changedCount > 0 && user.equals(sUser)) {
+				save(context);
+			}
+			if (callback == null) {
+				return;
+			}
+			if (isTokenExpired) {
+				callback.onTokenExpired();
+			} else if (errorMessage != null) {
+				callback.onFail(errorMessage);
+			} else {
+				callback.onSuccess(getList(context), changedCount);
+			}
+		}
+	}
+
+	/**
+	 * @return whether the stored semester changed
+	 */
+	private static boolean put(SemesterModel semester, List<ScoreModel> modelList,
+	                           ScoreDetailModel scoreDetailModel) {
+		Gson gson = new Gson();
+		int contentHash = (gson.toJson(modelList) + gson.toJson(scoreDetailModel)).hashCode();
+		SemesterScoreModel old = sSemesters.get(semester.value);
+		if (old != null && old.contentHash == contentHash) {
+			return false;
+		}
+		SemesterScoreModel model = new SemesterScoreModel(semester.value, semester.text,
+				modelList, scoreDetailModel, contentHash);
+		if (old != null) {
+			add(old, -1);
+		}
+		add(model, 1);
+		sSemesters.put(model.value, model);
+		return true;
+	}
+
+	private static void add(SemesterScoreModel model, int sign) {
+		sUnits += sign * model.units;
+		sWeightedScore += sign * model.weightedScore;
+		String year = getYear(model.value);
+		double[] sums = sYears.get(year);
+		if (sums == null) {
+			sums = new double[2];
+			sYears.put(year, sums);
+		}
+		sums[0] += sign * model.units;
+		sums[1] += sign * model.weightedScore;
+	}
+
+	private static void load(Context context) {
+		String user = Memory.getString(context, Constant.PREF_USERNAME, "");
+		if (sSemesters != null && user.equals(sUser)) {
+			return;
+		}
+		sUser = user;
+		sSemesters = new HashMap<>();
+		sYears = new TreeMap<>(new Comparator<String>() {
+
+			@Override
+			public int compare(String a, String b) {
+				return getSortKey(a + ",0") - getSortKey(b + ",0");
+			}
+		});
+		sUnits = sWeightedScore = 0;
+		String json = Memory.getString(context, Constant.PREF_TRANSCRIPT_DATA, null);
+		if (json == null ||
+				!user.equals(Memory.getString(context, Constant.PREF_TRANSCRIPT_USER, ""))) {
+			return;
+		}
+		try {
+			List<SemesterScoreModel> modelList = new Gson()
+					.fromJson(json, new TypeToken<List<SemesterScoreModel>>() {
+
+					}.getType());
+			if (modelList != null) {
+				for (SemesterScoreModel model : modelList) {
+					if (model.value != null) {
+						sSemesters.put(model.value, model);
+						add(model, 1);
+					}
+				}
+			}
+		} catch (JsonSyntaxException e) {
+			AlarmHelper.logGsonError("Transcript Load", e);
+		}
+	}
+
+	private static void save(Context context) {
+		Memory.setString(context, Constant.PREF_TRANSCRIPT_USER, sUser);
+		Memory.setString(context, Constant.PREF_TRANSCRIPT_DATA,
+				new Gson().toJson(new ArrayList<>(sSemesters.values())));
+	}
+
+	public static String getYear(String value) {
+		int comma = value.indexOf(',');
+		return comma < 0 ? value : value.substring(0, comma);
+	}
+
+	/**
+	 * @return year * 10 + term of a semester value like "107,1", 0 if malformed
+	 */
+	private static int getSortKey(String value) {
+		if (value == null) {
+			return 0;
+		}
+		String[] parts = value.split(",");
+		try {
+			return Integer.parseInt(parts[0].trim()) * 10 +
+					(parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
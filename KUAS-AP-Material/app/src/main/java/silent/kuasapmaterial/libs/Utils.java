@@ -10,15 +10,8 @@ import android.content.Intent;
 import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.ColorFilter;
-import android.graphics.LightingColorFilter;
-import android.graphics.Matrix;
-import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.Rect;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.net.ConnectivityManager;
@@ -29,6 +22,7 @@ import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.app.AlertDialog;
+import android.util.Base64;
 import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -40,18 +34,17 @@ import com.kuas.ap.R;
 import com.nostra13.universalimageloader.core.DisplayImageOptions;
 import com.nostra13.universalimageloader.core.assist.ImageScaleType;
 import com.nostra13.universalimageloader.core.display.FadeInBitmapDisplayer;
-import com.nostra13.universalimageloader.core.display.RoundedBitmapDisplayer;
-import com.nostra13.universalimageloader.core.process.BitmapProcessor;
 
+import java.io.UnsupportedEncodingException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
+import silent.kuasapmaterial.CourseWidgetProvider;
 import silent.kuasapmaterial.LoginActivity;
 import silent.kuasapmaterial.callback.BusReservationsCallback;
 import silent.kuasapmaterial.callback.CourseCallback;
@@ -60,6 +53,7 @@ import silent.kuasapmaterial.callback.SemesterCallback;
 import silent.kuasapmaterial.models.BusModel;
 import silent.kuasapmaterial.models.CourseModel;
 import silent.kuasapmaterial.models.SemesterModel;
+import silent.kuasapmaterial.models.TimetableModel;
 
 public class Utils {
 
@@ -105,6 +99,27 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * @return the password remembered at login, empty if none
+	 */
+	public static String decryptPassword(Context context) {
+		String pwd = Memory.getString(context, Constant.PREF_PASSWORD, "");
+		if (pwd.length() == 0) {
+			return "";
+		}
+		try {
+			byte[] TextByte = DecryptAES(Constant.IvAES.getBytes("UTF-8"),
+					Constant.KeyAES.getBytes("UTF-8"),
+					Base64.decode(pwd.getBytes("UTF-8"), Base64.DEFAULT));
+			if (TextByte != null) {
+				return new String(TextByte, "UTF-8");
+			}
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+		}
+		return "";
+	}
+
 	public static AlertDialog createLoadingDialog(Context context, int contentRes) {
 		return createLoadingDialog(context, null, context.getText(contentRes).toString());
 	}
@@ -194,44 +209,6 @@ public class Utils {
 				ContextCompat.getColor(context, R.color.progress_green)};
 	}
 
-	/**
-	 * White colors can be transformed in to different colors.
-	 *
-	 * @param sourceBitmap The source Bitmap
-	 * @param color        The different color
-	 * @return The different color Bitmap
-	 */
-	public static Bitmap changeImageColor(Bitmap sourceBitmap, int color) {
-		Bitmap resultBitmap = Bitmap.createBitmap(sourceBitmap, 0, 0, sourceBitmap.getWidth() - 1,
-				sourceBitmap.getHeight() - 1);
-		Paint p = new Paint();
-		ColorFilter filter = new LightingColorFilter(color, 1);
-		p.setColorFilter(filter);
-
-		Canvas canvas = new Canvas(resultBitmap);
-		canvas.drawBitmap(resultBitmap, 0, 0, p);
-		return resultBitmap;
-	}
-
-	public static Drawable covertBitmapToDrawable(Context context, Bitmap bitmap) {
-		return new BitmapDrawable(context.getResources(), bitmap);
-	}
-
-	public static Bitmap convertDrawableToBitmap(Drawable drawable) {
-		if (drawable instanceof BitmapDrawable) {
-			return ((BitmapDrawable) drawable).getBitmap();
-		}
-
-		Bitmap bitmap =
-				Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(),
-						Bitmap.Config.ARGB_8888);
-		Canvas canvas = new Canvas(bitmap);
-		drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-		drawable.draw(canvas);
-
-		return bitmap;
-	}
-
 	public static DisplayImageOptions.Builder getDefaultDisplayImageBuilder() {
 		return new DisplayImageOptions.Builder().cacheInMemory(true).cacheOnDisk(true)
 				.bitmapConfig(Bitmap.Config.RGB_565).imageScaleType(ImageScaleType.IN_SAMPLE_INT)
@@ -243,43 +220,6 @@ public class Utils {
 		return getDefaultDisplayImageBuilder().build();
 	}
 
-	public static DisplayImageOptions getHeadDisplayImageOptions(final Context context,
-	                                                             final int cornerPixels) {
-		// rounded head
-		return new DisplayImageOptions.Builder().cacheInMemory(true).cacheOnDisk(true)
-				.bitmapConfig(Bitmap.Config.RGB_565).imageScaleType(ImageScaleType.IN_SAMPLE_INT)
-				.showImageOnLoading(R.drawable.ic_account_circle_white_48dp)
-				.preProcessor(new BitmapProcessor() {
-
-					public Bitmap process(Bitmap src) {
-						if (src.getWidth() == 0 || src.getHeight() == 0) {
-							return BitmapFactory.decodeResource(context.getResources(),
-									R.drawable.ic_account_circle_white_48dp);
-						}
-
-						Bitmap result;
-						Matrix matrix = new Matrix();
-						if (src.getWidth() >= src.getHeight()) {
-							float scale = src.getHeight() / (float) cornerPixels * 2f;
-							matrix.setScale(scale, scale);
-							result = Bitmap.createBitmap(src,
-									src.getWidth() / 2 - src.getHeight() / 2, 0, src.getHeight(),
-									src.getHeight(), matrix, false);
-
-						} else {
-							float scale = src.getWidth() / (float) cornerPixels * 2f;
-							matrix.setScale(scale, scale);
-							result = Bitmap.createBitmap(src, 0,
-									src.getHeight() / 2 - src.getWidth() / 2, src.getWidth(),
-									src.getWidth(), matrix, false);
-						}
-						src.recycle();
-
-						return result;
-					}
-				}).displayer(new RoundedBitmapDisplayer(cornerPixels)).build();
-	}
-
 	public static void hideSoftKeyboard(@NonNull Activity activity) {
 		InputMethodManager inputManager =
 				(InputMethodManager) activity.getSystemService(Context.INPUT_METHOD_SERVICE);
@@ -329,13 +269,30 @@ public class Utils {
 	public static List<CourseModel> loadCourseNotify(Context context) {
 		CourseModel[] courseModels = (CourseModel[]) Memory
 				.getObject(context, Constant.PREF_COURSE_NOTIFY_DATA, CourseModel[].class);
-		return courseModels == null ? null : new ArrayList<>(Arrays.asList(courseModels));
+		return courseModels == null ? null : restoreCourseTime(courseModels);
 	}
 
 	public static List<BusModel> loadBusNotify(Context context) {
 		BusModel[] busModels = (BusModel[]) Memory
 				.getObject(context, Constant.PREF_BUS_NOTIFY_DATA, BusModel[].class);
-		return busModels == null ? null : new ArrayList<>(Arrays.asList(busModels));
+		if (busModels == null) {
+			return null;
+		}
+		// Data saved by older versions doesn't have the pre-parsed fields
+		List<BusModel> modelList = new ArrayList<>(busModels.length);
+		for (BusModel model : busModels) {
+			modelList.add(model.restore());
+		}
+		return modelList;
+	}
+
+	private static List<CourseModel> restoreCourseTime(CourseModel[] courseModels) {
+		// Data saved by older versions doesn't have the pre-parsed fields
+		List<CourseModel> modelList = new ArrayList<>(courseModels.length);
+		for (CourseModel model : courseModels) {
+			modelList.add(model.restore());
+		}
+		return modelList;
 	}
 
 	/**
@@ -352,10 +309,12 @@ public class Utils {
 
 							@Override
 							public void onSuccess(List<String> sections,
-							                      List<List<CourseModel>> modelList) {
-								super.onSuccess(sections, modelList);
-								AlarmHelper.setCourseNotification(context, modelList);
-								VibrateHelper.setCourseVibrate(context, modelList);
+							                      List<List<CourseModel>> modelList,
+							                      TimetableIndex index) {
+								super.onSuccess(sections, modelList, index);
+								saveCourseTimetable(context, sections, modelList);
+								AlarmHelper.setCourseNotification(context, index);
+								VibrateHelper.setCourseVibrate(context, index);
 								callback.onSuccess();
 							}
 
@@ -387,6 +346,7 @@ public class Utils {
 			@Override
 			public void onSuccess(List<BusModel> modelList) {
 				super.onSuccess(modelList);
+				saveBusReservations(context, modelList);
 				AlarmHelper.setBusNotification(context, modelList);
 				callback.onSuccess();
 			}
@@ -418,7 +378,57 @@ public class Utils {
 	public static List<CourseModel> loadCourseVibrate(Context context) {
 		CourseModel[] courseModels = (CourseModel[]) Memory
 				.getObject(context, Constant.PREF_COURSE_VIBRATE_DATA, CourseModel[].class);
-		return courseModels == null ? null : new ArrayList<>(Arrays.asList(courseModels));
+		return courseModels == null ? null : restoreCourseTime(courseModels);
+	}
+
+	/**
+	 * Save the current semester's course table for offline readers such as the widget
+	 */
+	public static void saveCourseTimetable(Context context, List<String> sections,
+	                                       List<List<CourseModel>> modelList) {
+		Memory.setObject(context, Constant.PREF_COURSE_TIMETABLE_DATA,
+				new TimetableModel(sections, modelList));
+		CourseWidgetProvider.requestUpdate(context);
+	}
+
+	public static TimetableModel loadCourseTimetable(Context context) {
+		TimetableModel model = (TimetableModel) Memory
+				.getObject(context, Constant.PREF_COURSE_TIMETABLE_DATA, TimetableModel.class);
+		if (model == null || model.sections == null || model.courses == null) {
+			return null;
+		}
+		for (List<CourseModel> dayList : model.courses) {
+			if (dayList == null) {
+				continue;
+			}
+			for (int i = 0; i < dayList.size(); i++) {
+				if (dayList.get(i) != null) {
+					dayList.set(i, dayList.get(i).restore());
+				}
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Save the latest bus reservations for offline readers such as the widget
+	 */
+	public static void saveBusReservations(Context context, List<BusModel> modelList) {
+		Memory.setObject(context, Constant.PREF_BUS_RESERVATIONS_DATA, modelList);
+		CourseWidgetProvider.requestUpdate(context);
+	}
+
+	public static List<BusModel> loadBusReservations(Context context) {
+		BusModel[] busModels = (BusModel[]) Memory
+				.getObject(context, Constant.PREF_BUS_RESERVATIONS_DATA, BusModel[].class);
+		if (busModels == null) {
+			return null;
+		}
+		List<BusModel> modelList = new ArrayList<>(busModels.length);
+		for (BusModel model : busModels) {
+			modelList.add(model.restore());
+		}
+		return modelList;
 	}
 
 	public static Drawable getSelectableItemBackgroundDrawable(Context context) {
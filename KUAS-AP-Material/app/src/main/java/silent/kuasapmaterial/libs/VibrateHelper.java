@@ -7,15 +7,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.CustomEvent;
-import com.kuas.ap.R;
-
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import silent.kuasapmaterial.CourseAlarmService;
 import silent.kuasapmaterial.CourseVibrateAlarmService;
@@ -23,42 +19,43 @@ import silent.kuasapmaterial.models.CourseModel;
 
 public class VibrateHelper {
 
-	static void setCourseVibrate(Context context, List<List<CourseModel>> courseModelList) {
-		if (courseModelList == null) {
+	static void setCourseVibrate(Context context, TimetableIndex index) {
+		if (index == null) {
 			return;
 		}
 
-		List<String> keyList = new ArrayList<>();
+		boolean[] seen = new boolean[index.getCourseCount()];
 		List<CourseModel> saveModelList = new ArrayList<>();
-		for (int i = 0; i < courseModelList.size(); i++) {
-			if (courseModelList.get(i) != null) {
-				for (int j = 0; j < courseModelList.get(i).size(); j++) {
-					if (courseModelList.get(i).get(j) != null) {
-						if (keyList.contains(courseModelList.get(i).get(j).title + i) ||
-								(j > 0 && courseModelList.get(i).get(j - 1) != null)) {
-							if (!(j == courseModelList.get(i).size() - 1 ||
-									courseModelList.get(i).get(j + 1) == null)) {
-								continue;
-							}
-						} else {
-							keyList.add(courseModelList.get(i).get(j).title + i);
-						}
-
-						CourseModel courseModel = courseModelList.get(i).get(j);
-						courseModel.dayOfWeek = i == 6 ? 1 : (i + 2);
-						courseModel.notifyKey = j * 10 + i;
-						saveModelList.add(courseModel);
+		for (int i = 0; i < TimetableIndex.WEEKDAYS; i++) {
+			Arrays.fill(seen, false);
+			long occupied = index.getOccupiedSections(i);
+			// Sections which start or end a block of continuous courses
+			long blockStart = occupied & ~(occupied << 1);
+			long blockEnd = occupied & ~(occupied >>> 1);
+			while (occupied != 0) {
+				int section = Long.numberOfTrailingZeros(occupied);
+				long bit = occupied & -occupied;
+				occupied &= occupied - 1;
+				int courseId = index.getCourseId(i, section);
+				if (seen[courseId] || (blockStart & bit) == 0) {
+					if ((blockEnd & bit) == 0) {
+						continue;
 					}
+				} else {
+					seen[courseId] = true;
 				}
+
+				saveModelList.add(index.get(i, section));
 			}
 		}
 
 		// Must cancel course alarm if user cancel on web
 		List<CourseModel> savedCourseModelList = Utils.loadCourseVibrate(context);
 		if (savedCourseModelList != null) {
+			Set<CourseModel> saveModelSet = new HashSet<>(saveModelList);
 			for (int i = 0; i < savedCourseModelList.size(); i++) {
 				CourseModel courseModel = savedCourseModelList.get(i);
-				if (!saveModelList.contains(courseModel)) {
+				if (!saveModelSet.contains(courseModel)) {
 					if (i % 2 == 0) {
 						cancelCourseAlarm(context, courseModel.notifyKey * 1000, true);
 					} else {
@@ -72,10 +69,10 @@ public class VibrateHelper {
 		for (int i = 0; i < saveModelList.size(); i++) {
 			CourseModel courseModel = saveModelList.get(i);
 			if (i % 2 == 0) {
-				setCourseAlarm(context, courseModel.start_time, courseModel.dayOfWeek,
+				setCourseAlarm(context, courseModel.startMinute, courseModel.dayOfWeek,
 						courseModel.notifyKey * 1000, true);
 			} else {
-				setCourseAlarm(context, courseModel.end_time, courseModel.dayOfWeek,
+				setCourseAlarm(context, courseModel.endMinute, courseModel.dayOfWeek,
 						courseModel.notifyKey * 10000, false);
 			}
 		}
@@ -90,16 +87,14 @@ public class VibrateHelper {
 				try {
 					CourseModel courseModel = courseModelList.get(i);
 					if (i % 2 == 0) {
-						setCourseAlarm(context, courseModel.start_time, courseModel.dayOfWeek,
+						setCourseAlarm(context, courseModel.startMinute, courseModel.dayOfWeek,
 								courseModel.notifyKey * 1000, true);
 					} else {
-						setCourseAlarm(context, courseModel.end_time, courseModel.dayOfWeek,
+						setCourseAlarm(context, courseModel.endMinute, courseModel.dayOfWeek,
 								courseModel.notifyKey * 10000, false);
 					}
 				} catch (Exception e) {
-					Answers.getInstance().logCustom(
-							new CustomEvent("Gson").putCustomAttribute("Type", "Course Vibrate Set")
-									.putCustomAttribute("Exception", e.getMessage()));
+					AlarmHelper.logGsonError("Course Vibrate Set", e);
 				}
 			}
 		}
@@ -118,9 +113,9 @@ public class VibrateHelper {
 		alarm.cancel(pendingIntent);
 	}
 
-	public static void setCourseAlarm(Context context, String time, int dayOfWeek, int id,
+	public static void setCourseAlarm(Context context, int minuteOfDay, int dayOfWeek, int id,
 	                                  boolean isVibrate) {
-		if (!time.contains(":")) {
+		if (minuteOfDay == TimeParser.INVALID) {
 			return;
 		}
 
@@ -130,21 +125,13 @@ public class VibrateHelper {
 		bundle.putBoolean("mode", isVibrate);
 		intent.putExtras(bundle);
 
-		Calendar calendar = Calendar.getInstance();
-		calendar.set(Calendar.DAY_OF_WEEK, dayOfWeek);
-		calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(time.split(":")[0]));
-		calendar.set(Calendar.MINUTE, Integer.parseInt(time.split(":")[1]));
-		calendar.set(Calendar.SECOND, 0);
 		PendingIntent pendingIntent =
 				PendingIntent.getService(context, id, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-		Date now = new Date(System.currentTimeMillis());
-		if (calendar.getTime().before(now)) {
-			calendar.add(Calendar.DAY_OF_MONTH, 7);
-		}
 
 		AlarmManager alarm = (AlarmManager) context.getSystemService(Service.ALARM_SERVICE);
 		alarm.cancel(pendingIntent);
-		alarm.setRepeating(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(),
-				AlarmManager.INTERVAL_DAY * 7, pendingIntent);
+		alarm.setRepeating(AlarmManager.RTC_WAKEUP,
+				TimeParser.nextWeeklyMillis(dayOfWeek, minuteOfDay), AlarmManager.INTERVAL_DAY * 7,
+				pendingIntent);
 	}
 }
@@ -28,7 +28,10 @@ public class RadiusDrawable extends Drawable {
 	private int strokeWidth = 0;
 	private int strokeColor;
 
-	private Path path;
+	private final Path path = new Path();
+	private final RectF arcRect = new RectF();
+	// The path is rebuilt lazily, only when the bounds or radiuses changed
+	private boolean isPathDirty = true;
 
 	public RadiusDrawable(int topLeftRadius, int topRightRadius, int bottomLeftRadius,
 	                      int bottomRightRadius, boolean isStroke, int color) {
@@ -54,7 +57,7 @@ public class RadiusDrawable extends Drawable {
 
 	public void setStrokeWidth(int width) {
 		strokeWidth = width;
-		setBounds(left, top, right, bottom);
+		isPathDirty = true;
 	}
 
 	public void setStrokeColor(int strokeColor) {
@@ -68,24 +71,42 @@ public class RadiusDrawable extends Drawable {
 	public void setRadius(int radius) {
 		this.topLeftRadius =
 				this.topRightRadius = this.bottomLeftRadius = this.bottomRightRadius = radius;
+		isPathDirty = true;
 	}
 
 	public void setRadiuses(int topLeftRadius, int topRightRadius, int bottomLeftRadius,
 	                        int bottomRightRadius) {
+		if (this.topLeftRadius == topLeftRadius && this.topRightRadius == topRightRadius &&
+				this.bottomLeftRadius == bottomLeftRadius &&
+				this.bottomRightRadius == bottomRightRadius) {
+			return;
+		}
 		this.topLeftRadius = topLeftRadius;
 		this.topRightRadius = topRightRadius;
 		this.bottomLeftRadius = bottomLeftRadius;
 		this.bottomRightRadius = bottomRightRadius;
+		isPathDirty = true;
 	}
 
 	@Override
 	public void setBounds(int left, int top, int right, int bottom) {
 		super.setBounds(left, top, right, bottom);
 
-		this.left = left;
-		this.top = top;
-		this.right = right;
-		this.bottom = bottom;
+		if (this.left != left || this.top != top || this.right != right ||
+				this.bottom != bottom) {
+			this.left = left;
+			this.top = top;
+			this.right = right;
+			this.bottom = bottom;
+			isPathDirty = true;
+		}
+	}
+
+	private void buildPath() {
+		int left = this.left;
+		int top = this.top;
+		int right = this.right;
+		int bottom = this.bottom;
 
 		if (isStroke) {
 			int halfStrokeWidth = strokeWidth / 2;
@@ -95,30 +116,29 @@ public class RadiusDrawable extends Drawable {
 			bottom -= halfStrokeWidth;
 		}
 
-		path = new Path();
+		path.reset();
 		path.moveTo(left + topLeftRadius, top);
 		path.lineTo(right - topRightRadius, top);
-		path.arcTo(new RectF(right - topRightRadius * 2, top, right, top + topRightRadius * 2), -90,
-				90);
-		// path.quadTo(right, top, right, top + topRightRadius);
+		arcRect.set(right - topRightRadius * 2, top, right, top + topRightRadius * 2);
+		path.arcTo(arcRect, -90, 90);
 		path.lineTo(right, bottom - bottomRightRadius);
-		path.arcTo(new RectF(right - bottomRightRadius * 2, bottom - bottomRightRadius * 2, right,
-				bottom), 0, 90);
-		// path.quadTo(right, bottom, right - bottomRightRadius, bottom);
+		arcRect.set(right - bottomRightRadius * 2, bottom - bottomRightRadius * 2, right, bottom);
+		path.arcTo(arcRect, 0, 90);
 		path.lineTo(left + bottomLeftRadius, bottom);
-		path.arcTo(
-				new RectF(left, bottom - bottomLeftRadius * 2, left + bottomLeftRadius * 2, bottom),
-				90, 90);
-		// path.quadTo(left, bottom, left, bottom - bottomLeftRadius);
+		arcRect.set(left, bottom - bottomLeftRadius * 2, left + bottomLeftRadius * 2, bottom);
+		path.arcTo(arcRect, 90, 90);
 		path.lineTo(left, top + topLeftRadius);
-		path.arcTo(new RectF(left, top, left + topLeftRadius * 2, top + topLeftRadius * 2), 180,
-				90);
-		// path.quadTo(left, top, left + topLeftRadius, top);
+		arcRect.set(left, top, left + topLeftRadius * 2, top + topLeftRadius * 2);
+		path.arcTo(arcRect, 180, 90);
 		path.close();
+		isPathDirty = false;
 	}
 
 	@Override
 	public void draw(Canvas canvas) {
+		if (isPathDirty) {
+			buildPath();
+		}
 		if (color != 0) {
 			paint.setColor(color);
 			paint.setStyle(Paint.Style.FILL);
@@ -2,6 +2,7 @@ package silent.kuasapmaterial.libs.segmentcontrol;
 
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Paint;
@@ -22,9 +23,14 @@ public class SegmentControl extends View {
 	private String[] mTexts;
 	private Rect[] mCacheBounds;
 	private Rect[] mTextBounds;
+	// Text origins and selected backgrounds of each segment, updated on measure
+	private float[] mTextX;
+	private float[] mTextY;
+	private RadiusDrawable[] mSelectedDrawables;
+	private boolean isTextBoundsDirty = true;
 
 	private RadiusDrawable mBackgroundDrawable;
-	private RadiusDrawable mSelectedDrawable;
+	private int mSelectedTextColor;
 
 	private int mCurrentIndex;
 
@@ -73,18 +79,6 @@ public class SegmentControl extends View {
 			mTexts = textArray.split("\\|");
 		}
 
-		if (mCacheBounds == null || mCacheBounds.length != mTexts.length) {
-			mCacheBounds = new Rect[mTexts.length];
-		}
-
-		if (mTextBounds == null || mTextBounds.length != mTexts.length) {
-			mTextBounds = new Rect[mTexts.length];
-		}
-		for (int i = 0; i < mTexts.length; i++) {
-			mTextBounds[i] = new Rect();
-			mCacheBounds[i] = new Rect();
-		}
-
 		mTextSize = ta.getDimensionPixelSize(R.styleable.SegmentControl_android_textSize,
 				(int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14,
 						context.getResources().getDisplayMetrics()));
@@ -127,11 +121,13 @@ public class SegmentControl extends View {
 			setBackground(mBackgroundDrawable);
 		}
 
-		mSelectedDrawable = new RadiusDrawable(mCornerRadius, false, mColors.getDefaultColor());
-
 		mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
 		mPaint.setTextSize(mTextSize);
 		mPaint.setColor(mColors.getDefaultColor());
+		mPaint.setStrokeWidth(2);
+
+		mSelectedTextColor = ContextCompat.getColor(context, R.color.white_text);
+		allocateSegments();
 
 		//here's the tricky thing, when you doing a click detect on a capacitive touch screen,
 		//sometimes the touch points of touchDown and touchUp are different(it's call slop) even when you didn't actually move your finger,
@@ -156,10 +152,32 @@ public class SegmentControl extends View {
 		mTexts = texts;
 
 		if (mTexts != null) {
+			allocateSegments();
 			requestLayout();
 		}
 	}
 
+	/**
+	 * Allocate the per segment caches, so measuring and drawing never allocate
+	 */
+	private void allocateSegments() {
+		int count = mTexts == null ? 0 : mTexts.length;
+		if (mCacheBounds == null || mCacheBounds.length != count) {
+			mCacheBounds = new Rect[count];
+			mTextBounds = new Rect[count];
+			mTextX = new float[count];
+			mTextY = new float[count];
+			mSelectedDrawables = new RadiusDrawable[count];
+			int color = mColors == null ? 0 : mColors.getDefaultColor();
+			for (int i = 0; i < count; i++) {
+				mCacheBounds[i] = new Rect();
+				mTextBounds[i] = new Rect();
+				mSelectedDrawables[i] = new RadiusDrawable(mCornerRadius, false, color);
+			}
+		}
+		isTextBoundsDirty = true;
+	}
+
 	public void setColors(ColorStateList colors) {
 		mColors = colors;
 
@@ -167,8 +185,10 @@ public class SegmentControl extends View {
 			mBackgroundDrawable.setStrokeColor(colors.getDefaultColor());
 		}
 
-		if (mSelectedDrawable != null) {
-			mSelectedDrawable.setColor(colors.getDefaultColor());
+		if (mSelectedDrawables != null) {
+			for (RadiusDrawable drawable : mSelectedDrawables) {
+				drawable.setColor(colors.getDefaultColor());
+			}
 		}
 
 		mPaint.setColor(colors.getDefaultColor());
@@ -183,6 +203,7 @@ public class SegmentControl extends View {
 			mBackgroundDrawable.setRadius(cornerRadius);
 		}
 
+		updateSegments();
 		invalidate();
 	}
 
@@ -207,10 +228,20 @@ public class SegmentControl extends View {
 
 		if (textSize != mTextSize) {
 			mTextSize = textSize;
+			isTextBoundsDirty = true;
 			requestLayout();
 		}
 	}
 
+	@Override
+	protected void onConfigurationChanged(Configuration newConfig) {
+		super.onConfigurationChanged(newConfig);
+
+		mSelectedTextColor = ContextCompat.getColor(getContext(), R.color.white_text);
+		isTextBoundsDirty = true;
+		requestLayout();
+	}
+
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
@@ -229,7 +260,9 @@ public class SegmentControl extends View {
 				String text = mTexts[i];
 
 				if (text != null) {
-					mPaint.getTextBounds(text, 0, text.length(), mTextBounds[i]);
+					if (isTextBoundsDirty) {
+						mPaint.getTextBounds(text, 0, text.length(), mTextBounds[i]);
+					}
 
 					if (mSingleChildWidth < widthSize / mTexts.length) {
 						mSingleChildWidth = widthSize / mTexts.length;
@@ -308,6 +341,8 @@ public class SegmentControl extends View {
 			mChildrenHeight =
 					mDirection == Direction.VERTICAL ? mSingleChildHeight * mTexts.length :
 							mSingleChildHeight;
+			isTextBoundsDirty = false;
+			updateSegments();
 		} else {
 			width = widthMode == MeasureSpec.UNSPECIFIED ? 0 : widthSize;
 			height = heightMode == MeasureSpec.UNSPECIFIED ? 0 : heightSize;
@@ -378,71 +413,60 @@ public class SegmentControl extends View {
 		return true;
 	}
 
+	/**
+	 * Precompute the text origins and the selected background of each segment
+	 */
+	private void updateSegments() {
+		if (mTexts == null || mSelectedDrawables == null) {
+			return;
+		}
+		int last = mTexts.length - 1;
+		for (int i = 0; i <= last; i++) {
+			mTextX[i] = mCacheBounds[i].left + (mSingleChildWidth - mTextBounds[i].width()) / 2;
+			mTextY[i] = mCacheBounds[i].top + (mSingleChildHeight + mTextBounds[i].height()) / 2;
+
+			int first = i == 0 ? mCornerRadius : 0;
+			int end = i == last ? mCornerRadius : 0;
+			if (mDirection == Direction.HORIZON) {
+				mSelectedDrawables[i].setRadiuses(first, end, first, end);
+			} else {
+				mSelectedDrawables[i].setRadiuses(first, first, end, end);
+			}
+			mSelectedDrawables[i].setBounds(mCacheBounds[i]);
+		}
+	}
+
 	@Override
 	public void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
 
-		if (mTexts != null && mTexts.length > 0) {
-			for (int i = 0; i < mTexts.length; i++) {
-
-				//draw separate lines
-				if (i < mTexts.length - 1) {
-					mPaint.setColor(mColors.getDefaultColor());
-					mPaint.setStrokeWidth(2);
-					if (mDirection == Direction.HORIZON) {
-						canvas.drawLine(mCacheBounds[i].right, 0, mCacheBounds[i].right,
-								getHeight(), mPaint);
-					} else {
-						canvas.drawLine(mCacheBounds[i].left, mSingleChildHeight * (i + 1),
-								mCacheBounds[i].right, mSingleChildHeight * (i + 1), mPaint);
-					}
-				}
-
-				//draw selected drawable
-				if (i == mCurrentIndex && mSelectedDrawable != null) {
-					int topLeftRadius = 0;
-					int topRightRadius = 0;
-					int bottomLeftRadius = 0;
-					int bottomRightRadius = 0;
-
-					if (mDirection == Direction.HORIZON) {
-						if (i == 0) {
-							topLeftRadius = mCornerRadius;
-							bottomLeftRadius = mCornerRadius;
-						}
-						if (i == mTexts.length - 1) {
-							topRightRadius = mCornerRadius;
-							bottomRightRadius = mCornerRadius;
-						}
-					} else {
-						if (i == 0) {
-							topLeftRadius = mCornerRadius;
-							topRightRadius = mCornerRadius;
-						}
-						if (i == mTexts.length - 1) {
-							bottomLeftRadius = mCornerRadius;
-							bottomRightRadius = mCornerRadius;
-						}
-					}
-
-					mSelectedDrawable.setRadiuses(topLeftRadius, topRightRadius, bottomLeftRadius,
-							bottomRightRadius);
-					mSelectedDrawable.setBounds(mCacheBounds[i]);
-					mSelectedDrawable.draw(canvas);
-
-					mPaint.setColor(ContextCompat.getColor(getContext(), R.color.white_text));
-				} else {
-					mPaint.setColor(mColors.getDefaultColor());
-				}
+		if (mTexts == null || mTexts.length == 0) {
+			return;
+		}
+		int defaultColor = mColors.getDefaultColor();
 
-				//draw texts
-				canvas.drawText(mTexts[i],
-						mCacheBounds[i].left + (mSingleChildWidth - mTextBounds[i].width()) / 2,
-						mCacheBounds[i].top + (mSingleChildHeight + mTextBounds[i].height()) / 2,
+		//draw separate lines
+		mPaint.setColor(defaultColor);
+		for (int i = 0; i < mTexts.length - 1; i++) {
+			if (mDirection == Direction.HORIZON) {
+				canvas.drawLine(mCacheBounds[i].right, 0, mCacheBounds[i].right, getHeight(),
 						mPaint);
+			} else {
+				canvas.drawLine(mCacheBounds[i].left, mSingleChildHeight * (i + 1),
+						mCacheBounds[i].right, mSingleChildHeight * (i + 1), mPaint);
 			}
 		}
 
+		//draw selected drawable
+		if (mCurrentIndex >= 0 && mCurrentIndex < mSelectedDrawables.length) {
+			mSelectedDrawables[mCurrentIndex].draw(canvas);
+		}
+
+		//draw texts
+		for (int i = 0; i < mTexts.length; i++) {
+			mPaint.setColor(i == mCurrentIndex ? mSelectedTextColor : defaultColor);
+			canvas.drawText(mTexts[i], mTextX[i], mTextY[i], mPaint);
+		}
 	}
 
 	public enum Direction {
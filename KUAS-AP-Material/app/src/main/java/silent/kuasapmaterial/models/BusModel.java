@@ -1,43 +1,106 @@
 package silent.kuasapmaterial.models;
 
 import android.support.annotation.NonNull;
+import android.support.v4.util.ObjectsCompat;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.CustomEvent;
+import silent.kuasapmaterial.libs.StringPool;
+import silent.kuasapmaterial.libs.TimeParser;
 
 public class BusModel implements Comparable<BusModel> {
 
-	public boolean isReserve;
-	public String EndEnrollDateTime;
-	public String runDateTime;
-	public String endStation;
-	public String limitCount;
-	public String reserveCount;
-	public String Time;
-	public String busId;
-	public String cancelKey;
+	public final boolean isReserve;
+	public final String EndEnrollDateTime;
+	public final String runDateTime;
+	public final String endStation;
+	public final String limitCount;
+	public final String reserveCount;
+	public final String Time;
+	public final String busId;
+	public final String cancelKey;
+	// Pre-parsed epoch millis of runDateTime, -1 if malformed
+	public final long runMillis;
+
+	private transient int hash;
+
+	@SuppressWarnings("unused")
+	private BusModel() {
+		// Used by Gson, data saved by older versions keeps runMillis at -1
+		this(false, null, null, null, null, null, null, null, null);
+	}
+
+	public BusModel(boolean isReserve, String EndEnrollDateTime, String runDateTime,
+	                String endStation, String limitCount, String reserveCount, String Time,
+	                String busId, String cancelKey) {
+		this.isReserve = isReserve;
+		this.EndEnrollDateTime = EndEnrollDateTime;
+		this.runDateTime = runDateTime;
+		this.endStation = StringPool.intern(endStation);
+		this.limitCount = StringPool.intern(limitCount);
+		this.reserveCount = reserveCount;
+		this.Time = Time;
+		this.busId = busId;
+		this.cancelKey = cancelKey;
+		this.runMillis = TimeParser.parseDateTime(runDateTime == null ? Time : runDateTime);
+	}
+
+	/**
+	 * Models restored by Gson from older versions miss the pre-parsed fields.
+	 *
+	 * @return this model, or a re-parsed copy if the pre-parsed fields are missing
+	 */
+	public BusModel restore() {
+		if (runMillis != TimeParser.INVALID) {
+			return this;
+		}
+		return new BusModel(isReserve, EndEnrollDateTime, runDateTime, endStation, limitCount,
+				reserveCount, Time, busId, cancelKey);
+	}
 
 	@Override
 	public boolean equals(Object o) {
-		try {
-			return o instanceof BusModel &&
-					EndEnrollDateTime.equals(((BusModel) o).EndEnrollDateTime) &&
-					endStation.equals(((BusModel) o).endStation) &&
-					runDateTime.equals(((BusModel) o).runDateTime) &&
-					cancelKey.equals(((BusModel) o).cancelKey);
-		} catch (Exception e) {
-			Answers.getInstance().logCustom(
-					new CustomEvent("Gson").putCustomAttribute("Type", "Bus Equals")
-							.putCustomAttribute("Exception", e.getMessage()));
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof BusModel)) {
 			return false;
 		}
+		BusModel other = (BusModel) o;
+		return hashCode() == other.hashCode() &&
+				ObjectsCompat.equals(EndEnrollDateTime, other.EndEnrollDateTime) &&
+				ObjectsCompat.equals(endStation, other.endStation) &&
+				ObjectsCompat.equals(runDateTime, other.runDateTime) &&
+				ObjectsCompat.equals(cancelKey, other.cancelKey);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = ObjectsCompat.hash(EndEnrollDateTime, endStation, runDateTime, cancelKey);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
 	public int compareTo(@NonNull BusModel other) {
-		return Math.abs(EndEnrollDateTime.compareTo(other.EndEnrollDateTime)) +
-				Math.abs(endStation.compareTo(other.endStation)) +
-				Math.abs(runDateTime.compareTo(other.runDateTime)) +
-				Math.abs(cancelKey.compareTo(other.cancelKey));
+		int result = compare(runDateTime, other.runDateTime);
+		if (result == 0) {
+			result = compare(endStation, other.endStation);
+		}
+		if (result == 0) {
+			result = compare(EndEnrollDateTime, other.EndEnrollDateTime);
+		}
+		if (result == 0) {
+			result = compare(cancelKey, other.cancelKey);
+		}
+		return result;
+	}
+
+	private static int compare(String a, String b) {
+		if (a == null) {
+			return b == null ? 0 : -1;
+		}
+		return b == null ? 1 : a.compareTo(b);
 	}
 }
@@ -0,0 +1,14 @@
+package silent.kuasapmaterial.models;
+
+public class CalendarModel {
+
+	public final long id;
+	public final String name;
+	public final String account;
+
+	public CalendarModel(long id, String name, String account) {
+		this.id = id;
+		this.name = name;
+		this.account = account;
+	}
+}
@@ -1,46 +1,124 @@
 package silent.kuasapmaterial.models;
 
 import android.support.annotation.NonNull;
+import android.support.v4.util.ObjectsCompat;
 
-import com.crashlytics.android.answers.Answers;
-import com.crashlytics.android.answers.CustomEvent;
-
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import silent.kuasapmaterial.libs.StringPool;
+import silent.kuasapmaterial.libs.TimeParser;
+
 public class CourseModel implements Comparable<CourseModel> {
 
-	public List<String> instructors;
-	public String title;
-	public String building;
-	public String room;
-	public String start_time;
-	public String end_time;
-	public String weekday;
-	public String section;
-	public int dayOfWeek;
-	public int notifyKey;
+	public final List<String> instructors;
+	public final String title;
+	public final String building;
+	public final String room;
+	public final String start_time;
+	public final String end_time;
+	public final String weekday;
+	public final String section;
+	public final int dayOfWeek;
+	public final int notifyKey;
+	// Pre-parsed minutes of day, -1 if start_time or end_time is malformed
+	public final int startMinute;
+	public final int endMinute;
+
+	private transient int hash;
+
+	@SuppressWarnings("unused")
+	private CourseModel() {
+		// Used by Gson, data saved by older versions keeps startMinute and endMinute at -1
+		this(null, null, null, null, null, null, null, null, 0, 0);
+	}
+
+	public CourseModel(List<String> instructors, String title, String building, String room,
+	                   String start_time, String end_time, String weekday, String section,
+	                   int dayOfWeek, int notifyKey) {
+		List<String> pooledInstructors =
+				new ArrayList<>(instructors == null ? 0 : instructors.size());
+		if (instructors != null) {
+			for (String instructor : instructors) {
+				pooledInstructors.add(StringPool.intern(instructor));
+			}
+		}
+		this.instructors = Collections.unmodifiableList(pooledInstructors);
+		this.title = title;
+		this.building = StringPool.intern(building);
+		this.room = StringPool.intern(room);
+		this.start_time = StringPool.intern(start_time);
+		this.end_time = StringPool.intern(end_time);
+		this.weekday = StringPool.intern(weekday);
+		this.section = StringPool.intern(section);
+		this.dayOfWeek = dayOfWeek;
+		this.notifyKey = notifyKey;
+		this.startMinute = TimeParser.parseMinuteOfDay(start_time);
+		this.endMinute = TimeParser.parseMinuteOfDay(end_time);
+	}
+
+	/**
+	 * Models restored by Gson from older versions miss the pre-parsed fields.
+	 *
+	 * @return this model, or a re-parsed copy if the pre-parsed fields are missing
+	 */
+	public CourseModel restore() {
+		if (startMinute != TimeParser.INVALID && endMinute != TimeParser.INVALID) {
+			return this;
+		}
+		return new CourseModel(instructors, title, building, room, start_time, end_time, weekday,
+				section, dayOfWeek, notifyKey);
+	}
 
 	@Override
 	public boolean equals(Object o) {
-		try {
-			return o instanceof CourseModel && title.equals(((CourseModel) o).title) &&
-					room.equals(((CourseModel) o).room) &&
-					start_time.equals(((CourseModel) o).start_time) &&
-					weekday.equals(((CourseModel) o).weekday) &&
-					section.equals(((CourseModel) o).section);
-		} catch (Exception e) {
-			Answers.getInstance().logCustom(
-					new CustomEvent("Gson").putCustomAttribute("Type", "Course Equals")
-							.putCustomAttribute("Exception", e.getMessage()));
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof CourseModel)) {
 			return false;
 		}
+		CourseModel other = (CourseModel) o;
+		return hashCode() == other.hashCode() && ObjectsCompat.equals(title, other.title) &&
+				ObjectsCompat.equals(room, other.room) &&
+				ObjectsCompat.equals(start_time, other.start_time) &&
+				ObjectsCompat.equals(weekday, other.weekday) &&
+				ObjectsCompat.equals(section, other.section);
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			h = ObjectsCompat.hash(title, room, start_time, weekday, section);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
 	public int compareTo(@NonNull CourseModel other) {
-		return Math.abs(title.compareTo(other.title)) + Math.abs(room.compareTo(other.room)) +
-				Math.abs(start_time.compareTo(other.start_time)) +
-				Math.abs(weekday.compareTo(other.weekday)) +
-				Math.abs(section.compareTo(other.section));
+		int result = compare(weekday, other.weekday);
+		if (result == 0) {
+			result = compare(start_time, other.start_time);
+		}
+		if (result == 0) {
+			result = compare(section, other.section);
+		}
+		if (result == 0) {
+			result = compare(title, other.title);
+		}
+		if (result == 0) {
+			result = compare(room, other.room);
+		}
+		return result;
+	}
+
+	private static int compare(String a, String b) {
+		if (a == null) {
+			return b == null ? 0 : -1;
+		}
+		return b == null ? 1 : a.compareTo(b);
 	}
-}
\ No newline at end of file
+}
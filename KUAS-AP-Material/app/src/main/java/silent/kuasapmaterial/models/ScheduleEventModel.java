@@ -0,0 +1,18 @@
+package silent.kuasapmaterial.models;
+
+public class ScheduleEventModel {
+
+	// As shown in the list, e.g. "(9/11~9/15) event"
+	public final String text;
+	public final String title;
+	// Start of the first day and end of the last day in epoch millis, -1 if the text has no date
+	public final long startMillis;
+	public final long endMillis;
+
+	public ScheduleEventModel(String text, String title, long startMillis, long endMillis) {
+		this.text = text;
+		this.title = title;
+		this.startMillis = startMillis;
+		this.endMillis = endMillis;
+	}
+}
@@ -0,0 +1,14 @@
+package silent.kuasapmaterial.models;
+
+import java.util.List;
+
+public class ScheduleModel {
+
+	public final String week;
+	public final List<ScheduleEventModel> events;
+
+	public ScheduleModel(String week, List<ScheduleEventModel> events) {
+		this.week = week;
+		this.events = events;
+	}
+}
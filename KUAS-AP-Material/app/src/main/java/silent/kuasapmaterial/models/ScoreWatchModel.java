@@ -0,0 +1,18 @@
+package silent.kuasapmaterial.models;
+
+import java.util.Map;
+
+public class ScoreWatchModel {
+
+	// Username of the account the rest is of
+	public String user;
+	// The semester watched, e.g. "107,1", and when it was taken as the current one
+	public String semester;
+	public long semesterMillis;
+	// ETag of the last scores, sent back to get a 304 while they stay the same
+	public String eTag;
+	// Course key -> hash of its grades, null until the first scores of the semester
+	public Map<String, Integer> hashes;
+	// Delay before the next check
+	public long intervalMillis;
+}
@@ -0,0 +1,62 @@
+package silent.kuasapmaterial.models;
+
+import java.util.Collections;
+import java.util.List;
+
+public class SemesterScoreModel {
+
+	public final String value;
+	public final String text;
+	public final List<ScoreModel> scores;
+	public final ScoreDetailModel detail;
+	// Sums over the courses with numeric units and final score, for weighted averages
+	public final double units;
+	public final double weightedScore;
+	// Of the scores and the detail, tells whether a fetched semester changed
+	public final int contentHash;
+
+	@SuppressWarnings("unused")
+	private SemesterScoreModel() {
+		// Used by Gson
+		this(null, null, null, null, 0);
+	}
+
+	public SemesterScoreModel(String value, String text, List<ScoreModel> scores,
+	                          ScoreDetailModel detail, int contentHash) {
+		this.value = value;
+		this.text = text;
+		this.scores = scores == null ? Collections.<ScoreModel>emptyList() : scores;
+		this.detail = detail;
+		this.contentHash = contentHash;
+
+		double units = 0, weightedScore = 0;
+		for (ScoreModel model : this.scores) {
+			double unit = parse(model.units), score = parse(model.final_score);
+			if (unit > 0 && !Double.isNaN(score)) {
+				units += unit;
+				weightedScore += unit * score;
+			}
+		}
+		this.units = units;
+		this.weightedScore = weightedScore;
+	}
+
+	/**
+	 * @return the average of the final scores weighted by units, NaN if there is none
+	 */
+	public double getAverage() {
+		return units > 0 ? weightedScore / units : Double.NaN;
+	}
+
+	private static double parse(String number) {
+		if (number == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(number.trim());
+		} catch (NumberFormatException e) {
+			// e.g. "通過" or "抵免"
+			return Double.NaN;
+		}
+	}
+}
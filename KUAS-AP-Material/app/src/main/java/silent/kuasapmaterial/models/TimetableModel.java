@@ -0,0 +1,14 @@
+package silent.kuasapmaterial.models;
+
+import java.util.List;
+
+public class TimetableModel {
+
+	public List<String> sections;
+	public List<List<CourseModel>> courses;
+
+	public TimetableModel(List<String> sections, List<List<CourseModel>> courses) {
+		this.sections = sections;
+		this.courses = courses;
+	}
+}